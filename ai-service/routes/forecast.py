@@ -13,7 +13,8 @@ router = APIRouter(prefix="/api/forecast", tags=["Forecast"])
 async def forecast_demand(request: ForecastRequest):
     """Generate demand forecast for a product based on historical data."""
     try:
-        if len(request.historical_data) < 7:
+        sorted_data = request.data_points()
+        if len(sorted_data) < 7:
             raise HTTPException(
                 status_code=400,
                 detail="At least 7 historical data points are required"
@@ -21,8 +22,6 @@ async def forecast_demand(request: ForecastRequest):
 
         forecaster = DemandForecaster()
 
-        sorted_data = sorted(request.historical_data, key=lambda x: x.date)
-
         accuracy = forecaster.fit(sorted_data)
 
         last_date = sorted_data[-1].date
@@ -33,6 +32,8 @@ async def forecast_demand(request: ForecastRequest):
             predictions=predictions,
             model_accuracy=round(accuracy, 4)
         )
+    except HTTPException:
+        raise
     except ValueError as e:
         raise HTTPException(status_code=400, detail=str(e))
     except Exception as e:
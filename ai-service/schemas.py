@@ -1,6 +1,6 @@
 from pydantic import BaseModel, Field
 from typing import List, Optional
-from datetime import date
+from datetime import date, timedelta
 
 
 class HistoricalDataPoint(BaseModel):
@@ -10,9 +10,20 @@ class HistoricalDataPoint(BaseModel):
 
 class ForecastRequest(BaseModel):
     product_id: int
-    historical_data: List[HistoricalDataPoint]
+    historical_data: List[HistoricalDataPoint] = Field(default_factory=list)
+    # Dense daily series: quantities[i] is the demand on start_date + i days
+    start_date: Optional[date] = None
+    quantities: Optional[List[float]] = None
     periods_ahead: int = Field(default=30, ge=1, le=365)
 
+    def data_points(self) -> List[HistoricalDataPoint]:
+        if self.start_date is not None and self.quantities is not None:
+            return [
+                HistoricalDataPoint(date=self.start_date + timedelta(days=i), quantity=q)
+                for i, q in enumerate(self.quantities)
+            ]
+        return sorted(self.historical_data, key=lambda x: x.date)
+
 
 class ForecastPrediction(BaseModel):
     date: date
@@ -0,0 +1,160 @@
+package com.daoninhthai.inventory.benchmark;
+
+import com.daoninhthai.inventory.dto.BatchImportResult;
+import com.daoninhthai.inventory.dto.CreatePurchaseOrderRequest;
+import com.daoninhthai.inventory.dto.PurchaseOrderItemRequest;
+import com.daoninhthai.inventory.dto.PurchaseOrderResponse;
+import com.daoninhthai.inventory.entity.Warehouse;
+import com.daoninhthai.inventory.repository.ProductRepository;
+import com.daoninhthai.inventory.repository.SupplierRepository;
+import com.daoninhthai.inventory.repository.WarehouseRepository;
+import com.daoninhthai.inventory.service.BatchImportService;
+import com.daoninhthai.inventory.service.PurchaseOrderService;
+import com.daoninhthai.inventory.service.StockWritePipeline;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Measures insert throughput of the product CSV import and of purchase order receipts when the
+ * {@code insert-benchmark} profile is active.
+ *
+ * Each round imports {@code rows} products through {@link BatchImportService}, then creates, approves and
+ * receives an order of {@code order-items} of them through {@link PurchaseOrderService}. Every round runs
+ * twice: with the configured JDBC batch size, which pooled sequence ids allow, and with a batch size of
+ * 1, which sends one insert per round trip as IDENTITY ids did. Each run rolls back, but document numbers
+ * are drawn and stock broadcasts are sent, so point it at a scratch database with at least one supplier
+ * and warehouse. Receipts are skipped while the stock writer is enabled, since they then commit on the
+ * writer thread.
+ */
+@Slf4j
+@Component
+@Profile("insert-benchmark")
+@RequiredArgsConstructor
+public class InsertBenchmarkRunner implements ApplicationRunner {
+
+    private static final String PRODUCT_HEADER = "sku,name,unit,unitPrice\n";
+
+    private final BatchImportService batchImportService;
+    private final PurchaseOrderService purchaseOrderService;
+    private final StockWritePipeline stockWritePipeline;
+    private final ProductRepository productRepository;
+    private final SupplierRepository supplierRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${inventory.benchmark.rows:20000}")
+    private int rows;
+
+    @Value("${inventory.benchmark.order-items:500}")
+    private int orderItems;
+
+    @Value("${inventory.benchmark.rounds:3}")
+    private int rounds;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        Long supplierId = supplierRepository.findAll(PageRequest.of(0, 1)).stream()
+                .findFirst().map(s -> s.getId()).orElse(null);
+        Long warehouseId = warehouseRepository.findAll(PageRequest.of(0, 1)).stream()
+                .findFirst().map(Warehouse::getId).orElse(null);
+        boolean receipts = supplierId != null && warehouseId != null && !stockWritePipeline.isEnabled();
+        if (!receipts) {
+            log.warn("Insert benchmark skips receipts: it needs a supplier, a warehouse and the stock writer off");
+        }
+
+        for (int round = 1; round <= rounds; round++) {
+            for (boolean batched : new boolean[] {true, false}) {
+                List<Phase> phases = runRound(statistics, batched, receipts, supplierId, warehouseId);
+                for (Phase phase : phases) {
+                    log.info("Insert benchmark round {} {} {}: {} rows, {} rows/s, {} inserts in {} statements",
+                            round, batched ? "batched" : "per-row", phase.name(), phase.rows(),
+                            phase.rows() * 1_000_000_000L / Math.max(phase.nanos(), 1),
+                            phase.inserts(), phase.statements());
+                }
+            }
+        }
+    }
+
+    private List<Phase> runRound(Statistics statistics, boolean batched, boolean receipts,
+                                 Long supplierId, Long warehouseId) {
+        return transactionTemplate.execute(status -> {
+            if (!batched) {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+            }
+            List<Phase> phases = new ArrayList<>();
+            String prefix = "BENCH-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+
+            StringBuilder csv = new StringBuilder(PRODUCT_HEADER);
+            for (int i = 0; i < rows; i++) {
+                csv.append(prefix).append(i).append(",Benchmark product ").append(i).append(",pcs,1.00\n");
+            }
+            ByteArrayResource file = new ByteArrayResource(csv.toString().getBytes(StandardCharsets.UTF_8));
+            BatchImportResult imported = measure(statistics, "product import", rows, phases,
+                    () -> batchImportService.importProductsFromCsv(file));
+
+            if (receipts && imported.getImported() > 0) {
+                List<String> skus = new ArrayList<>();
+                for (int i = 0; i < Math.min(orderItems, rows); i++) {
+                    skus.add(prefix + i);
+                }
+                List<PurchaseOrderItemRequest> items = productRepository.findIdsBySkuIn(skus).stream()
+                        .map(p -> PurchaseOrderItemRequest.builder()
+                                .productId(p.getId()).quantity(10).unitPrice(BigDecimal.ONE).build())
+                        .collect(Collectors.toList());
+                CreatePurchaseOrderRequest request = CreatePurchaseOrderRequest.builder()
+                        .supplierId(supplierId).warehouseId(warehouseId).items(items).build();
+
+                PurchaseOrderResponse order = measure(statistics, "order create", items.size(), phases,
+                        () -> purchaseOrderService.createDraft(request));
+                purchaseOrderService.submitOrder(order.getId());
+                purchaseOrderService.approveOrder(order.getId());
+                measure(statistics, "order receipt", items.size(), phases,
+                        () -> purchaseOrderService.receiveOrder(order.getId(), null));
+            }
+
+            entityManager.flush();
+            status.setRollbackOnly();
+            return phases;
+        });
+    }
+
+    private <T> T measure(Statistics statistics, String name, int count, List<Phase> phases,
+                          Supplier<T> work) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        long started = System.nanoTime();
+        T result = work.get();
+        entityManager.flush();
+        long elapsed = System.nanoTime() - started;
+        phases.add(new Phase(name, count, elapsed, statistics.getEntityInsertCount(),
+                statistics.getPrepareStatementCount()));
+        return result;
+    }
+
+    private record Phase(String name, long rows, long nanos, long inserts, long statements) {
+    }
+}
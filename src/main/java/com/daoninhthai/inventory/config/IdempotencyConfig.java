@@ -0,0 +1,21 @@
+package com.daoninhthai.inventory.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "inventory.idempotency")
+public class IdempotencyConfig {
+
+    // How long a key and its stored response are kept
+    private long ttlHours = 24;
+    // After this, a key left in progress by a crashed instance may be taken over
+    private long leaseSeconds = 60;
+    // How long a duplicate request waits for the original one to finish
+    private long waitTimeoutMs = 30000;
+    private int cacheSize = 10000;
+}
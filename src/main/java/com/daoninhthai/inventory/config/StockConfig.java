@@ -0,0 +1,146 @@
+package com.daoninhthai.inventory.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "inventory.stock")
+public class StockConfig {
+
+    private int batchChunkSize = 500;
+
+    // Attempts for multi-row stock transactions and transfers that lose a deadlock or lock wait
+    private int lockRetryAttempts = 3;
+
+    private long reservationTtlSeconds = 900;
+
+    private Writer writer = new Writer();
+
+    private Ledger ledger = new Ledger();
+
+    private MovementJournal movementJournal = new MovementJournal();
+
+    private MovementPartitions movementPartitions = new MovementPartitions();
+
+    private MovementArchive movementArchive = new MovementArchive();
+
+    private ChangeLog changeLog = new ChangeLog();
+
+    private DemandStats demandStats = new DemandStats();
+
+    private ImportJobs importJobs = new ImportJobs();
+
+    private ImportPipeline importPipeline = new ImportPipeline();
+
+    @Getter
+    @Setter
+    public static class Writer {
+        // Route adjust/receive/reserve through one writer thread per warehouse; transfers run outside it
+        private boolean enabled = false;
+        private long batchWindowMs = 2;
+        private int maxBatchSize = 256;
+        private int queueCapacity = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Ledger {
+        // Buffer scanner deltas in memory and write them behind in aggregated flushes
+        private boolean enabled = false;
+        private long flushIntervalMs = 1000;
+        private int flushMaxEvents = 5000;
+        private String journalPath = "data/stock-ledger.journal";
+        private boolean journalFsync = true;
+    }
+
+    @Getter
+    @Setter
+    public static class MovementJournal {
+        // Record single movements through the outbox and move them to stock_movements in batches
+        private boolean enabled = false;
+        private int bufferCapacity = 8192;
+        private int maxBatchSize = 500;
+        private long batchWindowMs = 5;
+        private long sweepIntervalMs = 5000;
+        // Outbox rows older than this are moved by the sweep even if no writer picked them up
+        private long sweepAgeMs = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class MovementPartitions {
+        // Monthly stock_movements partitions kept created ahead of the current month
+        private int monthsAhead = 3;
+        // Partitions entirely older than this many months are detached; 0 keeps everything attached
+        private int retentionMonths = 0;
+        private boolean dropDetached = false;
+    }
+
+    @Getter
+    @Setter
+    public static class MovementArchive {
+        // Move monthly partitions older than archive-after-months into local segment files
+        private boolean enabled = false;
+        private String path = "data/movement-archive";
+        private int archiveAfterMonths = 12;
+        private int blockRows = 4096;
+    }
+
+    @Getter
+    @Setter
+    public static class ChangeLog {
+        // Local append-only log behind GET /api/stock/changes
+        private boolean enabled = false;
+        private String path = "data/stock-changes";
+        private int segmentBytes = 64 * 1024 * 1024;
+        private long retentionBytes = 1024L * 1024 * 1024;
+        private long retentionHours = 168;
+    }
+
+    @Getter
+    @Setter
+    public static class DemandStats {
+        // Weight of the newest day in the exponentially decayed daily demand
+        private double ewmaAlpha = 0.1;
+        // How far back the first fold starts when demand_stats is empty
+        private int backfillDays = 365;
+    }
+
+    @Getter
+    @Setter
+    public static class ImportJobs {
+        // Uploads are spooled here until their job finishes; must survive restarts for jobs to resume
+        private String path = "data/import-jobs";
+        // Name under which this instance spools uploads and claims their jobs; blank uses the host name.
+        // Keep it stable across restarts so a replacement instance with the same disk resumes the jobs.
+        private String node;
+        // Jobs processed at once by this instance
+        private int workers = 2;
+        // Jobs running at once per tenant, unless overridden by tenant id below
+        private int maxConcurrentPerTenant = 1;
+        private Map<Long, Integer> tenantMaxConcurrent = new HashMap<>();
+        // A running job not checkpointed within this time is taken over by another worker
+        private long leaseSeconds = 120;
+        private long pollIntervalMs = 2000;
+        // Errors returned with the job status; all of them are kept
+        private int errorsInResponse = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class ImportPipeline {
+        // Threads parsing and validating chunks, shared by all imports; 0 uses one per core
+        private int parseThreads = 0;
+        // Characters per chunk handed to a parser; chunks end on record boundaries
+        private int chunkChars = 256 * 1024;
+        // Chunks read ahead of the writer per import; bounds memory when the database is the bottleneck
+        private int chunksInFlight = 16;
+    }
+}
@@ -1,5 +1,6 @@
 package com.daoninhthai.inventory.controller;
 
+import com.daoninhthai.inventory.dto.CursorPage;
 import com.daoninhthai.inventory.entity.AuditLog;
 import com.daoninhthai.inventory.service.AuditService;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +27,16 @@ public class AuditController {
         return ResponseEntity.ok(auditService.searchAuditLogs(entityType, entityId, userId, pageable));
     }
 
+    @GetMapping("/history")
+    public ResponseEntity<CursorPage<AuditLog>> getAuditHistory(
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) Long entityId,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(auditService.getAuditLogPage(entityType, entityId, userId, cursor, limit));
+    }
+
     @GetMapping("/entity/{entityType}/{entityId}")
     public ResponseEntity<List<AuditLog>> getEntityAuditTrail(
             @PathVariable String entityType,
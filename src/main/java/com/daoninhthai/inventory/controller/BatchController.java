@@ -1,8 +1,13 @@
 package com.daoninhthai.inventory.controller;
 
 import com.daoninhthai.inventory.dto.BatchImportResult;
+import com.daoninhthai.inventory.dto.ImportJobResponse;
+import com.daoninhthai.inventory.dto.ImportJobType;
+import com.daoninhthai.inventory.dto.ImportMode;
 import com.daoninhthai.inventory.service.BatchExportService;
 import com.daoninhthai.inventory.service.BatchImportService;
+import com.daoninhthai.inventory.service.BulkImportService;
+import com.daoninhthai.inventory.service.ImportJobService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -10,6 +15,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
+
 @RestController
 @RequestMapping("/api/batch")
 @RequiredArgsConstructor
@@ -17,19 +24,44 @@ public class BatchController {
 
     private final BatchImportService batchImportService;
     private final BatchExportService batchExportService;
+    private final BulkImportService bulkImportService;
+    private final ImportJobService importJobService;
 
     @PostMapping("/import/products")
-    public ResponseEntity<BatchImportResult> importProducts(@RequestParam("file") MultipartFile file) {
-        BatchImportResult result = batchImportService.importProductsFromCsv(file);
+    public ResponseEntity<BatchImportResult> importProducts(@RequestParam("file") MultipartFile file,
+                                                            @RequestParam(defaultValue = "STANDARD") ImportMode mode) {
+        BatchImportResult result = mode == ImportMode.BULK
+                ? bulkImportService.importProductsFromCsv(file)
+                : batchImportService.importProductsFromCsv(file);
         return ResponseEntity.ok(result);
     }
 
     @PostMapping("/import/stock")
-    public ResponseEntity<BatchImportResult> importStock(@RequestParam("file") MultipartFile file) {
-        BatchImportResult result = batchImportService.importStockFromCsv(file);
+    public ResponseEntity<BatchImportResult> importStock(@RequestParam("file") MultipartFile file,
+                                                         @RequestParam(defaultValue = "STANDARD") ImportMode mode) {
+        BatchImportResult result = mode == ImportMode.BULK
+                ? bulkImportService.importStockFromCsv(file)
+                : batchImportService.importStockFromCsv(file);
         return ResponseEntity.ok(result);
     }
 
+    @PostMapping("/jobs/products")
+    public ResponseEntity<ImportJobResponse> submitProductImport(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam(defaultValue = "STANDARD") ImportMode mode) {
+        return accepted(importJobService.submit(ImportJobType.PRODUCTS, mode, file));
+    }
+
+    @PostMapping("/jobs/stock")
+    public ResponseEntity<ImportJobResponse> submitStockImport(@RequestParam("file") MultipartFile file,
+                                                               @RequestParam(defaultValue = "STANDARD") ImportMode mode) {
+        return accepted(importJobService.submit(ImportJobType.STOCK, mode, file));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ImportJobResponse> getImportJob(@PathVariable Long id) {
+        return ResponseEntity.ok(importJobService.getJob(id));
+    }
+
     @GetMapping("/export/products")
     public ResponseEntity<byte[]> exportProducts() {
         String csv = batchExportService.exportProductsToCsv();
@@ -47,4 +79,8 @@ public class BatchController {
                 .contentType(MediaType.parseMediaType("text/csv"))
                 .body(csv.getBytes());
     }
+
+    private static ResponseEntity<ImportJobResponse> accepted(ImportJobResponse job) {
+        return ResponseEntity.accepted().location(URI.create("/api/batch/jobs/" + job.getId())).body(job);
+    }
 }
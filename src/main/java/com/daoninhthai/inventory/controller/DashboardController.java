@@ -5,9 +5,11 @@ import com.daoninhthai.inventory.dto.ProductMovementSummary;
 import com.daoninhthai.inventory.dto.StockValueReport;
 import com.daoninhthai.inventory.service.DashboardService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -39,4 +41,12 @@ public class DashboardController {
             @RequestParam(defaultValue = "30") int days) {
         return ResponseEntity.ok(dashboardService.getStockTrends(days));
     }
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int rows = dashboardService.rebuildMovementRollups(from, to);
+        return ResponseEntity.ok(Map.of("from", from, "to", to, "rows", rows));
+    }
 }
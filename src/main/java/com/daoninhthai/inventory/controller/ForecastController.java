@@ -1,35 +1,42 @@
 package com.daoninhthai.inventory.controller;
 
+import com.daoninhthai.inventory.dto.DemandStatsResponse;
 import com.daoninhthai.inventory.dto.ForecastResponse;
 import com.daoninhthai.inventory.dto.InsightResponse;
 import com.daoninhthai.inventory.dto.ReorderSuggestionResponse;
 import com.daoninhthai.inventory.entity.Product;
-import com.daoninhthai.inventory.entity.StockMovement;
 import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.MovementRollupRepository;
 import com.daoninhthai.inventory.repository.ProductRepository;
 import com.daoninhthai.inventory.repository.StockLevelRepository;
 import com.daoninhthai.inventory.service.AiForecastService;
 import com.daoninhthai.inventory.service.DashboardService;
-import com.daoninhthai.inventory.service.StockMovementService;
+import com.daoninhthai.inventory.service.DemandStatsService;
+import com.daoninhthai.inventory.service.SupplierLeadTimeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/forecast")
 @RequiredArgsConstructor
 public class ForecastController {
 
+    private static final int HISTORY_DAYS = 180;
+    // Used until the product has been received at least once
+    private static final int DEFAULT_LEAD_TIME_DAYS = 7;
+
     private final AiForecastService aiForecastService;
-    private final StockMovementService stockMovementService;
     private final ProductRepository productRepository;
+    private final MovementRollupRepository movementRollupRepository;
     private final StockLevelRepository stockLevelRepository;
     private final DashboardService dashboardService;
+    private final DemandStatsService demandStatsService;
+    private final SupplierLeadTimeService supplierLeadTimeService;
 
     @GetMapping("/demand/{productId}")
     public ResponseEntity<ForecastResponse> getDemandForecast(
@@ -39,24 +46,22 @@ public class ForecastController {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
 
-        List<StockMovement> movements = stockMovementService.getMovementHistory(
-                productId,
-                LocalDateTime.now().minusDays(180),
-                LocalDateTime.now()
-        );
-
-        List<Map<String, Object>> historicalData = movements.stream()
-                .map(m -> {
-                    Map<String, Object> point = new HashMap<>();
-                    point.put("date", m.getCreatedAt().toLocalDate().toString());
-                    point.put("quantity", m.getQuantity());
-                    return point;
-                })
-                .collect(Collectors.toList());
+        // Dense series of closed days; today's partial demand would bias the last point. It starts at the
+        // product's first movement, so days before the product existed are not read as zero demand and a
+        // product without history sends too few points for the forecast service to accept.
+        LocalDate to = LocalDate.now().minusDays(1);
+        LocalDate from = to.minusDays(HISTORY_DAYS - 1);
+        Optional<LocalDate> firstActivity = movementRollupRepository.findFirstActivityDay(productId);
+        if (firstActivity.isEmpty() || firstActivity.get().isAfter(from)) {
+            from = firstActivity.orElse(LocalDate.now());
+        }
+        long[] quantities = from.isAfter(to)
+                ? new long[0] : movementRollupRepository.findDailyOutSeries(productId, from, to);
 
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("product_id", productId);
-        requestBody.put("historical_data", historicalData);
+        requestBody.put("start_date", from.toString());
+        requestBody.put("quantities", quantities);
         requestBody.put("periods_ahead", periodsAhead);
 
         ForecastResponse response = aiForecastService.getDemandForecast(requestBody);
@@ -70,28 +75,17 @@ public class ForecastController {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
 
-        List<StockMovement> movements = stockMovementService.getMovementHistory(
-                productId,
-                LocalDateTime.now().minusDays(90),
-                LocalDateTime.now()
-        );
-
-        double avgDailyDemand = movements.isEmpty() ? 0 :
-                movements.stream().mapToInt(StockMovement::getQuantity).sum() / 90.0;
-
-        double stdDev = 0;
-        if (!movements.isEmpty()) {
-            double mean = movements.stream().mapToInt(StockMovement::getQuantity).average().orElse(0);
-            stdDev = Math.sqrt(movements.stream()
-                    .mapToDouble(m -> Math.pow(m.getQuantity() - mean, 2))
-                    .average().orElse(0));
-        }
+        DemandStatsResponse stats = demandStatsService.getDemandStats(productId, null);
+        double avgDailyDemand = stats.getWindowMeanDailyDemand();
+        double stdDev = stats.getWindowStdDevDailyDemand();
 
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("product_id", productId);
         requestBody.put("average_daily_demand", avgDailyDemand);
         requestBody.put("demand_std_dev", stdDev);
-        requestBody.put("lead_time_days", 7);
+        requestBody.put("lead_time_days", supplierLeadTimeService.findLeadTimeForProduct(productId)
+                .map(leadTime -> (int) Math.max(1, Math.ceil(leadTime.getMeanDays())))
+                .orElse(DEFAULT_LEAD_TIME_DAYS));
         requestBody.put("ordering_cost", 50.0);
         requestBody.put("holding_cost_per_unit",
                 product.getUnitPrice() != null ? product.getUnitPrice().doubleValue() * 0.2 : 1.0);
@@ -103,6 +97,19 @@ public class ForecastController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/demand-stats/{productId}")
+    public ResponseEntity<DemandStatsResponse> getDemandStats(
+            @PathVariable Long productId,
+            @RequestParam(required = false) Long warehouseId) {
+        return ResponseEntity.ok(demandStatsService.getDemandStats(productId, warehouseId));
+    }
+
+    @PostMapping("/demand-stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildDemandStats() {
+        int days = demandStatsService.rebuild();
+        return ResponseEntity.ok(Map.of("daysFolded", days));
+    }
+
     @PostMapping("/insights")
     public ResponseEntity<InsightResponse> getInsights(@RequestBody(required = false) Map<String, Object> body) {
         Map<String, Object> stockData = new HashMap<>();
@@ -4,6 +4,7 @@ import com.daoninhthai.inventory.dto.CreatePurchaseOrderRequest;
 import com.daoninhthai.inventory.dto.PurchaseOrderResponse;
 import com.daoninhthai.inventory.dto.ReceiveOrderRequest;
 import com.daoninhthai.inventory.entity.OrderStatus;
+import com.daoninhthai.inventory.service.IdempotencyService;
 import com.daoninhthai.inventory.service.PurchaseOrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -15,12 +16,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
+
 @RestController
 @RequestMapping("/api/purchase-orders")
 @RequiredArgsConstructor
 public class PurchaseOrderController {
 
     private final PurchaseOrderService purchaseOrderService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping
     public ResponseEntity<Page<PurchaseOrderResponse>> getAllOrders(
@@ -57,8 +61,11 @@ public class PurchaseOrderController {
     @PostMapping("/{id}/receive")
     public ResponseEntity<PurchaseOrderResponse> receiveOrder(
             @PathVariable Long id,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody(required = false) ReceiveOrderRequest request) {
-        return ResponseEntity.ok(purchaseOrderService.receiveOrder(id, request));
+        return ResponseEntity.ok(idempotencyService.execute("po-receive", idempotencyKey,
+                Arrays.asList(id, request), PurchaseOrderResponse.class,
+                () -> purchaseOrderService.receiveOrder(id, request)));
     }
 
     @PostMapping("/{id}/cancel")
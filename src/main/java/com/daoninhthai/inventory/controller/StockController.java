@@ -1,12 +1,27 @@
 package com.daoninhthai.inventory.controller;
 
 import com.daoninhthai.inventory.dto.*;
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.service.IdempotencyService;
+import com.daoninhthai.inventory.service.StockBatchService;
+import com.daoninhthai.inventory.service.StockChangeLog;
+import com.daoninhthai.inventory.service.StockMovementService;
+import com.daoninhthai.inventory.service.StockReservationService;
 import com.daoninhthai.inventory.service.StockService;
+import com.daoninhthai.inventory.service.StockSnapshotService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -15,6 +30,12 @@ import java.util.List;
 public class StockController {
 
     private final StockService stockService;
+    private final StockBatchService stockBatchService;
+    private final StockMovementService stockMovementService;
+    private final StockReservationService stockReservationService;
+    private final StockSnapshotService stockSnapshotService;
+    private final StockChangeLog stockChangeLog;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping
     public ResponseEntity<List<StockLevelResponse>> getAllStockLevels() {
@@ -32,6 +53,85 @@ public class StockController {
         return ResponseEntity.ok(stockService.getStockLevel(productId, warehouseId));
     }
 
+    @GetMapping("/product/{productId}/warehouse/{warehouseId}/availability")
+    public ResponseEntity<StockAvailabilityResponse> getAvailability(
+            @PathVariable Long productId, @PathVariable Long warehouseId) {
+        return ResponseEntity.ok(stockReservationService.getAvailability(productId, warehouseId));
+    }
+
+    @GetMapping("/product/{productId}/warehouse/{warehouseId}/as-of")
+    public ResponseEntity<StockAsOfResponse> getStockAsOf(
+            @PathVariable Long productId, @PathVariable Long warehouseId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(stockSnapshotService.getStockAsOf(productId, warehouseId, at));
+    }
+
+    @GetMapping("/product/{productId}/warehouse/{warehouseId}/history")
+    public ResponseEntity<StockBalanceHistoryResponse> getBalanceHistory(
+            @PathVariable Long productId, @PathVariable Long warehouseId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(stockSnapshotService.getDailyBalances(productId, warehouseId, from, to));
+    }
+
+    @GetMapping("/product/{productId}/movements")
+    public ResponseEntity<List<StockMovementResponse>> getMovementHistory(
+            @PathVariable Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(stockMovementService.getMovementHistory(productId, from, to));
+    }
+
+    @PutMapping("/product/{productId}/warehouse/{warehouseId}/split")
+    public ResponseEntity<Void> splitStockLevel(
+            @PathVariable Long productId, @PathVariable Long warehouseId,
+            @RequestParam int shards) {
+        stockService.splitStockLevel(productId, warehouseId, shards);
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("/product/{productId}/warehouse/{warehouseId}/split")
+    public ResponseEntity<Void> mergeStockLevel(
+            @PathVariable Long productId, @PathVariable Long warehouseId) {
+        stockService.splitStockLevel(productId, warehouseId, 1);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/movements")
+    public ResponseEntity<CursorPage<StockMovementResponse>> getMovements(
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) MovementType type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(stockMovementService.getMovementPage(productId, warehouseId, type, cursor, limit));
+    }
+
+    /**
+     * Stock changes after {@code after} as newline-delimited JSON, written straight from the change log.
+     * Pass the returned X-Next-Offset as {@code after} to continue; an X-Log-Start-Offset above
+     * {@code after + 1} means older changes were already removed by retention.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<StreamingResponseBody> getChanges(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "1000") int limit) {
+        StockChangeLog.ChangeBatch batch = stockChangeLog.read(after, limit);
+        StreamingResponseBody body = out -> {
+            WritableByteChannel channel = Channels.newChannel(out);
+            for (ByteBuffer record : batch.records()) {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .header("X-Next-Offset", String.valueOf(batch.lastOffset()))
+                .header("X-Log-Start-Offset", String.valueOf(batch.logStartOffset()))
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     @GetMapping("/alerts")
     public ResponseEntity<List<LowStockAlert>> getLowStockAlerts() {
         return ResponseEntity.ok(stockService.getLowStockAlerts());
@@ -39,14 +139,38 @@ public class StockController {
 
     @PostMapping("/adjust")
     public ResponseEntity<StockLevelResponse> adjustStock(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody StockAdjustmentRequest request) {
-        return ResponseEntity.ok(stockService.adjustStock(request));
+        return ResponseEntity.ok(idempotencyService.execute("stock-adjust", idempotencyKey, request,
+                StockLevelResponse.class, () -> stockService.adjustStock(request)));
+    }
+
+    @PostMapping("/adjust/batch")
+    public ResponseEntity<StockAdjustmentBatchResult> adjustStockBatch(
+            @Valid @RequestBody StockAdjustmentBatchRequest request) {
+        return ResponseEntity.ok(stockBatchService.adjustStockBatch(request));
+    }
+
+    @PostMapping("/scan")
+    public ResponseEntity<Void> scanStock(@Valid @RequestBody StockScanRequest request) {
+        stockService.scanStock(request);
+        return ResponseEntity.accepted().build();
     }
 
     @PostMapping("/transfer")
     public ResponseEntity<Void> transferStock(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody StockTransferRequest request) {
-        stockService.transferStock(request);
+        idempotencyService.execute("stock-transfer", idempotencyKey, request, Void.class, () -> {
+            stockService.transferStock(request);
+            return null;
+        });
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<StockTransferBatchResult> transferStockBatch(
+            @Valid @RequestBody StockTransferBatchRequest request) {
+        return ResponseEntity.ok(stockBatchService.transferStockBatch(request));
+    }
 }
@@ -0,0 +1,39 @@
+package com.daoninhthai.inventory.controller;
+
+import com.daoninhthai.inventory.dto.StockReservationRequest;
+import com.daoninhthai.inventory.dto.StockReservationResponse;
+import com.daoninhthai.inventory.service.StockReservationService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/reservations")
+@RequiredArgsConstructor
+public class StockReservationController {
+
+    private final StockReservationService stockReservationService;
+
+    @PostMapping
+    public ResponseEntity<StockReservationResponse> reserve(
+            @Valid @RequestBody StockReservationRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(stockReservationService.reserve(request));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<StockReservationResponse> getReservation(@PathVariable Long id) {
+        return ResponseEntity.ok(stockReservationService.getReservation(id));
+    }
+
+    @PostMapping("/{id}/commit")
+    public ResponseEntity<StockReservationResponse> commit(@PathVariable Long id) {
+        return ResponseEntity.ok(stockReservationService.commit(id));
+    }
+
+    @PostMapping("/{id}/release")
+    public ResponseEntity<StockReservationResponse> release(@PathVariable Long id) {
+        return ResponseEntity.ok(stockReservationService.release(id));
+    }
+}
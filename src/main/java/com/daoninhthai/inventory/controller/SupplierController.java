@@ -1,6 +1,8 @@
 package com.daoninhthai.inventory.controller;
 
+import com.daoninhthai.inventory.dto.SupplierLeadTimeResponse;
 import com.daoninhthai.inventory.entity.Supplier;
+import com.daoninhthai.inventory.service.SupplierLeadTimeService;
 import com.daoninhthai.inventory.service.SupplierService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -15,6 +17,7 @@ import java.util.List;
 public class SupplierController {
 
     private final SupplierService supplierService;
+    private final SupplierLeadTimeService supplierLeadTimeService;
 
     @GetMapping
     public ResponseEntity<List<Supplier>> getAllSuppliers() {
@@ -26,6 +29,17 @@ public class SupplierController {
         return ResponseEntity.ok(supplierService.getSupplierById(id));
     }
 
+    @GetMapping("/{id}/lead-time")
+    public ResponseEntity<SupplierLeadTimeResponse> getLeadTime(
+            @PathVariable Long id, @RequestParam(required = false) Long productId) {
+        return ResponseEntity.ok(supplierLeadTimeService.getLeadTime(id, productId));
+    }
+
+    @GetMapping("/{id}/lead-times")
+    public ResponseEntity<List<SupplierLeadTimeResponse>> getProductLeadTimes(@PathVariable Long id) {
+        return ResponseEntity.ok(supplierLeadTimeService.getProductLeadTimes(id));
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<Supplier>> searchSuppliers(@RequestParam String name) {
         return ResponseEntity.ok(supplierService.searchSuppliers(name));
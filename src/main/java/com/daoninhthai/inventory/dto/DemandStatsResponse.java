@@ -0,0 +1,27 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DemandStatsResponse {
+    private Long productId;
+    // Null for the product across all warehouses
+    private Long warehouseId;
+    // Last closed day included in the statistics
+    private LocalDate throughDay;
+    private long daysObserved;
+    private double meanDailyDemand;
+    private double stdDevDailyDemand;
+    private double ewmaDailyDemand;
+    private int windowDays;
+    private double windowMeanDailyDemand;
+    private double windowStdDevDailyDemand;
+}
@@ -0,0 +1,36 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobResponse {
+    private Long id;
+    private ImportJobType type;
+    private ImportMode mode;
+    private ImportJobStatus status;
+    private String fileName;
+    private long fileBytes;
+    private long bytesProcessed;
+    // Data rows processed so far, imported or failed
+    private long rowsProcessed;
+    private long imported;
+    private long failed;
+    // Rates of the current (or last) run; a resumed job starts measuring again
+    private Double rowsPerSecond;
+    private Long etaSeconds;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    // The first errors by row; the job keeps all of them
+    private List<BatchImportResult.ImportError> errors;
+}
@@ -0,0 +1,8 @@
+package com.daoninhthai.inventory.dto;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package com.daoninhthai.inventory.dto;
+
+public enum ImportJobType {
+    PRODUCTS,
+    STOCK
+}
@@ -0,0 +1,11 @@
+package com.daoninhthai.inventory.dto;
+
+/**
+ * How a CSV import is applied: STANDARD saves rows through JPA one batch at a time, BULK streams the file
+ * into a staging table with COPY and merges it with set-based SQL. BULK pays a fixed setup cost and suits
+ * large files.
+ */
+public enum ImportMode {
+    STANDARD,
+    BULK
+}
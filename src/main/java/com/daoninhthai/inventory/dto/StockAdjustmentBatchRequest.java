@@ -0,0 +1,26 @@
+package com.daoninhthai.inventory.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentBatchRequest {
+
+    @NotEmpty(message = "At least one line is required")
+    @Valid
+    private List<StockAdjustmentRequest> items;
+
+    // Lines per transaction; 0 applies the whole batch atomically. Defaults to inventory.stock.batch-chunk-size.
+    @PositiveOrZero(message = "Chunk size must not be negative")
+    private Integer chunkSize;
+}
@@ -0,0 +1,44 @@
+package com.daoninhthai.inventory.dto;
+
+import com.daoninhthai.inventory.entity.MovementType;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockAdjustmentBatchResult {
+
+    private int totalLines;
+    private int applied;
+    private int failed;
+
+    @Builder.Default
+    private List<LineResult> lines = new ArrayList<>();
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class LineResult {
+        private int line;
+        private Long productId;
+        private Long warehouseId;
+        private MovementType type;
+        private Integer quantity;
+        private LineStatus status;
+        private Integer previousQuantity;
+        private Integer newQuantity;
+        private String message;
+    }
+
+    public enum LineStatus {
+        APPLIED,
+        FAILED
+    }
+}
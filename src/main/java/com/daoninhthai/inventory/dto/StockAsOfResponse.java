@@ -0,0 +1,22 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAsOfResponse {
+    private Long productId;
+    private Long warehouseId;
+    private LocalDateTime at;
+    private int quantity;
+    // Snapshot the balance was replayed from; null when no snapshot precedes the requested time
+    private LocalDateTime snapshotTakenAt;
+    private int replayedMovements;
+}
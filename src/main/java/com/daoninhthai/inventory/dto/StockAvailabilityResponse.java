@@ -0,0 +1,18 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAvailabilityResponse {
+    private Long productId;
+    private Long warehouseId;
+    private int onHand;
+    private int reserved;
+    private int available;
+}
@@ -0,0 +1,31 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBalanceHistoryResponse {
+
+    private Long productId;
+    private Long warehouseId;
+    private LocalDate from;
+    private LocalDate to;
+    private List<DailyBalance> balances;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DailyBalance {
+        private LocalDate date;
+        private int closingQuantity;
+    }
+}
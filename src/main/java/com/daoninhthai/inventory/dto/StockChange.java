@@ -0,0 +1,23 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockChange {
+
+    private Long offset;
+    private Long productId;
+    private String productSku;
+    private Long warehouseId;
+    private String warehouseCode;
+    private Integer oldQuantity;
+    private Integer newQuantity;
+    private String changeType;
+    private LocalDateTime timestamp;
+}
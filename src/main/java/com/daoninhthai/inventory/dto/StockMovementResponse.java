@@ -0,0 +1,25 @@
+package com.daoninhthai.inventory.dto;
+
+import com.daoninhthai.inventory.entity.MovementType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovementResponse {
+    private Long id;
+    private Long productId;
+    private Long warehouseId;
+    private MovementType type;
+    private Integer quantity;
+    private String reference;
+    private String notes;
+    private String createdBy;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.daoninhthai.inventory.dto;
+
+import com.daoninhthai.inventory.entity.ReservationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationResponse {
+    private Long id;
+    private Long productId;
+    private Long warehouseId;
+    private Integer quantity;
+    private String reference;
+    private ReservationStatus status;
+    private LocalDateTime expiresAt;
+    private LocalDateTime createdAt;
+}
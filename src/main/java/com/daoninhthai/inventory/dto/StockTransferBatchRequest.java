@@ -0,0 +1,45 @@
+package com.daoninhthai.inventory.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferBatchRequest {
+
+    @NotNull(message = "Source warehouse ID is required")
+    private Long fromWarehouseId;
+
+    @NotNull(message = "Destination warehouse ID is required")
+    private Long toWarehouseId;
+
+    @NotEmpty(message = "Transfer lines are required")
+    @Valid
+    private List<Line> items;
+
+    private String notes;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+
+        @NotNull(message = "Product ID is required")
+        private Long productId;
+
+        @NotNull(message = "Quantity is required")
+        @Positive(message = "Quantity must be positive")
+        private Integer quantity;
+    }
+}
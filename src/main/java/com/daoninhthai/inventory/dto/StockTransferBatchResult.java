@@ -0,0 +1,34 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferBatchResult {
+
+    private String reference;
+    private Long fromWarehouseId;
+    private Long toWarehouseId;
+    private int totalLines;
+    private int totalQuantity;
+    private List<LineResult> lines;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineResult {
+        private Long productId;
+        private String productSku;
+        private int quantity;
+        private int sourceQuantity;
+        private int destinationQuantity;
+    }
+}
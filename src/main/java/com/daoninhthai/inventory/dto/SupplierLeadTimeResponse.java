@@ -0,0 +1,25 @@
+package com.daoninhthai.inventory.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SupplierLeadTimeResponse {
+    private Long supplierId;
+    // Null for the supplier across all products
+    private Long productId;
+    private long receivedOrders;
+    private double meanDays;
+    private double varianceDays;
+    private double stdDevDays;
+    // Whole days within which 90% of the orders were received
+    private int p90Days;
+    private LocalDateTime lastReceivedAt;
+}
@@ -8,9 +8,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "audit_logs", indexes = {
-        @Index(name = "idx_audit_entity", columnList = "entity_type,entity_id"),
-        @Index(name = "idx_audit_user", columnList = "user_id"),
-        @Index(name = "idx_audit_timestamp", columnList = "timestamp")
+        @Index(name = "idx_audit_entity_timestamp", columnList = "entity_type,entity_id,timestamp,id"),
+        @Index(name = "idx_audit_user_timestamp", columnList = "user_id,timestamp,id"),
+        @Index(name = "idx_audit_timestamp_id", columnList = "timestamp,id")
 })
 @Getter
 @Setter
@@ -20,7 +20,8 @@ import java.time.LocalDateTime;
 public class AuditLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_logs_id_seq")
+    @SequenceGenerator(name = "audit_logs_id_seq", sequenceName = "audit_logs_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "entity_type", nullable = false, length = 30)
@@ -0,0 +1,8 @@
+package com.daoninhthai.inventory.entity;
+
+public enum ReservationStatus {
+    ACTIVE,
+    COMMITTED,
+    RELEASED,
+    EXPIRED
+}
@@ -2,6 +2,7 @@ package com.daoninhthai.inventory.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -18,7 +19,8 @@ import java.time.LocalDateTime;
 public class StockLevel {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_levels_id_seq")
+    @SequenceGenerator(name = "stock_levels_id_seq", sequenceName = "stock_levels_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -33,6 +35,19 @@ public class StockLevel {
     @Builder.Default
     private Integer quantity = 0;
 
+    @Column(name = "shard_count", nullable = false)
+    @Builder.Default
+    private Integer shardCount = 1;
+
+    // On-hand total: this row's quantity plus the split counter buckets, if any.
+    @Formula("(CASE WHEN shard_count > 1 THEN quantity + (SELECT COALESCE(SUM(s.quantity), 0) " +
+            "FROM stock_level_shards s WHERE s.stock_level_id = id) ELSE quantity END)")
+    private Integer totalQuantity;
+
+    // Held by active reservations; maintained by SQL only, so entity saves never overwrite it
+    @Column(name = "reserved_quantity", insertable = false, updatable = false)
+    private Integer reservedQuantity;
+
     @Column(name = "min_quantity")
     private Integer minQuantity;
 
@@ -32,4 +32,33 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
                                    @Param("entityId") Long entityId,
                                    @Param("userId") String userId,
                                    Pageable pageable);
+
+    // Keyset pages, newest first, each backed by a (filter, timestamp, id) index
+
+    @Query(value = "SELECT * FROM audit_logs WHERE entity_type = :entityType AND entity_id = :entityId " +
+            "AND (timestamp, id) < (:timestamp, :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<AuditLog> findPageByEntityBefore(@Param("entityType") String entityType,
+                                          @Param("entityId") Long entityId,
+                                          @Param("timestamp") LocalDateTime timestamp, @Param("id") long id,
+                                          @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM audit_logs WHERE user_id = :userId " +
+            "AND (timestamp, id) < (:timestamp, :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<AuditLog> findPageByUserBefore(@Param("userId") String userId,
+                                        @Param("timestamp") LocalDateTime timestamp, @Param("id") long id,
+                                        @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM audit_logs WHERE " +
+            "(CAST(:entityType AS VARCHAR) IS NULL OR entity_type = :entityType) AND " +
+            "(CAST(:entityId AS BIGINT) IS NULL OR entity_id = :entityId) AND " +
+            "(CAST(:userId AS VARCHAR) IS NULL OR user_id = :userId) AND " +
+            "(timestamp, id) < (:timestamp, :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<AuditLog> findPageBefore(@Param("entityType") String entityType,
+                                  @Param("entityId") Long entityId,
+                                  @Param("userId") String userId,
+                                  @Param("timestamp") LocalDateTime timestamp, @Param("id") long id,
+                                  @Param("limit") int limit);
 }
@@ -0,0 +1,224 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Staging and set-based merge for bulk CSV imports. Rows are streamed with COPY into a temporary table,
+ * which PostgreSQL neither WAL-logs nor shares with other sessions and drops at commit, then validated
+ * and merged with a few statements. All methods must run in the same transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkImportRepository {
+
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+
+    private static final String PRODUCT_STAGING_SQL =
+            "CREATE TEMP TABLE import_products (line BIGINT NOT NULL, sku TEXT NOT NULL, name TEXT NOT NULL, " +
+            "unit TEXT, unit_price NUMERIC(12, 2), description TEXT, reorder_point INTEGER, " +
+            "reorder_quantity INTEGER, error TEXT) ON COMMIT DROP";
+
+    private static final String PRODUCT_COPY_SQL =
+            "COPY import_products (line, sku, name, unit, unit_price, description, reorder_point, reorder_quantity) " +
+            "FROM STDIN (FORMAT csv)";
+
+    private static final String PRODUCT_VALIDATE_SQL =
+            "UPDATE import_products i SET error = CASE " +
+            "WHEN length(i.sku) > 50 THEN 'SKU longer than 50 characters' " +
+            "WHEN length(i.name) > 255 THEN 'Name longer than 255 characters' " +
+            "WHEN length(i.unit) > 20 THEN 'Unit longer than 20 characters' " +
+            "ELSE 'Duplicate SKU in file: ' || i.sku || ' (first on line ' || d.first_line || ')' END " +
+            "FROM (SELECT line, min(line) OVER (PARTITION BY sku) AS first_line FROM import_products) d " +
+            "WHERE d.line = i.line " +
+            "AND (length(i.sku) > 50 OR length(i.name) > 255 OR length(i.unit) > 20 OR d.line > d.first_line)";
+
+    // SKUs already in the catalog, including ones committed concurrently, are left out by ON CONFLICT and
+    // found by the anti-join against the inserted rows
+    private static final String PRODUCT_MERGE_SQL =
+            "WITH inserted AS (" +
+            "INSERT INTO products (sku, name, description, unit, unit_price, reorder_point, reorder_quantity, active) " +
+            "SELECT sku, name, description, unit, unit_price, reorder_point, reorder_quantity, TRUE " +
+            "FROM import_products WHERE error IS NULL ORDER BY line " +
+            "ON CONFLICT (sku) DO NOTHING RETURNING sku) " +
+            "UPDATE import_products i SET error = 'Duplicate SKU: ' || i.sku " +
+            "WHERE i.error IS NULL AND NOT EXISTS (SELECT 1 FROM inserted WHERE inserted.sku = i.sku)";
+
+    private static final String STOCK_STAGING_SQL =
+            "CREATE TEMP TABLE import_stock (line BIGINT NOT NULL, sku TEXT NOT NULL, warehouse_code TEXT NOT NULL, " +
+            "quantity INTEGER NOT NULL, min_quantity INTEGER, max_quantity INTEGER, product_id BIGINT, " +
+            "warehouse_id BIGINT, error TEXT) ON COMMIT DROP";
+
+    private static final String STOCK_COPY_SQL =
+            "COPY import_stock (line, sku, warehouse_code, quantity, min_quantity, max_quantity) " +
+            "FROM STDIN (FORMAT csv)";
+
+    private static final String STOCK_RESOLVE_SQL =
+            "UPDATE import_stock i SET product_id = p.id, warehouse_id = w.id, error = CASE " +
+            "WHEN p.id IS NULL THEN 'Product not found: ' || i.sku " +
+            "WHEN w.id IS NULL THEN 'Warehouse not found: ' || i.warehouse_code END " +
+            "FROM import_stock s " +
+            "LEFT JOIN products p ON p.sku = s.sku " +
+            "LEFT JOIN warehouses w ON w.code = s.warehouse_code " +
+            "WHERE s.line = i.line";
+
+    // The last line for a product/warehouse wins, as when the file is applied row by row. Rows are written
+    // in StockKey order so a bulk load cannot deadlock with batch adjustments; split levels get their
+    // extra counters cleared so the imported quantity is the on-hand total
+    private static final String STOCK_MERGE_SQL =
+            "WITH latest AS (" +
+            "SELECT DISTINCT ON (product_id, warehouse_id) product_id, warehouse_id, quantity, min_quantity, max_quantity " +
+            "FROM import_stock WHERE error IS NULL ORDER BY product_id, warehouse_id, line DESC), " +
+            "upserted AS (" +
+            "INSERT INTO stock_levels AS sl (product_id, warehouse_id, quantity, min_quantity, max_quantity, last_updated) " +
+            "SELECT product_id, warehouse_id, quantity, min_quantity, max_quantity, CURRENT_TIMESTAMP " +
+            "FROM latest ORDER BY warehouse_id, product_id " +
+            "ON CONFLICT (product_id, warehouse_id) DO UPDATE SET quantity = EXCLUDED.quantity, " +
+            "min_quantity = COALESCE(EXCLUDED.min_quantity, sl.min_quantity), " +
+            "max_quantity = COALESCE(EXCLUDED.max_quantity, sl.max_quantity), " +
+            "last_updated = CURRENT_TIMESTAMP " +
+            "RETURNING sl.id, sl.shard_count) " +
+            "UPDATE stock_level_shards s SET quantity = 0 FROM upserted u " +
+            "WHERE s.stock_level_id = u.id AND u.shard_count > 1 AND s.quantity <> 0";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createProductStaging() {
+        jdbcTemplate.execute(PRODUCT_STAGING_SQL);
+    }
+
+    /**
+     * Streams rows of (line, sku, name, unit, unitPrice, description, reorderPoint, reorderQuantity).
+     */
+    public long copyProducts(CopySource source) {
+        long rows = copyIn(PRODUCT_COPY_SQL, source);
+        jdbcTemplate.execute("ANALYZE import_products");
+        return rows;
+    }
+
+    /**
+     * Validates the staged products and inserts the valid ones.
+     *
+     * @return the rejected lines, in line order
+     */
+    public List<RowError> mergeProducts() {
+        jdbcTemplate.update(PRODUCT_VALIDATE_SQL);
+        jdbcTemplate.update(PRODUCT_MERGE_SQL);
+        return findErrors("import_products");
+    }
+
+    public void createStockStaging() {
+        jdbcTemplate.execute(STOCK_STAGING_SQL);
+    }
+
+    /**
+     * Streams rows of (line, sku, warehouseCode, quantity, minQuantity, maxQuantity).
+     */
+    public long copyStock(CopySource source) {
+        long rows = copyIn(STOCK_COPY_SQL, source);
+        jdbcTemplate.execute("ANALYZE import_stock");
+        return rows;
+    }
+
+    /**
+     * Resolves the staged SKUs and warehouse codes and upserts the stock levels of the valid rows.
+     *
+     * @return the rejected lines, in line order
+     */
+    public List<RowError> mergeStock() {
+        jdbcTemplate.update(STOCK_RESOLVE_SQL);
+        jdbcTemplate.update(STOCK_MERGE_SQL);
+        return findErrors("import_stock");
+    }
+
+    private List<RowError> findErrors(String table) {
+        return jdbcTemplate.query("SELECT line, error FROM " + table + " WHERE error IS NOT NULL ORDER BY line",
+                (rs, rowNum) -> new RowError(rs.getLong("line"), rs.getString("error")));
+    }
+
+    private long copyIn(String sql, CopySource source) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                CopyWriter writer = new CopyWriter(copyIn);
+                source.writeTo(writer);
+                writer.flush();
+                return copyIn.endCopy();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+
+    @FunctionalInterface
+    public interface CopySource {
+        void writeTo(CopyWriter writer) throws IOException, SQLException;
+    }
+
+    /**
+     * Encodes rows as COPY CSV and sends them in 64K chunks. A null value is written as SQL NULL, any
+     * other value as its quoted string form.
+     */
+    public static final class CopyWriter {
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 1024);
+
+        private CopyWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        public void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                Object value = values[i];
+                if (value instanceof Number) {
+                    buffer.append(value);
+                } else if (value != null) {
+                    String text = value.toString();
+                    buffer.append('"');
+                    for (int c = 0; c < text.length(); c++) {
+                        char ch = text.charAt(c);
+                        if (ch == '"') {
+                            buffer.append('"');
+                        }
+                        buffer.append(ch);
+                    }
+                    buffer.append('"');
+                }
+            }
+            buffer.append('\n');
+            if (buffer.length() >= COPY_BUFFER_CHARS) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (buffer.length() > 0) {
+                byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                buffer.setLength(0);
+            }
+        }
+    }
+
+    public record RowError(long line, String message) {
+    }
+}
@@ -0,0 +1,140 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class DemandStatsRepository {
+
+    /** Warehouse id of the rows that aggregate a product across all warehouses. */
+    public static final long ALL_WAREHOUSES = 0;
+
+    // Transfer legs only move stock between warehouses and are not demand, so they are left out
+    private static final String DAILY_OUT_SQL =
+            "SELECT product_id, COALESCE(warehouse_id, " + ALL_WAREHOUSES + ") AS warehouse_id, " +
+            "SUM(quantity - transfer_quantity) AS quantity FROM movement_daily_rollup " +
+            "WHERE day = ? AND type = 'OUT' " +
+            "GROUP BY GROUPING SETS ((product_id, warehouse_id), (product_id)) " +
+            "HAVING SUM(quantity - transfer_quantity) > 0 " +
+            "ORDER BY 1, 2";
+
+    private static final String FIND_SQL =
+            "SELECT product_id, warehouse_id, first_day, last_day, days, mean, m2, ewma, ring FROM demand_stats ";
+
+    private static final String SAVE_SQL =
+            "INSERT INTO demand_stats (product_id, warehouse_id, first_day, last_day, days, mean, m2, ewma, ring) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (product_id, warehouse_id) DO UPDATE SET last_day = EXCLUDED.last_day, " +
+            "days = EXCLUDED.days, mean = EXCLUDED.mean, m2 = EXCLUDED.m2, ewma = EXCLUDED.ewma, ring = EXCLUDED.ring";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Locks the fold state until the calling transaction ends and returns the last folded day.
+     */
+    public Optional<LocalDate> lockFoldedThrough() {
+        Date day = jdbcTemplate.queryForObject(
+                "SELECT folded_through FROM demand_stats_state WHERE id = 1 FOR UPDATE", Date.class);
+        return Optional.ofNullable(day).map(Date::toLocalDate);
+    }
+
+    public Optional<LocalDate> findFoldedThrough() {
+        Date day = jdbcTemplate.queryForObject("SELECT folded_through FROM demand_stats_state WHERE id = 1", Date.class);
+        return Optional.ofNullable(day).map(Date::toLocalDate);
+    }
+
+    public void setFoldedThrough(LocalDate day) {
+        jdbcTemplate.update("UPDATE demand_stats_state SET folded_through = ? WHERE id = 1",
+                day != null ? Date.valueOf(day) : null);
+    }
+
+    public Optional<LocalDate> findFirstOutDay() {
+        Date day = jdbcTemplate.queryForObject(
+                "SELECT MIN(day) FROM movement_daily_rollup WHERE type = 'OUT' AND quantity > transfer_quantity",
+                Date.class);
+        return Optional.ofNullable(day).map(Date::toLocalDate);
+    }
+
+    /**
+     * OUT totals of the day per product and warehouse, plus one {@link #ALL_WAREHOUSES} row per product,
+     * without transfers. Keys whose only OUT movements were transfers are not returned.
+     */
+    public List<DailyDemand> findDailyOut(LocalDate day) {
+        return jdbcTemplate.query(DAILY_OUT_SQL, (rs, rowNum) -> new DailyDemand(
+                rs.getLong("product_id"),
+                rs.getLong("warehouse_id"),
+                rs.getLong("quantity")), Date.valueOf(day));
+    }
+
+    public List<DemandStatsRow> findByProducts(Collection<Long> productIds) {
+        return jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(FIND_SQL + "WHERE product_id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("bigint", productIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> mapRow(rs));
+    }
+
+    public Optional<DemandStatsRow> find(long productId, long warehouseId) {
+        return jdbcTemplate.query(FIND_SQL + "WHERE product_id = ? AND warehouse_id = ?",
+                (rs, rowNum) -> mapRow(rs), productId, warehouseId).stream().findFirst();
+    }
+
+    public void saveAll(List<DemandStatsRow> rows) {
+        jdbcTemplate.batchUpdate(SAVE_SQL, rows, rows.size(), (ps, row) -> {
+            Long[] ring = new Long[row.ring().length];
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = row.ring()[i];
+            }
+            ps.setLong(1, row.productId());
+            ps.setLong(2, row.warehouseId());
+            ps.setDate(3, Date.valueOf(row.firstDay()));
+            ps.setDate(4, Date.valueOf(row.lastDay()));
+            ps.setLong(5, row.days());
+            ps.setDouble(6, row.mean());
+            ps.setDouble(7, row.m2());
+            ps.setDouble(8, row.ewma());
+            ps.setArray(9, ps.getConnection().createArrayOf("bigint", ring));
+        });
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM demand_stats");
+    }
+
+    private static DemandStatsRow mapRow(ResultSet rs) throws SQLException {
+        Array array = rs.getArray("ring");
+        Long[] values = (Long[]) array.getArray();
+        long[] ring = new long[values.length];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = values[i];
+        }
+        return new DemandStatsRow(
+                rs.getLong("product_id"),
+                rs.getLong("warehouse_id"),
+                rs.getDate("first_day").toLocalDate(),
+                rs.getDate("last_day").toLocalDate(),
+                rs.getLong("days"),
+                rs.getDouble("mean"),
+                rs.getDouble("m2"),
+                rs.getDouble("ewma"),
+                ring);
+    }
+
+    public record DailyDemand(long productId, long warehouseId, long quantity) {
+    }
+
+    public record DemandStatsRow(long productId, long warehouseId, LocalDate firstDay, LocalDate lastDay,
+                                 long days, double mean, double m2, double ewma, long[] ring) {
+    }
+}
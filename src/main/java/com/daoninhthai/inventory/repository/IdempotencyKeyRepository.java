@@ -0,0 +1,74 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts an in-progress claim. Returns false when the key already exists.
+     */
+    public boolean claim(String scope, String key, String requestHash, LocalDateTime lockedUntil,
+                         LocalDateTime expiresAt) {
+        return jdbcTemplate.update(
+                "INSERT INTO idempotency_keys (scope, idempotency_key, request_hash, status, locked_until, expires_at) " +
+                "VALUES (?, ?, ?, 'IN_PROGRESS', ?, ?) ON CONFLICT (scope, idempotency_key) DO NOTHING",
+                scope, key, requestHash, Timestamp.valueOf(lockedUntil), Timestamp.valueOf(expiresAt)) > 0;
+    }
+
+    /**
+     * Takes over a claim whose owner let the lease lapse, or an expired completed key.
+     */
+    public boolean takeOver(String scope, String key, String requestHash, LocalDateTime lockedUntil,
+                            LocalDateTime expiresAt) {
+        return jdbcTemplate.update(
+                "UPDATE idempotency_keys SET request_hash = ?, status = 'IN_PROGRESS', response = NULL, " +
+                "locked_until = ?, expires_at = ? WHERE scope = ? AND idempotency_key = ? " +
+                "AND ((status = 'IN_PROGRESS' AND locked_until < LOCALTIMESTAMP) OR expires_at < LOCALTIMESTAMP)",
+                requestHash, Timestamp.valueOf(lockedUntil), Timestamp.valueOf(expiresAt), scope, key) > 0;
+    }
+
+    public void complete(String scope, String key, String response) {
+        jdbcTemplate.update(
+                "UPDATE idempotency_keys SET status = 'COMPLETED', response = ?, locked_until = NULL " +
+                "WHERE scope = ? AND idempotency_key = ?",
+                response, scope, key);
+    }
+
+    public void release(String scope, String key) {
+        jdbcTemplate.update(
+                "DELETE FROM idempotency_keys WHERE scope = ? AND idempotency_key = ? AND status = 'IN_PROGRESS'",
+                scope, key);
+    }
+
+    public Optional<StoredKey> find(String scope, String key) {
+        List<StoredKey> rows = jdbcTemplate.query(
+                "SELECT request_hash, status, response, expires_at FROM idempotency_keys " +
+                "WHERE scope = ? AND idempotency_key = ?",
+                (rs, rowNum) -> new StoredKey(rs.getString("request_hash"), rs.getString("status"),
+                        rs.getString("response"), rs.getTimestamp("expires_at").toLocalDateTime()),
+                scope, key);
+        return rows.stream().findFirst();
+    }
+
+    public int deleteExpired() {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < LOCALTIMESTAMP");
+    }
+
+    public record StoredKey(String requestHash, String status, String response, LocalDateTime expiresAt) {
+
+        public boolean completed() {
+            return "COMPLETED".equals(status);
+        }
+    }
+}
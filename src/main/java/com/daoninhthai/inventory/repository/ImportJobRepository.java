@@ -0,0 +1,191 @@
+package com.daoninhthai.inventory.repository;
+
+import com.daoninhthai.inventory.dto.BatchImportResult.ImportError;
+import com.daoninhthai.inventory.dto.ImportJobStatus;
+import com.daoninhthai.inventory.dto.ImportJobType;
+import com.daoninhthai.inventory.dto.ImportMode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class ImportJobRepository {
+
+    private static final String COLUMNS =
+            "id, tenant_id, type, mode, status, file_name, spool_path, file_bytes, rows_done, bytes_done, " +
+            "imported, failed, attempt, run_started_at, run_start_rows, run_start_bytes, error, created_at, " +
+            "finished_at, EXTRACT(EPOCH FROM (COALESCE(finished_at, LOCALTIMESTAMP) - run_started_at)) AS run_seconds";
+
+    // Oldest job of each tenant that the node can run; a RUNNING job whose lease expired lost its worker
+    private static final String FIND_RUNNABLE_SQL =
+            "SELECT * FROM (" +
+            "SELECT DISTINCT ON (tenant_id) " + COLUMNS + " FROM import_jobs " +
+            "WHERE (status = 'QUEUED' OR (status = 'RUNNING' AND lease_until < LOCALTIMESTAMP)) " +
+            "AND (spool_node = ? OR spool_node IS NULL) " +
+            "ORDER BY tenant_id, id) j ORDER BY id";
+
+    private static final String CLAIM_SQL =
+            "UPDATE import_jobs SET status = 'RUNNING', attempt = attempt + 1, " +
+            "lease_until = LOCALTIMESTAMP + make_interval(secs => ?), run_started_at = LOCALTIMESTAMP, " +
+            "run_start_rows = rows_done, run_start_bytes = bytes_done " +
+            "WHERE id = ? AND (spool_node = ? OR spool_node IS NULL) RETURNING " + COLUMNS;
+
+    private static final String RENEW_SQL =
+            "UPDATE import_jobs j SET lease_until = LOCALTIMESTAMP + make_interval(secs => ?) " +
+            "FROM unnest(?::bigint[], ?::int[]) AS r(id, attempt) " +
+            "WHERE j.id = r.id AND j.attempt = r.attempt AND j.status = 'RUNNING'";
+
+    private static final String OWNED = " WHERE id = ? AND attempt = ? AND status = 'RUNNING'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long create(Long tenantId, ImportJobType type, ImportMode mode, String fileName,
+                       String spoolNode, String spoolPath, long fileBytes) {
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO import_jobs (tenant_id, type, mode, file_name, spool_node, spool_path, file_bytes) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id",
+                Long.class, tenantId, type.name(), mode.name(), fileName, spoolNode, spoolPath, fileBytes);
+        return id != null ? id : 0;
+    }
+
+    public Optional<ImportJob> find(long id) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM import_jobs WHERE id = ?",
+                (rs, rowNum) -> mapJob(rs), id).stream().findFirst();
+    }
+
+    /**
+     * Serializes dispatchers of all instances until the calling transaction ends, so per-tenant limits
+     * hold.
+     */
+    public void lockDispatch() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtext('import_jobs.dispatch'))");
+    }
+
+    /**
+     * Jobs with a live lease per tenant id; jobs without a tenant are counted under null.
+     */
+    public Map<Long, Integer> countRunningByTenant() {
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT tenant_id, COUNT(*) AS running FROM import_jobs " +
+                "WHERE status = 'RUNNING' AND lease_until >= LOCALTIMESTAMP GROUP BY tenant_id", rs -> {
+            counts.put(rs.getObject("tenant_id", Long.class), rs.getInt("running"));
+        });
+        return counts;
+    }
+
+    /**
+     * Runnable jobs whose upload was spooled on the given node, plus jobs queued before the spooling node
+     * was recorded.
+     */
+    public List<ImportJob> findRunnable(String node) {
+        return jdbcTemplate.query(FIND_RUNNABLE_SQL, (rs, rowNum) -> mapJob(rs), node);
+    }
+
+    public ImportJob claim(long id, String node, long leaseSeconds) {
+        return jdbcTemplate.queryForObject(CLAIM_SQL, (rs, rowNum) -> mapJob(rs), (double) leaseSeconds, id, node);
+    }
+
+    public void renewLeases(Map<Long, Integer> attemptsById, long leaseSeconds) {
+        if (attemptsById.isEmpty()) {
+            return;
+        }
+        Long[] ids = attemptsById.keySet().toArray(new Long[0]);
+        Integer[] attempts = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            attempts[i] = attemptsById.get(ids[i]);
+        }
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(RENEW_SQL);
+            ps.setDouble(1, leaseSeconds);
+            ps.setArray(2, con.createArrayOf("bigint", ids));
+            ps.setArray(3, con.createArrayOf("integer", attempts));
+            return ps;
+        });
+    }
+
+    /**
+     * Records progress of the attempt.
+     *
+     * @return false if the attempt no longer owns the job
+     */
+    public boolean checkpoint(long id, int attempt, long rowsDone, long bytesDone, long imported, long failed) {
+        return jdbcTemplate.update("UPDATE import_jobs SET rows_done = ?, bytes_done = ?, imported = ?, " +
+                "failed = ?" + OWNED, rowsDone, bytesDone, imported, failed, id, attempt) == 1;
+    }
+
+    /**
+     * @return false if the attempt no longer owns the job
+     */
+    public boolean finish(long id, int attempt, ImportJobStatus status, String error) {
+        return jdbcTemplate.update("UPDATE import_jobs SET status = ?, error = ?, finished_at = LOCALTIMESTAMP, " +
+                "lease_until = NULL" + OWNED, status.name(), error, id, attempt) == 1;
+    }
+
+    /**
+     * Hands the job back to the queue, e.g. on shutdown, so it resumes from its checkpoint without waiting
+     * for the lease to expire.
+     */
+    public void release(long id, int attempt) {
+        jdbcTemplate.update("UPDATE import_jobs SET status = 'QUEUED', lease_until = NULL" + OWNED, id, attempt);
+    }
+
+    public void addErrors(long id, List<ImportError> errors) {
+        jdbcTemplate.batchUpdate("INSERT INTO import_job_errors (job_id, row_num, message) VALUES (?, ?, ?)",
+                errors, errors.size(), (ps, error) -> {
+                    ps.setLong(1, id);
+                    ps.setLong(2, error.getRow());
+                    ps.setString(3, error.getMessage());
+                });
+    }
+
+    public List<ImportError> findErrors(long id, int limit) {
+        return jdbcTemplate.query(
+                "SELECT row_num, message FROM import_job_errors WHERE job_id = ? ORDER BY row_num LIMIT ?",
+                (rs, rowNum) -> new ImportError((int) rs.getLong("row_num"), rs.getString("message")), id, limit);
+    }
+
+    private static ImportJob mapJob(ResultSet rs) throws SQLException {
+        return new ImportJob(
+                rs.getLong("id"),
+                rs.getObject("tenant_id", Long.class),
+                ImportJobType.valueOf(rs.getString("type")),
+                ImportMode.valueOf(rs.getString("mode")),
+                ImportJobStatus.valueOf(rs.getString("status")),
+                rs.getString("file_name"),
+                rs.getString("spool_path"),
+                rs.getLong("file_bytes"),
+                rs.getLong("rows_done"),
+                rs.getLong("bytes_done"),
+                rs.getLong("imported"),
+                rs.getLong("failed"),
+                rs.getInt("attempt"),
+                toLocalDateTime(rs.getTimestamp("run_started_at")),
+                rs.getLong("run_start_rows"),
+                rs.getLong("run_start_bytes"),
+                rs.getString("error"),
+                toLocalDateTime(rs.getTimestamp("created_at")),
+                toLocalDateTime(rs.getTimestamp("finished_at")),
+                rs.getObject("run_seconds") != null ? rs.getDouble("run_seconds") : null);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    public record ImportJob(long id, Long tenantId, ImportJobType type, ImportMode mode, ImportJobStatus status,
+                            String fileName, String spoolPath, long fileBytes, long rowsDone, long bytesDone,
+                            long imported, long failed, int attempt, LocalDateTime runStartedAt,
+                            long runStartRows, long runStartBytes, String error, LocalDateTime createdAt,
+                            LocalDateTime finishedAt, Double runSeconds) {
+    }
+}
@@ -0,0 +1,204 @@
+package com.daoninhthai.inventory.repository;
+
+import com.daoninhthai.inventory.entity.StockMovement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+@Repository
+@RequiredArgsConstructor
+public class MovementRollupRepository {
+
+    // Transfer legs are numbered TRF-...; transfers recorded before document numbers used TRANSFER-<millis>
+    private static final String TRANSFER_PREFIX = "TRF-";
+    private static final String LEGACY_TRANSFER_PREFIX = "TRANSFER-";
+
+    private static final String ADD_SQL =
+            "INSERT INTO movement_daily_rollup " +
+            "(day, product_id, warehouse_id, type, quantity, movement_count, transfer_quantity) " +
+            "SELECT * FROM unnest(?::date[], ?::bigint[], ?::bigint[], ?::varchar[], ?::bigint[], ?::bigint[], " +
+            "?::bigint[]) " +
+            "ON CONFLICT (day, product_id, warehouse_id, type) DO UPDATE SET " +
+            "quantity = movement_daily_rollup.quantity + EXCLUDED.quantity, " +
+            "movement_count = movement_daily_rollup.movement_count + EXCLUDED.movement_count, " +
+            "transfer_quantity = movement_daily_rollup.transfer_quantity + EXCLUDED.transfer_quantity";
+
+    // Movements still in the journal outbox are already counted in the rollup, so they are rebuilt too
+    private static final String REBUILD_SQL =
+            "INSERT INTO movement_daily_rollup " +
+            "(day, product_id, warehouse_id, type, quantity, movement_count, transfer_quantity) " +
+            "SELECT created_at::date, product_id, warehouse_id, type, SUM(quantity), COUNT(*), " +
+            "SUM(CASE WHEN reference LIKE '" + TRANSFER_PREFIX + "%' " +
+            "OR reference LIKE '" + LEGACY_TRANSFER_PREFIX + "%' THEN quantity ELSE 0 END) FROM (" +
+            "  SELECT created_at, product_id, warehouse_id, type, quantity, reference FROM stock_movements " +
+            "  WHERE created_at >= ? AND created_at < ? " +
+            "  UNION ALL " +
+            "  SELECT created_at, product_id, warehouse_id, type, quantity, reference FROM stock_movement_outbox " +
+            "  WHERE created_at >= ? AND created_at < ?" +
+            ") m GROUP BY created_at::date, product_id, warehouse_id, type";
+
+    private static final String TOP_PRODUCTS_SQL =
+            "SELECT r.product_id, p.name, p.sku, " +
+            "SUM(CASE WHEN r.type = 'IN' THEN r.quantity ELSE 0 END) AS total_in, " +
+            "SUM(CASE WHEN r.type = 'OUT' THEN r.quantity ELSE 0 END) AS total_out " +
+            "FROM movement_daily_rollup r JOIN products p ON p.id = r.product_id " +
+            "WHERE r.day >= ? " +
+            "GROUP BY r.product_id, p.name, p.sku " +
+            "ORDER BY SUM(r.quantity) DESC LIMIT ?";
+
+    private static final String DAILY_TOTALS_SQL =
+            "SELECT day, " +
+            "SUM(CASE WHEN type = 'IN' THEN quantity ELSE 0 END) AS total_in, " +
+            "SUM(CASE WHEN type = 'OUT' THEN quantity ELSE 0 END) AS total_out " +
+            "FROM movement_daily_rollup WHERE day >= ? GROUP BY day ORDER BY day";
+
+    // Demand excludes the OUT legs of transfers, which only move stock between warehouses
+    private static final String DAILY_OUT_SERIES_SQL =
+            "SELECT day, SUM(quantity - transfer_quantity) AS quantity FROM movement_daily_rollup " +
+            "WHERE product_id = ? AND type = 'OUT' AND day >= ? AND day <= ? GROUP BY day";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the movements to their daily totals. Rows are written in key order to keep concurrent
+     * writers from deadlocking on each other.
+     */
+    public void add(Collection<StockMovement> movements) {
+        if (movements.isEmpty()) {
+            return;
+        }
+        Map<RollupKey, long[]> totals = new TreeMap<>();
+        for (StockMovement m : movements) {
+            LocalDate day = m.getCreatedAt() != null ? m.getCreatedAt().toLocalDate() : LocalDate.now();
+            long[] t = totals.computeIfAbsent(new RollupKey(day, m.getProduct().getId(),
+                    m.getWarehouse().getId(), m.getType().name()), k -> new long[3]);
+            t[0] += m.getQuantity();
+            t[1]++;
+            if (isTransfer(m.getReference())) {
+                t[2] += m.getQuantity();
+            }
+        }
+
+        int n = totals.size();
+        Date[] days = new Date[n];
+        Long[] productIds = new Long[n];
+        Long[] warehouseIds = new Long[n];
+        String[] types = new String[n];
+        Long[] quantities = new Long[n];
+        Long[] counts = new Long[n];
+        Long[] transferQuantities = new Long[n];
+        int i = 0;
+        for (Map.Entry<RollupKey, long[]> entry : totals.entrySet()) {
+            RollupKey key = entry.getKey();
+            days[i] = Date.valueOf(key.day());
+            productIds[i] = key.productId();
+            warehouseIds[i] = key.warehouseId();
+            types[i] = key.type();
+            quantities[i] = entry.getValue()[0];
+            counts[i] = entry.getValue()[1];
+            transferQuantities[i] = entry.getValue()[2];
+            i++;
+        }
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(ADD_SQL);
+            ps.setArray(1, con.createArrayOf("date", days));
+            ps.setArray(2, con.createArrayOf("bigint", productIds));
+            ps.setArray(3, con.createArrayOf("bigint", warehouseIds));
+            ps.setArray(4, con.createArrayOf("varchar", types));
+            ps.setArray(5, con.createArrayOf("bigint", quantities));
+            ps.setArray(6, con.createArrayOf("bigint", counts));
+            ps.setArray(7, con.createArrayOf("bigint", transferQuantities));
+            return ps;
+        });
+    }
+
+    /**
+     * Recomputes the rollup for {@code from} to {@code to} inclusive from the movements. Movement writers
+     * are blocked until the calling transaction ends so no movement is counted twice or missed.
+     *
+     * @return the number of rollup rows written
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        jdbcTemplate.execute("LOCK TABLE movement_daily_rollup IN SHARE ROW EXCLUSIVE MODE");
+        jdbcTemplate.update("DELETE FROM movement_daily_rollup WHERE day >= ? AND day <= ?",
+                Date.valueOf(from), Date.valueOf(to));
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+        return jdbcTemplate.update(REBUILD_SQL, start, end, start, end);
+    }
+
+    private static boolean isTransfer(String reference) {
+        return reference != null
+                && (reference.startsWith(TRANSFER_PREFIX) || reference.startsWith(LEGACY_TRANSFER_PREFIX));
+    }
+
+    public List<ProductTotals> findTopMovingProducts(LocalDate since, int limit) {
+        return jdbcTemplate.query(TOP_PRODUCTS_SQL, (rs, rowNum) -> new ProductTotals(
+                rs.getLong("product_id"),
+                rs.getString("name"),
+                rs.getString("sku"),
+                rs.getLong("total_in"),
+                rs.getLong("total_out")), Date.valueOf(since), limit);
+    }
+
+    public List<DailyTotals> findDailyTotals(LocalDate since) {
+        return jdbcTemplate.query(DAILY_TOTALS_SQL, (rs, rowNum) -> new DailyTotals(
+                rs.getDate("day").toLocalDate(),
+                rs.getLong("total_in"),
+                rs.getLong("total_out")), Date.valueOf(since));
+    }
+
+    /**
+     * The first day the product had a movement of any type in any warehouse.
+     */
+    public Optional<LocalDate> findFirstActivityDay(Long productId) {
+        Date day = jdbcTemplate.queryForObject(
+                "SELECT MIN(day) FROM movement_daily_rollup WHERE product_id = ?", Date.class, productId);
+        return Optional.ofNullable(day).map(Date::toLocalDate);
+    }
+
+    /**
+     * Daily OUT quantities of the product from {@code from} to {@code to} inclusive, zero-filled:
+     * element i is the demand on {@code from + i} days.
+     */
+    public long[] findDailyOutSeries(Long productId, LocalDate from, LocalDate to) {
+        long[] series = new long[(int) ChronoUnit.DAYS.between(from, to) + 1];
+        jdbcTemplate.query(DAILY_OUT_SERIES_SQL, rs -> {
+            int i = (int) ChronoUnit.DAYS.between(from, rs.getDate("day").toLocalDate());
+            series[i] = rs.getLong("quantity");
+        }, productId, Date.valueOf(from), Date.valueOf(to));
+        return series;
+    }
+
+    public record ProductTotals(Long productId, String productName, String sku, long totalIn, long totalOut) {
+    }
+
+    public record DailyTotals(LocalDate day, long totalIn, long totalOut) {
+    }
+
+    private record RollupKey(LocalDate day, Long productId, Long warehouseId, String type)
+            implements Comparable<RollupKey> {
+
+        @Override
+        public int compareTo(RollupKey other) {
+            int c = day.compareTo(other.day);
+            if (c == 0) {
+                c = productId.compareTo(other.productId);
+            }
+            if (c == 0) {
+                c = warehouseId.compareTo(other.warehouseId);
+            }
+            return c != 0 ? c : type.compareTo(other.type);
+        }
+    }
+}
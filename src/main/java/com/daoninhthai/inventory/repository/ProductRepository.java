@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,6 +19,9 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     boolean existsBySku(String sku);
 
+    @Query("SELECT p.id AS id, p.sku AS sku FROM Product p WHERE p.sku IN :skus")
+    List<SkuId> findIdsBySkuIn(@Param("skus") Collection<String> skus);
+
     Page<Product> findByActiveTrue(Pageable pageable);
 
     @Query("SELECT p FROM Product p WHERE " +
@@ -33,4 +38,9 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     @Query("SELECT COUNT(p) FROM Product p WHERE p.active = true")
     long countActiveProducts();
+
+    interface SkuId {
+        Long getId();
+        String getSku();
+    }
 }
@@ -25,4 +25,7 @@ public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, Lo
 
     @Query("SELECT po FROM PurchaseOrder po LEFT JOIN FETCH po.items WHERE po.id = :id")
     Optional<PurchaseOrder> findByIdWithItems(@Param("id") Long id);
+
+    @Query("SELECT po.warehouse.id FROM PurchaseOrder po WHERE po.id = :id")
+    Optional<Long> findWarehouseIdById(@Param("id") Long id);
 }
@@ -0,0 +1,14 @@
+package com.daoninhthai.inventory.repository;
+
+/**
+ * Product/warehouse pair. The natural order (warehouse, then product) is the canonical lock order for
+ * stock level rows: every multi-row writer must lock in this order.
+ */
+public record StockKey(Long productId, Long warehouseId) implements Comparable<StockKey> {
+
+    @Override
+    public int compareTo(StockKey other) {
+        int byWarehouse = warehouseId.compareTo(other.warehouseId);
+        return byWarehouse != 0 ? byWarehouse : productId.compareTo(other.productId);
+    }
+}
@@ -0,0 +1,31 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+@Repository
+@RequiredArgsConstructor
+public class StockLedgerRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void recordFlush(String flushId) {
+        jdbcTemplate.update("INSERT INTO stock_ledger_flushes (flush_id) VALUES (?)", flushId);
+        // Journals are compacted after every flush, so old markers are never looked up again
+        jdbcTemplate.update("DELETE FROM stock_ledger_flushes WHERE flushed_at < CURRENT_TIMESTAMP - INTERVAL '7 days'");
+    }
+
+    public Set<String> findCommittedFlushes(Collection<String> flushIds) {
+        if (flushIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT flush_id FROM stock_ledger_flushes WHERE flush_id = ANY (?)",
+                String.class, (Object) flushIds.toArray(new String[0])));
+    }
+}
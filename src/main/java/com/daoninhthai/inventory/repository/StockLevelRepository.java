@@ -2,15 +2,29 @@ package com.daoninhthai.inventory.repository;
 
 import com.daoninhthai.inventory.entity.StockLevel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface StockLevelRepository extends JpaRepository<StockLevel, Long> {
+public interface StockLevelRepository extends JpaRepository<StockLevel, Long>, StockLevelRepositoryCustom {
+
+    // Sum of the split counter buckets of stock level "sl", as seen by the statement snapshot
+    String SHARD_SUM = "COALESCE((SELECT SUM(s.quantity) FROM stock_level_shards s WHERE s.stock_level_id = sl.id), 0)";
+
+    String MUTATION_LABELS =
+            "sl.id AS \"id\", sl.min_quantity AS \"minQuantity\", sl.max_quantity AS \"maxQuantity\", " +
+            "LOCALTIMESTAMP AS \"lastUpdated\", " +
+            "p.id AS \"productId\", p.name AS \"productName\", p.sku AS \"productSku\", " +
+            "w.id AS \"warehouseId\", w.name AS \"warehouseName\", w.code AS \"warehouseCode\" ";
+
+    String MUTATION_JOINS =
+            "JOIN products p ON p.id = sl.product_id JOIN warehouses w ON w.id = sl.warehouse_id";
 
     Optional<StockLevel> findByProductIdAndWarehouseId(Long productId, Long warehouseId);
 
@@ -18,12 +32,153 @@ public interface StockLevelRepository extends JpaRepository<StockLevel, Long> {
 
     List<StockLevel> findByProductId(Long productId);
 
-    @Query("SELECT sl FROM StockLevel sl WHERE sl.quantity <= sl.minQuantity AND sl.minQuantity IS NOT NULL")
+    @Query("SELECT sl FROM StockLevel sl WHERE sl.totalQuantity <= sl.minQuantity AND sl.minQuantity IS NOT NULL")
     List<StockLevel> findLowStockLevels();
 
-    @Query("SELECT COUNT(sl) FROM StockLevel sl WHERE sl.quantity <= sl.minQuantity AND sl.minQuantity IS NOT NULL")
+    @Query("SELECT COUNT(sl) FROM StockLevel sl WHERE sl.totalQuantity <= sl.minQuantity AND sl.minQuantity IS NOT NULL")
     long countLowStockLevels();
 
-    @Query("SELECT SUM(sl.quantity * sl.product.unitPrice) FROM StockLevel sl WHERE sl.warehouse.id = :warehouseId")
+    @Query("SELECT SUM(sl.totalQuantity * sl.product.unitPrice) FROM StockLevel sl WHERE sl.warehouse.id = :warehouseId")
     Double calculateStockValueByWarehouse(@Param("warehouseId") Long warehouseId);
+
+    @Query("SELECT sl.totalQuantity FROM StockLevel sl WHERE sl.product.id = :productId AND sl.warehouse.id = :warehouseId")
+    Optional<Integer> findQuantity(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId);
+
+    // On-hand total less the quantity held by active reservations
+    @Query("SELECT sl.totalQuantity - sl.reservedQuantity FROM StockLevel sl " +
+            "WHERE sl.product.id = :productId AND sl.warehouse.id = :warehouseId")
+    Optional<Integer> findAvailableQuantity(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId);
+
+    @Query("SELECT sl.id, sl.product.id, sl.warehouse.id, sl.shardCount FROM StockLevel sl WHERE sl.shardCount > 1")
+    List<Object[]> findSplitStockLevels();
+
+    /*
+     * Single-statement stock mutations. Each one changes one counter bucket and returns the new on-hand
+     * total together with the product/warehouse labels, so callers need neither a prior read nor separate
+     * entity lookups. An empty result means the guard did not match (missing product/warehouse or
+     * insufficient stock in that bucket).
+     *
+     * Decrements never take stock held by active reservations. An unsplit row checks quantity minus
+     * reserved_quantity in its own UPDATE. A bucket of a split row only gives stock while nothing is
+     * reserved; otherwise the caller drains the row under lock, where the total can be checked.
+     */
+
+    @Query(value = "WITH updated AS (" +
+            "UPDATE stock_levels SET quantity = quantity - :quantity, last_updated = CURRENT_TIMESTAMP " +
+            "WHERE product_id = :productId AND warehouse_id = :warehouseId AND quantity >= :quantity " +
+            "AND (reserved_quantity = 0 OR (shard_count <= 1 AND quantity - :quantity >= reserved_quantity)) " +
+            "RETURNING id, quantity) " +
+            "SELECT " + MUTATION_LABELS + ", " +
+            "u.quantity + " + SHARD_SUM + " + :quantity AS \"previousQuantity\", " +
+            "u.quantity + " + SHARD_SUM + " AS \"quantity\" " +
+            "FROM updated u JOIN stock_levels sl ON sl.id = u.id " + MUTATION_JOINS,
+            nativeQuery = true)
+    Optional<StockMutation> decrementStock(@Param("productId") Long productId,
+                                           @Param("warehouseId") Long warehouseId,
+                                           @Param("quantity") int quantity);
+
+    @Query(value = "WITH updated AS (" +
+            "INSERT INTO stock_levels (product_id, warehouse_id, quantity, last_updated) " +
+            "SELECT p.id, w.id, :quantity, CURRENT_TIMESTAMP FROM products p, warehouses w " +
+            "WHERE p.id = :productId AND w.id = :warehouseId " +
+            "ON CONFLICT (product_id, warehouse_id) DO UPDATE " +
+            "SET quantity = stock_levels.quantity + EXCLUDED.quantity, last_updated = CURRENT_TIMESTAMP " +
+            "RETURNING id, quantity, min_quantity, max_quantity), " +
+            "totals AS (" +
+            "SELECT u.*, u.quantity + COALESCE((SELECT SUM(s.quantity) FROM stock_level_shards s " +
+            "WHERE s.stock_level_id = u.id), 0) AS total FROM updated u) " +
+            "SELECT t.id AS \"id\", t.min_quantity AS \"minQuantity\", t.max_quantity AS \"maxQuantity\", " +
+            "LOCALTIMESTAMP AS \"lastUpdated\", " +
+            "p.id AS \"productId\", p.name AS \"productName\", p.sku AS \"productSku\", " +
+            "w.id AS \"warehouseId\", w.name AS \"warehouseName\", w.code AS \"warehouseCode\", " +
+            "t.total - :quantity AS \"previousQuantity\", t.total AS \"quantity\" " +
+            "FROM totals t JOIN products p ON p.id = :productId JOIN warehouses w ON w.id = :warehouseId",
+            nativeQuery = true)
+    Optional<StockMutation> incrementStock(@Param("productId") Long productId,
+                                           @Param("warehouseId") Long warehouseId,
+                                           @Param("quantity") int quantity);
+
+    @Query(value = "WITH previous AS (" +
+            "SELECT sl.quantity + " + SHARD_SUM + " AS quantity FROM stock_levels sl " +
+            "WHERE sl.product_id = :productId AND sl.warehouse_id = :warehouseId), " +
+            "cleared AS (" +
+            "UPDATE stock_level_shards SET quantity = 0 WHERE quantity <> 0 AND stock_level_id IN " +
+            "(SELECT id FROM stock_levels WHERE product_id = :productId AND warehouse_id = :warehouseId) " +
+            "RETURNING stock_level_id), " +
+            "updated AS (" +
+            "INSERT INTO stock_levels (product_id, warehouse_id, quantity, last_updated) " +
+            "SELECT p.id, w.id, :quantity, CURRENT_TIMESTAMP FROM products p, warehouses w " +
+            "WHERE p.id = :productId AND w.id = :warehouseId " +
+            "ON CONFLICT (product_id, warehouse_id) DO UPDATE " +
+            "SET quantity = EXCLUDED.quantity, last_updated = CURRENT_TIMESTAMP " +
+            "RETURNING id, quantity, min_quantity, max_quantity) " +
+            "SELECT u.id AS \"id\", u.min_quantity AS \"minQuantity\", u.max_quantity AS \"maxQuantity\", " +
+            "LOCALTIMESTAMP AS \"lastUpdated\", " +
+            "p.id AS \"productId\", p.name AS \"productName\", p.sku AS \"productSku\", " +
+            "w.id AS \"warehouseId\", w.name AS \"warehouseName\", w.code AS \"warehouseCode\", " +
+            "COALESCE((SELECT quantity FROM previous), 0) AS \"previousQuantity\", u.quantity AS \"quantity\" " +
+            "FROM updated u JOIN products p ON p.id = :productId JOIN warehouses w ON w.id = :warehouseId",
+            nativeQuery = true)
+    Optional<StockMutation> setStock(@Param("productId") Long productId,
+                                     @Param("warehouseId") Long warehouseId,
+                                     @Param("quantity") int quantity);
+
+    // KEY SHARE waits for a reservation holding the row lock and then reads its reserved_quantity, while
+    // bucket writers still do not block each other or the main row's own updates
+    @Query(value = "WITH header AS (" +
+            "SELECT reserved_quantity FROM stock_levels WHERE id = :stockLevelId FOR KEY SHARE), " +
+            "updated AS (" +
+            "UPDATE stock_level_shards SET quantity = quantity - :quantity " +
+            "WHERE stock_level_id = :stockLevelId AND shard = :shard AND quantity >= :quantity " +
+            "AND (SELECT reserved_quantity FROM header) = 0 " +
+            "RETURNING stock_level_id) " +
+            "SELECT " + MUTATION_LABELS + ", " +
+            "sl.quantity + " + SHARD_SUM + " AS \"previousQuantity\", " +
+            "sl.quantity + " + SHARD_SUM + " - :quantity AS \"quantity\" " +
+            "FROM updated u JOIN stock_levels sl ON sl.id = u.stock_level_id " + MUTATION_JOINS,
+            nativeQuery = true)
+    Optional<StockMutation> decrementShard(@Param("stockLevelId") Long stockLevelId,
+                                           @Param("shard") int shard,
+                                           @Param("quantity") int quantity);
+
+    @Query(value = "WITH updated AS (" +
+            "UPDATE stock_level_shards SET quantity = quantity + :quantity " +
+            "WHERE stock_level_id = :stockLevelId AND shard = :shard " +
+            "RETURNING stock_level_id) " +
+            "SELECT " + MUTATION_LABELS + ", " +
+            "sl.quantity + " + SHARD_SUM + " AS \"previousQuantity\", " +
+            "sl.quantity + " + SHARD_SUM + " + :quantity AS \"quantity\" " +
+            "FROM updated u JOIN stock_levels sl ON sl.id = u.stock_level_id " + MUTATION_JOINS,
+            nativeQuery = true)
+    Optional<StockMutation> incrementShard(@Param("stockLevelId") Long stockLevelId,
+                                           @Param("shard") int shard,
+                                           @Param("quantity") int quantity);
+
+    @Query(value = "SELECT " + MUTATION_LABELS + ", " +
+            ":previousQuantity AS \"previousQuantity\", :quantity AS \"quantity\" " +
+            "FROM stock_levels sl " + MUTATION_JOINS + " WHERE sl.id = :stockLevelId",
+            nativeQuery = true)
+    Optional<StockMutation> describeMutation(@Param("stockLevelId") Long stockLevelId,
+                                             @Param("previousQuantity") int previousQuantity,
+                                             @Param("quantity") int quantity);
+
+    @Modifying
+    @Query(value = "UPDATE stock_levels SET reserved_quantity = reserved_quantity + :quantity WHERE id = :stockLevelId",
+            nativeQuery = true)
+    int addReservedQuantity(@Param("stockLevelId") Long stockLevelId, @Param("quantity") int quantity);
+
+    interface StockMutation {
+        Long getId();
+        Integer getPreviousQuantity();
+        Integer getQuantity();
+        Integer getMinQuantity();
+        Integer getMaxQuantity();
+        LocalDateTime getLastUpdated();
+        Long getProductId();
+        String getProductName();
+        String getProductSku();
+        Long getWarehouseId();
+        String getWarehouseName();
+        String getWarehouseCode();
+    }
 }
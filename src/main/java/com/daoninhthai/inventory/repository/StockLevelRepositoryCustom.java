@@ -0,0 +1,49 @@
+package com.daoninhthai.inventory.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface StockLevelRepositoryCustom {
+
+    void insertMissingStockLevels(Collection<StockKey> keys);
+
+    /**
+     * Locks the stock level rows (and their split counter buckets) for the given keys in canonical
+     * {@link StockKey} order. The returned quantity is the on-hand total across all buckets; callers that
+     * take stock must leave the reserved quantity in place.
+     */
+    List<LockedStockLevel> lockStockLevels(Collection<StockKey> keys);
+
+    /**
+     * Writes absolute on-hand totals in one statement; the rows must already be locked. Split counter
+     * buckets of these rows are folded into the main row.
+     */
+    void updateQuantities(Map<Long, Integer> quantitiesById);
+
+    /**
+     * Takes the quantity from all buckets of a split stock level under lock. Nothing is changed when the
+     * total less the reserved quantity is insufficient.
+     *
+     * @return the on-hand total before the drain, or -1 when nothing was taken
+     */
+    int drainStock(Long stockLevelId, int quantity);
+
+    void resizeShards(Long stockLevelId, int shardCount);
+
+    /**
+     * Sets absolute on-hand totals in one statement, creating missing stock levels. Keys must be distinct;
+     * a null min or max quantity keeps the current value. Split counter buckets of these rows are cleared.
+     */
+    void upsertStockLevels(Collection<ImportedStockLevel> levels);
+
+    record LockedStockLevel(Long id, StockKey key, int quantity, int reserved) {
+
+        public int available() {
+            return quantity - reserved;
+        }
+    }
+
+    record ImportedStockLevel(StockKey key, int quantity, Integer minQuantity, Integer maxQuantity) {
+    }
+}
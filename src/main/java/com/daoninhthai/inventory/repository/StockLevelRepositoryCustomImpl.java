@@ -0,0 +1,233 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class StockLevelRepositoryCustomImpl implements StockLevelRepositoryCustom {
+
+    private static final String INSERT_MISSING_SQL =
+            "INSERT INTO stock_levels (product_id, warehouse_id, quantity, last_updated) " +
+            "VALUES (?, ?, 0, CURRENT_TIMESTAMP) ON CONFLICT (product_id, warehouse_id) DO NOTHING";
+
+    // Rows are locked in the canonical (warehouse_id, product_id) order, see StockKey
+    private static final String LOCK_SQL =
+            "SELECT sl.id, sl.product_id, sl.warehouse_id, sl.quantity, sl.reserved_quantity, sl.shard_count " +
+            "FROM stock_levels sl " +
+            "JOIN unnest(?::bigint[], ?::bigint[]) AS k(product_id, warehouse_id) " +
+            "ON sl.product_id = k.product_id AND sl.warehouse_id = k.warehouse_id " +
+            "ORDER BY sl.warehouse_id, sl.product_id FOR UPDATE OF sl";
+
+    private static final String LOCK_SHARDS_SQL =
+            "SELECT stock_level_id, shard, quantity FROM stock_level_shards " +
+            "WHERE stock_level_id = ANY(?::bigint[]) ORDER BY stock_level_id, shard FOR UPDATE";
+
+    private static final String UPDATE_QUANTITY_SQL =
+            "UPDATE stock_levels SET quantity = ?, last_updated = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final String UPDATE_QUANTITIES_SQL =
+            "UPDATE stock_levels sl SET quantity = v.quantity, last_updated = CURRENT_TIMESTAMP " +
+            "FROM unnest(?::bigint[], ?::int[]) AS v(id, quantity) WHERE sl.id = v.id";
+
+    private static final String CLEAR_SHARDS_SQL =
+            "UPDATE stock_level_shards SET quantity = 0 WHERE stock_level_id = ANY(?::bigint[]) AND quantity <> 0";
+
+    private static final String UPDATE_SHARD_SQL =
+            "UPDATE stock_level_shards SET quantity = ? WHERE stock_level_id = ? AND shard = ?";
+
+    private static final String FOLD_SHARDS_SQL =
+            "WITH removed AS (DELETE FROM stock_level_shards WHERE stock_level_id = ? AND shard >= ? RETURNING quantity) " +
+            "UPDATE stock_levels SET quantity = quantity + (SELECT COALESCE(SUM(quantity), 0) FROM removed), " +
+            "shard_count = ?, last_updated = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final String CREATE_SHARDS_SQL =
+            "INSERT INTO stock_level_shards (stock_level_id, shard, quantity) " +
+            "SELECT ?, g, 0 FROM generate_series(1, ? - 1) AS g ON CONFLICT DO NOTHING";
+
+    // Rows are written in StockKey order
+    private static final String UPSERT_SQL =
+            "WITH upserted AS (" +
+            "INSERT INTO stock_levels AS sl (product_id, warehouse_id, quantity, min_quantity, max_quantity, last_updated) " +
+            "SELECT product_id, warehouse_id, quantity, min_quantity, max_quantity, CURRENT_TIMESTAMP " +
+            "FROM unnest(?::bigint[], ?::bigint[], ?::int[], ?::int[], ?::int[]) " +
+            "AS v(product_id, warehouse_id, quantity, min_quantity, max_quantity) " +
+            "ORDER BY warehouse_id, product_id " +
+            "ON CONFLICT (product_id, warehouse_id) DO UPDATE SET quantity = EXCLUDED.quantity, " +
+            "min_quantity = COALESCE(EXCLUDED.min_quantity, sl.min_quantity), " +
+            "max_quantity = COALESCE(EXCLUDED.max_quantity, sl.max_quantity), " +
+            "last_updated = CURRENT_TIMESTAMP " +
+            "RETURNING sl.id, sl.shard_count) " +
+            "UPDATE stock_level_shards s SET quantity = 0 FROM upserted u " +
+            "WHERE s.stock_level_id = u.id AND u.shard_count > 1 AND s.quantity <> 0";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertMissingStockLevels(Collection<StockKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(keys.size());
+        for (StockKey key : keys) {
+            args.add(new Object[]{key.productId(), key.warehouseId()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_MISSING_SQL, args, new int[]{Types.BIGINT, Types.BIGINT});
+    }
+
+    @Override
+    public List<LockedStockLevel> lockStockLevels(Collection<StockKey> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        Long[] productIds = new Long[keys.size()];
+        Long[] warehouseIds = new Long[keys.size()];
+        int i = 0;
+        for (StockKey key : keys) {
+            productIds[i] = key.productId();
+            warehouseIds[i] = key.warehouseId();
+            i++;
+        }
+
+        List<Long> splitIds = new ArrayList<>();
+        List<long[]> rows = jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(LOCK_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", productIds));
+            ps.setArray(2, con.createArrayOf("bigint", warehouseIds));
+            return ps;
+        }, (rs, rowNum) -> {
+            if (rs.getInt("shard_count") > 1) {
+                splitIds.add(rs.getLong("id"));
+            }
+            return new long[]{rs.getLong("id"), rs.getLong("product_id"),
+                    rs.getLong("warehouse_id"), rs.getInt("quantity"), rs.getInt("reserved_quantity")};
+        });
+
+        Map<Long, Integer> shardTotals = new HashMap<>();
+        if (!splitIds.isEmpty()) {
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(LOCK_SHARDS_SQL);
+                ps.setArray(1, con.createArrayOf("bigint", splitIds.toArray()));
+                return ps;
+            }, rs -> {
+                shardTotals.merge(rs.getLong("stock_level_id"), rs.getInt("quantity"), Integer::sum);
+            });
+        }
+
+        List<LockedStockLevel> locked = new ArrayList<>(rows.size());
+        for (long[] row : rows) {
+            int total = (int) row[3] + shardTotals.getOrDefault(row[0], 0);
+            locked.add(new LockedStockLevel(row[0], new StockKey(row[1], row[2]), total, (int) row[4]));
+        }
+        return locked;
+    }
+
+    @Override
+    public void updateQuantities(Map<Long, Integer> quantitiesById) {
+        if (quantitiesById.isEmpty()) {
+            return;
+        }
+        Long[] ids = quantitiesById.keySet().toArray(new Long[0]);
+        Integer[] quantities = quantitiesById.values().toArray(new Integer[0]);
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(UPDATE_QUANTITIES_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("integer", quantities));
+            return ps;
+        });
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(CLEAR_SHARDS_SQL);
+            Array idArray = con.createArrayOf("bigint", ids);
+            ps.setArray(1, idArray);
+            return ps;
+        });
+    }
+
+    @Override
+    public int drainStock(Long stockLevelId, int quantity) {
+        int[] header = jdbcTemplate.queryForObject(
+                "SELECT quantity, reserved_quantity FROM stock_levels WHERE id = ? FOR UPDATE",
+                (rs, rowNum) -> new int[]{rs.getInt("quantity"), rs.getInt("reserved_quantity")}, stockLevelId);
+        List<int[]> shards = jdbcTemplate.query(
+                "SELECT shard, quantity FROM stock_level_shards WHERE stock_level_id = ? ORDER BY shard FOR UPDATE",
+                (rs, rowNum) -> new int[]{rs.getInt("shard"), rs.getInt("quantity")}, stockLevelId);
+
+        int headerQuantity = header != null ? header[0] : 0;
+        int reserved = header != null ? header[1] : 0;
+        int total = headerQuantity + shards.stream().mapToInt(s -> s[1]).sum();
+        if (total - reserved < quantity) {
+            return -1;
+        }
+
+        int remaining = quantity;
+        int taken = Math.min(headerQuantity, remaining);
+        remaining -= taken;
+        if (taken > 0) {
+            jdbcTemplate.update(UPDATE_QUANTITY_SQL, headerQuantity - taken, stockLevelId);
+        }
+
+        List<Object[]> shardArgs = new ArrayList<>();
+        for (int[] shard : shards) {
+            if (remaining == 0) {
+                break;
+            }
+            int fromShard = Math.min(shard[1], remaining);
+            if (fromShard > 0) {
+                remaining -= fromShard;
+                shardArgs.add(new Object[]{shard[1] - fromShard, stockLevelId, shard[0]});
+            }
+        }
+        if (!shardArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SHARD_SQL, shardArgs,
+                    new int[]{Types.INTEGER, Types.BIGINT, Types.INTEGER});
+        }
+        return total;
+    }
+
+    @Override
+    public void resizeShards(Long stockLevelId, int shardCount) {
+        jdbcTemplate.queryForObject(
+                "SELECT id FROM stock_levels WHERE id = ? FOR UPDATE", Long.class, stockLevelId);
+        jdbcTemplate.update(FOLD_SHARDS_SQL, stockLevelId, shardCount, shardCount, stockLevelId);
+        if (shardCount > 1) {
+            jdbcTemplate.update(CREATE_SHARDS_SQL, stockLevelId, shardCount);
+        }
+    }
+
+    @Override
+    public void upsertStockLevels(Collection<ImportedStockLevel> levels) {
+        if (levels.isEmpty()) {
+            return;
+        }
+        Long[] productIds = new Long[levels.size()];
+        Long[] warehouseIds = new Long[levels.size()];
+        Integer[] quantities = new Integer[levels.size()];
+        Integer[] minQuantities = new Integer[levels.size()];
+        Integer[] maxQuantities = new Integer[levels.size()];
+        int i = 0;
+        for (ImportedStockLevel level : levels) {
+            productIds[i] = level.key().productId();
+            warehouseIds[i] = level.key().warehouseId();
+            quantities[i] = level.quantity();
+            minQuantities[i] = level.minQuantity();
+            maxQuantities[i] = level.maxQuantity();
+            i++;
+        }
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", productIds));
+            ps.setArray(2, con.createArrayOf("bigint", warehouseIds));
+            ps.setArray(3, con.createArrayOf("integer", quantities));
+            ps.setArray(4, con.createArrayOf("integer", minQuantities));
+            ps.setArray(5, con.createArrayOf("integer", maxQuantities));
+            return ps;
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.daoninhthai.inventory.repository;
+
+import com.daoninhthai.inventory.entity.StockMovement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+
+@Repository
+@RequiredArgsConstructor
+public class StockMovementOutboxRepository {
+
+    private static final String APPEND_SQL =
+            "INSERT INTO stock_movement_outbox " +
+            "(product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+
+    // Rows locked by a concurrent move are skipped, so each outbox row reaches stock_movements exactly once.
+    // Outbox ids come from the movement row sequence and are kept, so snapshots can refer to either.
+    private static final String MOVE_SQL =
+            "WITH moved AS (" +
+            "  DELETE FROM stock_movement_outbox WHERE id IN (" +
+            "    SELECT id FROM stock_movement_outbox WHERE id = ANY(?::bigint[]) FOR UPDATE SKIP LOCKED) " +
+            "  RETURNING product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at, id) " +
+            "INSERT INTO stock_movements " +
+            "(id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at) " +
+            "SELECT id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at " +
+            "FROM moved ORDER BY id";
+
+    private static final String MOVE_STALE_SQL =
+            "WITH moved AS (" +
+            "  DELETE FROM stock_movement_outbox WHERE id IN (" +
+            "    SELECT id FROM stock_movement_outbox " +
+            "    WHERE created_at < LOCALTIMESTAMP - make_interval(secs => ?) " +
+            "    ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "  RETURNING product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at, id) " +
+            "INSERT INTO stock_movements " +
+            "(id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at) " +
+            "SELECT id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at " +
+            "FROM moved ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Long append(StockMovement m) {
+        return jdbcTemplate.queryForObject(APPEND_SQL, Long.class,
+                m.getProduct().getId(),
+                m.getWarehouse().getId(),
+                m.getType().name(),
+                m.getQuantity(),
+                m.getReference(),
+                m.getNotes(),
+                m.getCreatedBy(),
+                Timestamp.valueOf(m.getCreatedAt()));
+    }
+
+    /**
+     * Moves the given outbox rows into stock_movements in one statement.
+     *
+     * @return the number of rows moved; rows already moved by someone else are not counted
+     */
+    public int moveToMovements(Collection<Long> ids) {
+        Long[] idArray = ids.toArray(new Long[0]);
+        return jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(MOVE_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", idArray));
+            return ps;
+        });
+    }
+
+    /**
+     * Moves up to {@code limit} rows older than {@code minAgeSeconds}, oldest first.
+     */
+    public int moveStale(double minAgeSeconds, int limit) {
+        return jdbcTemplate.update(MOVE_STALE_SQL, minAgeSeconds, limit);
+    }
+}
@@ -0,0 +1,100 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Repository
+@RequiredArgsConstructor
+public class StockMovementPartitionRepository {
+
+    private static final Pattern SCANNED_PARTITION = Pattern.compile(" on (stock_movements_\\w+)");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the monthly partition containing {@code month} unless it exists.
+     *
+     * @return the partition table name
+     */
+    public String ensurePartition(LocalDate month) {
+        return jdbcTemplate.queryForObject("SELECT ensure_stock_movement_partition(?)",
+                String.class, Date.valueOf(month));
+    }
+
+    /**
+     * Plans a stock movement query with the given named parameters and returns the partitions the plan
+     * scans, so partition pruning can be checked against the live schema.
+     */
+    public List<String> findScannedPartitions(String sql, Map<String, ?> params) {
+        List<String> plan = new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                "EXPLAIN " + sql, params, String.class);
+        Set<String> partitions = new TreeSet<>();
+        for (String line : plan) {
+            Matcher matcher = SCANNED_PARTITION.matcher(line);
+            while (matcher.find()) {
+                partitions.add(matcher.group(1));
+            }
+        }
+        return new ArrayList<>(partitions);
+    }
+
+    public List<String> findAttachedPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'stock_movements'::regclass ORDER BY c.relname",
+                String.class);
+    }
+
+    // Partition names are generated by ensure_stock_movement_partition and never come from user input
+    public void detachPartition(String partition) {
+        jdbcTemplate.execute("ALTER TABLE stock_movements DETACH PARTITION " + partition);
+    }
+
+    public void dropTable(String table) {
+        jdbcTemplate.execute("DROP TABLE " + table);
+    }
+
+    public boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    /**
+     * Blocks writes to the partition until the calling transaction ends.
+     */
+    public void lockPartition(String partition) {
+        jdbcTemplate.execute("LOCK TABLE " + partition + " IN SHARE MODE");
+    }
+
+    public long countRows(String partition) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition, Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Streams the partition in (product_id, created_at, id) order; must run inside a transaction for the
+     * driver to fetch in chunks instead of loading every row.
+     */
+    public void streamPartition(String partition, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(
+                    "SELECT id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at " +
+                    "FROM " + partition + " ORDER BY product_id, created_at, id");
+            ps.setFetchSize(10000);
+            return ps;
+        }, handler);
+    }
+}
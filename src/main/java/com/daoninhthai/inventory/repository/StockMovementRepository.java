@@ -12,30 +12,70 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * stock_movements is range-partitioned by month on created_at. Queries bounded on createdAt, such as
+ * findByProductIdAndCreatedAtBetween, only scan the partitions in range; the bound must stay a plain
+ * comparison on created_at for Postgres to prune, which is why the keyset pages repeat the cursor as
+ * {@code created_at <= :createdAt} next to the row comparison. The partition maintenance job EXPLAINs
+ * these statements to check the pruning. Dashboard aggregates read movement_daily_rollup.
+ */
 @Repository
-public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long>, StockMovementRepositoryCustom {
 
     Page<StockMovement> findByProductId(Long productId, Pageable pageable);
 
     Page<StockMovement> findByWarehouseId(Long warehouseId, Pageable pageable);
 
-    List<StockMovement> findByProductIdAndCreatedAtBetween(
-            Long productId, LocalDateTime start, LocalDateTime end);
+    /*
+     * The created_at-bounded queries are kept as constants so the partition maintenance job can EXPLAIN the
+     * exact statements and check which partitions they scan.
+     */
+
+    String HISTORY_SQL = "SELECT * FROM stock_movements WHERE product_id = :productId " +
+            "AND created_at >= :start AND created_at <= :end";
+
+    // Keyset pages, newest first. Each filter has a matching (filter, created_at, id) index.
+
+    String PAGE_SQL = "SELECT * FROM stock_movements WHERE created_at <= :createdAt " +
+            "AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    String PAGE_BY_PRODUCT_SQL = "SELECT * FROM stock_movements WHERE product_id = :productId " +
+            "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    String PAGE_BY_WAREHOUSE_SQL = "SELECT * FROM stock_movements WHERE warehouse_id = :warehouseId " +
+            "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    String PAGE_BY_TYPE_SQL = "SELECT * FROM stock_movements WHERE type = :type " +
+            "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    @Query(value = HISTORY_SQL, nativeQuery = true)
+    List<StockMovement> findByProductIdAndCreatedAtBetween(@Param("productId") Long productId,
+                                                           @Param("start") LocalDateTime start,
+                                                           @Param("end") LocalDateTime end);
 
     @Query("SELECT sm FROM StockMovement sm WHERE sm.type = :type ORDER BY sm.createdAt DESC")
     Page<StockMovement> findByType(@Param("type") MovementType type, Pageable pageable);
 
-    @Query("SELECT sm.product.id, sm.product.name, SUM(sm.quantity) as totalQty " +
-            "FROM StockMovement sm " +
-            "WHERE sm.createdAt >= :since " +
-            "GROUP BY sm.product.id, sm.product.name " +
-            "ORDER BY totalQty DESC")
-    List<Object[]> findTopMovingProducts(@Param("since") LocalDateTime since, Pageable pageable);
-
-    @Query("SELECT FUNCTION('DATE', sm.createdAt), sm.type, SUM(sm.quantity) " +
-            "FROM StockMovement sm " +
-            "WHERE sm.createdAt >= :since " +
-            "GROUP BY FUNCTION('DATE', sm.createdAt), sm.type " +
-            "ORDER BY FUNCTION('DATE', sm.createdAt)")
-    List<Object[]> findStockTrends(@Param("since") LocalDateTime since);
+    @Query(value = PAGE_SQL, nativeQuery = true)
+    List<StockMovement> findPageBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") long id,
+                                       @Param("limit") int limit);
+
+    @Query(value = PAGE_BY_PRODUCT_SQL, nativeQuery = true)
+    List<StockMovement> findPageByProductBefore(@Param("productId") Long productId,
+                                                @Param("createdAt") LocalDateTime createdAt, @Param("id") long id,
+                                                @Param("limit") int limit);
+
+    @Query(value = PAGE_BY_WAREHOUSE_SQL, nativeQuery = true)
+    List<StockMovement> findPageByWarehouseBefore(@Param("warehouseId") Long warehouseId,
+                                                  @Param("createdAt") LocalDateTime createdAt, @Param("id") long id,
+                                                  @Param("limit") int limit);
+
+    @Query(value = PAGE_BY_TYPE_SQL, nativeQuery = true)
+    List<StockMovement> findPageByTypeBefore(@Param("type") String type,
+                                             @Param("createdAt") LocalDateTime createdAt, @Param("id") long id,
+                                             @Param("limit") int limit);
 }
@@ -0,0 +1,21 @@
+package com.daoninhthai.inventory.repository;
+
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.entity.StockMovement;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StockMovementRepositoryCustom {
+
+    void insertAll(List<StockMovement> movements);
+
+    /**
+     * Movements of one stock level with {@code after < created_at <= upTo}, in the order they happened.
+     */
+    List<MovementDelta> findMovementsBetween(Long productId, Long warehouseId,
+                                             LocalDateTime after, LocalDateTime upTo);
+
+    record MovementDelta(long id, MovementType type, int quantity, LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.daoninhthai.inventory.repository;
+
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.entity.StockMovement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class StockMovementRepositoryCustomImpl implements StockMovementRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_movements " +
+            "(product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int[] INSERT_TYPES = {
+            Types.BIGINT, Types.BIGINT, Types.VARCHAR, Types.INTEGER,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP
+    };
+
+    private static final String BETWEEN_SQL =
+            "SELECT id, type, quantity, created_at FROM stock_movements " +
+            "WHERE product_id = ? AND warehouse_id = ? AND created_at > ? AND created_at <= ? " +
+            "ORDER BY created_at, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<StockMovement> movements) {
+        if (movements.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(movements.size());
+        for (StockMovement m : movements) {
+            if (m.getCreatedAt() == null) {
+                m.setCreatedAt(LocalDateTime.now());
+            }
+            args.add(new Object[]{
+                    m.getProduct().getId(),
+                    m.getWarehouse().getId(),
+                    m.getType().name(),
+                    m.getQuantity(),
+                    m.getReference(),
+                    m.getNotes(),
+                    m.getCreatedBy(),
+                    Timestamp.valueOf(m.getCreatedAt())
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args, INSERT_TYPES);
+    }
+
+    @Override
+    public List<MovementDelta> findMovementsBetween(Long productId, Long warehouseId,
+                                                    LocalDateTime after, LocalDateTime upTo) {
+        return jdbcTemplate.query(BETWEEN_SQL, (rs, rowNum) -> new MovementDelta(
+                        rs.getLong("id"),
+                        MovementType.valueOf(rs.getString("type")),
+                        rs.getInt("quantity"),
+                        rs.getTimestamp("created_at").toLocalDateTime()),
+                productId, warehouseId, Timestamp.valueOf(after), Timestamp.valueOf(upTo));
+    }
+}
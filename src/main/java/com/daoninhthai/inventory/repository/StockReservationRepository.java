@@ -0,0 +1,35 @@
+package com.daoninhthai.inventory.repository;
+
+import com.daoninhthai.inventory.entity.ReservationStatus;
+import com.daoninhthai.inventory.entity.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    List<StockReservation> findByReference(String reference);
+
+    @Query("SELECT r.id, r.product.id, r.warehouse.id, r.quantity, r.expiresAt FROM StockReservation r " +
+            "WHERE r.status = com.daoninhthai.inventory.entity.ReservationStatus.ACTIVE")
+    List<Object[]> findActiveReservations();
+
+    /**
+     * Moves an active reservation to another status and gives its quantity back to the stock level.
+     * Returns 0 when the reservation is no longer active, so concurrent commit/release/expiry calls cannot
+     * both win.
+     */
+    @Query(value = "WITH closed AS (" +
+            "UPDATE stock_reservations SET status = :#{#status.name()}, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = :id AND status = 'ACTIVE' RETURNING product_id, warehouse_id, quantity), " +
+            "released AS (" +
+            "UPDATE stock_levels sl SET reserved_quantity = sl.reserved_quantity - c.quantity FROM closed c " +
+            "WHERE sl.product_id = c.product_id AND sl.warehouse_id = c.warehouse_id RETURNING sl.id) " +
+            "SELECT COUNT(*) FROM closed",
+            nativeQuery = true)
+    int closeReservation(@Param("id") Long id, @Param("status") ReservationStatus status);
+}
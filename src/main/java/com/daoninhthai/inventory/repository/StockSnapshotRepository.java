@@ -0,0 +1,193 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@Repository
+@RequiredArgsConstructor
+public class StockSnapshotRepository {
+
+    private static final String TOTAL_QUANTITY =
+            "sl.quantity + COALESCE((SELECT SUM(s.quantity) FROM stock_level_shards s " +
+            "WHERE s.stock_level_id = sl.id), 0)";
+
+    // Ids of the movements of stock level "sl" recorded since the cut, read in the same statement as its
+    // total, so they are exactly the recent movements the total already includes. Outbox rows keep their
+    // id when they are moved into stock_movements.
+    private static final String COVERED_MOVEMENT_IDS =
+            "ARRAY(SELECT m.id FROM stock_movements m WHERE m.product_id = sl.product_id " +
+            "AND m.warehouse_id = sl.warehouse_id AND m.created_at > cut.since " +
+            "UNION ALL SELECT o.id FROM stock_movement_outbox o WHERE o.product_id = sl.product_id " +
+            "AND o.warehouse_id = sl.warehouse_id AND o.created_at > cut.since)";
+
+    private static final String STOCK_LEVEL_COLUMNS =
+            "WITH cut AS (SELECT LOCALTIMESTAMP - make_interval(secs => ?) AS since) " +
+            "SELECT sl.id, sl.product_id, sl.warehouse_id, " + TOTAL_QUANTITY + " AS quantity, " +
+            "cut.since AS covered_since, " + COVERED_MOVEMENT_IDS + " AS covered_movement_ids " +
+            "FROM stock_levels sl CROSS JOIN cut ";
+
+    private static final String ALL_STOCK_LEVELS_SQL =
+            STOCK_LEVEL_COLUMNS + "WHERE sl.id > ? ORDER BY sl.id LIMIT ?";
+
+    // Split counter buckets do not touch last_updated, so keys with movements count as changed too
+    private static final String CHANGED_STOCK_LEVELS_SQL =
+            STOCK_LEVEL_COLUMNS + "WHERE sl.id > ? AND (sl.last_updated >= ? OR EXISTS (" +
+            "  SELECT 1 FROM movement_daily_rollup r WHERE r.product_id = sl.product_id " +
+            "  AND r.warehouse_id = sl.warehouse_id AND r.day >= ?)) " +
+            "ORDER BY sl.id LIMIT ?";
+
+    private static final String SAVE_SNAPSHOTS_SQL =
+            "INSERT INTO stock_snapshots (product_id, warehouse_id, snapshot_day, quantity, taken_at, " +
+            "covered_since, covered_movement_ids) " +
+            "VALUES (?, ?, ?, ?, LOCALTIMESTAMP, ?, ?) " +
+            "ON CONFLICT (product_id, warehouse_id, snapshot_day) " +
+            "DO UPDATE SET quantity = EXCLUDED.quantity, taken_at = EXCLUDED.taken_at, " +
+            "covered_since = EXCLUDED.covered_since, covered_movement_ids = EXCLUDED.covered_movement_ids";
+
+    private static final String SNAPSHOT_COLUMNS =
+            "SELECT snapshot_day, quantity, taken_at, covered_since, covered_movement_ids FROM stock_snapshots ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<SnapshotRun> findRun(LocalDate day) {
+        return jdbcTemplate.query(
+                "SELECT snapshot_day, changed_since, last_stock_level_id, started_at, completed_at " +
+                "FROM stock_snapshot_runs WHERE snapshot_day = ?",
+                (rs, rowNum) -> mapRun(rs), Date.valueOf(day)).stream().findFirst();
+    }
+
+    public Optional<SnapshotRun> findLastCompletedRunBefore(LocalDate day) {
+        return jdbcTemplate.query(
+                "SELECT snapshot_day, changed_since, last_stock_level_id, started_at, completed_at " +
+                "FROM stock_snapshot_runs WHERE snapshot_day < ? AND completed_at IS NOT NULL " +
+                "ORDER BY snapshot_day DESC LIMIT 1",
+                (rs, rowNum) -> mapRun(rs), Date.valueOf(day)).stream().findFirst();
+    }
+
+    public void startRun(LocalDate day, LocalDateTime changedSince) {
+        jdbcTemplate.update("INSERT INTO stock_snapshot_runs (snapshot_day, changed_since) VALUES (?, ?) " +
+                        "ON CONFLICT (snapshot_day) DO NOTHING",
+                Date.valueOf(day), changedSince != null ? Timestamp.valueOf(changedSince) : null);
+    }
+
+    public void advanceRun(LocalDate day, long lastStockLevelId) {
+        jdbcTemplate.update("UPDATE stock_snapshot_runs SET last_stock_level_id = ? WHERE snapshot_day = ?",
+                lastStockLevelId, Date.valueOf(day));
+    }
+
+    public void completeRun(LocalDate day) {
+        jdbcTemplate.update("UPDATE stock_snapshot_runs SET completed_at = LOCALTIMESTAMP WHERE snapshot_day = ?",
+                Date.valueOf(day));
+    }
+
+    /**
+     * Stock levels after {@code afterId} in id order, with their on-hand total across split buckets and the
+     * ids of their movements recorded in the last {@code replayMargin}.
+     * With {@code changedSince} only levels updated or moved since then are returned.
+     */
+    public List<StockLevelTotal> findStockLevels(long afterId, LocalDateTime changedSince, Duration replayMargin,
+                                                 int limit) {
+        double marginSeconds = replayMargin.toMillis() / 1000.0;
+        if (changedSince == null) {
+            return jdbcTemplate.query(ALL_STOCK_LEVELS_SQL, (rs, rowNum) -> mapTotal(rs),
+                    marginSeconds, afterId, limit);
+        }
+        return jdbcTemplate.query(CHANGED_STOCK_LEVELS_SQL, (rs, rowNum) -> mapTotal(rs), marginSeconds,
+                afterId, Timestamp.valueOf(changedSince), Date.valueOf(changedSince.toLocalDate()), limit);
+    }
+
+    public void saveSnapshots(LocalDate day, List<StockLevelTotal> totals) {
+        Date snapshotDay = Date.valueOf(day);
+        jdbcTemplate.batchUpdate(SAVE_SNAPSHOTS_SQL, totals, totals.size(), (ps, total) -> {
+            ps.setLong(1, total.productId());
+            ps.setLong(2, total.warehouseId());
+            ps.setDate(3, snapshotDay);
+            ps.setInt(4, total.quantity());
+            ps.setTimestamp(5, Timestamp.valueOf(total.coveredSince()));
+            ps.setArray(6, ps.getConnection().createArrayOf("bigint", total.coveredMovementIds()));
+        });
+    }
+
+    public Optional<Snapshot> findLatestSnapshot(Long productId, Long warehouseId, LocalDateTime at) {
+        return jdbcTemplate.query(SNAPSHOT_COLUMNS +
+                "WHERE product_id = ? AND warehouse_id = ? AND snapshot_day <= ? AND taken_at <= ? " +
+                "ORDER BY snapshot_day DESC LIMIT 1",
+                (rs, rowNum) -> mapSnapshot(rs),
+                productId, warehouseId, Date.valueOf(at.toLocalDate()), Timestamp.valueOf(at))
+                .stream().findFirst();
+    }
+
+    public List<Snapshot> findSnapshots(Long productId, Long warehouseId, LocalDateTime after, LocalDateTime upTo) {
+        return jdbcTemplate.query(SNAPSHOT_COLUMNS +
+                "WHERE product_id = ? AND warehouse_id = ? AND taken_at > ? AND taken_at <= ? " +
+                "ORDER BY taken_at",
+                (rs, rowNum) -> mapSnapshot(rs),
+                productId, warehouseId, Timestamp.valueOf(after), Timestamp.valueOf(upTo));
+    }
+
+    private static SnapshotRun mapRun(ResultSet rs) throws SQLException {
+        Timestamp changedSince = rs.getTimestamp("changed_since");
+        Timestamp completedAt = rs.getTimestamp("completed_at");
+        return new SnapshotRun(
+                rs.getDate("snapshot_day").toLocalDate(),
+                changedSince != null ? changedSince.toLocalDateTime() : null,
+                rs.getLong("last_stock_level_id"),
+                rs.getTimestamp("started_at").toLocalDateTime(),
+                completedAt != null ? completedAt.toLocalDateTime() : null);
+    }
+
+    private static StockLevelTotal mapTotal(ResultSet rs) throws SQLException {
+        return new StockLevelTotal(rs.getLong("id"), rs.getLong("product_id"), rs.getLong("warehouse_id"),
+                rs.getInt("quantity"), rs.getTimestamp("covered_since").toLocalDateTime(),
+                (Long[]) rs.getArray("covered_movement_ids").getArray());
+    }
+
+    private static Snapshot mapSnapshot(ResultSet rs) throws SQLException {
+        Timestamp coveredSince = rs.getTimestamp("covered_since");
+        Array coveredIds = rs.getArray("covered_movement_ids");
+        return new Snapshot(rs.getDate("snapshot_day").toLocalDate(), rs.getInt("quantity"),
+                rs.getTimestamp("taken_at").toLocalDateTime(),
+                coveredSince != null ? coveredSince.toLocalDateTime() : null,
+                coveredIds != null ? new HashSet<>(Arrays.asList((Long[]) coveredIds.getArray())) : Set.of());
+    }
+
+    public record SnapshotRun(LocalDate day, LocalDateTime changedSince, long lastStockLevelId,
+                              LocalDateTime startedAt, LocalDateTime completedAt) {
+    }
+
+    public record StockLevelTotal(long stockLevelId, long productId, long warehouseId, int quantity,
+                                  LocalDateTime coveredSince, Long[] coveredMovementIds) {
+    }
+
+    /**
+     * A snapshot includes every movement committed before it was taken. Movements recorded after
+     * {@code coveredSince} may still have committed later, so replays start there and skip the ids in
+     * {@code coveredMovementIds}. Snapshots taken before V27 have no coveredSince and replay from takenAt.
+     */
+    public record Snapshot(LocalDate day, int quantity, LocalDateTime takenAt,
+                           LocalDateTime coveredSince, Set<Long> coveredMovementIds) {
+
+        public LocalDateTime replayFrom() {
+            return coveredSince != null ? coveredSince : takenAt;
+        }
+
+        public boolean covers(long movementId) {
+            return coveredMovementIds.contains(movementId);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.daoninhthai.inventory.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class SupplierLeadTimeRepository {
+
+    /** Product id of the rows that aggregate a supplier across all products. */
+    public static final long ALL_PRODUCTS = 0;
+    /** Histogram bins: whole days 0..119, the last bin holds 120 days and more. */
+    public static final int HISTOGRAM_BINS = 121;
+
+    // Welford update in a single statement: the SET expressions all see the old row, EXCLUDED.mean is the sample
+    private static final String RECORD_SQL =
+            "INSERT INTO supplier_lead_times AS t (supplier_id, product_id, orders, mean, m2, histogram, last_received_at) " +
+            "VALUES (?, ?, 1, ?, 0, ?, ?) " +
+            "ON CONFLICT (supplier_id, product_id) DO UPDATE SET " +
+            "orders = t.orders + 1, " +
+            "mean = t.mean + (EXCLUDED.mean - t.mean) / (t.orders + 1), " +
+            "m2 = t.m2 + (EXCLUDED.mean - t.mean) * (EXCLUDED.mean - (t.mean + (EXCLUDED.mean - t.mean) / (t.orders + 1))), " +
+            "histogram[?] = t.histogram[?] + 1, " +
+            "last_received_at = GREATEST(t.last_received_at, EXCLUDED.last_received_at)";
+
+    private static final String FIND_SQL =
+            "SELECT supplier_id, product_id, orders, mean, m2, histogram, last_received_at FROM supplier_lead_times ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds one lead-time sample per entry. Rows are written in key order so concurrent receipts of the
+     * same supplier cannot deadlock.
+     */
+    public void record(List<Sample> samples) {
+        List<Sample> sorted = samples.stream()
+                .sorted(Comparator.comparingLong(Sample::supplierId).thenComparingLong(Sample::productId))
+                .toList();
+        jdbcTemplate.batchUpdate(RECORD_SQL, sorted, sorted.size(), (ps, sample) -> {
+            int bin = Math.min((int) Math.ceil(sample.days()), HISTOGRAM_BINS - 1);
+            Integer[] histogram = new Integer[HISTOGRAM_BINS];
+            Arrays.fill(histogram, 0);
+            histogram[bin] = 1;
+            ps.setLong(1, sample.supplierId());
+            ps.setLong(2, sample.productId());
+            ps.setDouble(3, sample.days());
+            ps.setArray(4, ps.getConnection().createArrayOf("integer", histogram));
+            ps.setTimestamp(5, Timestamp.valueOf(sample.receivedAt()));
+            ps.setInt(6, bin + 1);
+            ps.setInt(7, bin + 1);
+        });
+    }
+
+    public Optional<LeadTimeStats> find(long supplierId, long productId) {
+        return jdbcTemplate.query(FIND_SQL + "WHERE supplier_id = ? AND product_id = ?",
+                (rs, rowNum) -> mapStats(rs), supplierId, productId).stream().findFirst();
+    }
+
+    public List<LeadTimeStats> findBySupplier(long supplierId) {
+        return jdbcTemplate.query(FIND_SQL + "WHERE supplier_id = ? ORDER BY product_id",
+                (rs, rowNum) -> mapStats(rs), supplierId);
+    }
+
+    /**
+     * Statistics of the supplier that most recently delivered the product.
+     */
+    public Optional<LeadTimeStats> findLatestForProduct(long productId) {
+        return jdbcTemplate.query(FIND_SQL + "WHERE product_id = ? ORDER BY last_received_at DESC LIMIT 1",
+                (rs, rowNum) -> mapStats(rs), productId).stream().findFirst();
+    }
+
+    private static LeadTimeStats mapStats(ResultSet rs) throws SQLException {
+        Integer[] values = (Integer[]) rs.getArray("histogram").getArray();
+        int[] histogram = new int[values.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = values[i];
+        }
+        return new LeadTimeStats(
+                rs.getLong("supplier_id"),
+                rs.getLong("product_id"),
+                rs.getLong("orders"),
+                rs.getDouble("mean"),
+                rs.getDouble("m2"),
+                histogram,
+                rs.getTimestamp("last_received_at").toLocalDateTime());
+    }
+
+    public record Sample(long supplierId, long productId, double days, LocalDateTime receivedAt) {
+    }
+
+    public record LeadTimeStats(long supplierId, long productId, long orders, double mean, double m2,
+                                int[] histogram, LocalDateTime lastReceivedAt) {
+    }
+}
@@ -2,8 +2,11 @@ package com.daoninhthai.inventory.repository;
 
 import com.daoninhthai.inventory.entity.Warehouse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,5 +17,13 @@ public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
 
     boolean existsByCode(String code);
 
+    @Query("SELECT w.id AS id, w.code AS code FROM Warehouse w WHERE w.code IN :codes")
+    List<CodeId> findIdsByCodeIn(@Param("codes") Collection<String> codes);
+
     List<Warehouse> findByActiveTrue();
+
+    interface CodeId {
+        Long getId();
+        String getCode();
+    }
 }
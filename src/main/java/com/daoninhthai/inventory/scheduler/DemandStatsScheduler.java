@@ -0,0 +1,32 @@
+package com.daoninhthai.inventory.scheduler;
+
+import com.daoninhthai.inventory.service.DemandStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DemandStatsScheduler {
+
+    private final DemandStatsService demandStatsService;
+
+    // Catches up on days missed while the application was down
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        foldClosedDays();
+    }
+
+    @Scheduled(cron = "0 20 0 * * *") // daily at 00:20
+    public void foldClosedDays() {
+        try {
+            demandStatsService.foldClosedDays();
+        } catch (Exception e) {
+            log.error("Error while folding daily demand statistics", e);
+        }
+    }
+}
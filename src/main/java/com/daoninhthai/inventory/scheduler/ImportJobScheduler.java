@@ -0,0 +1,24 @@
+package com.daoninhthai.inventory.scheduler;
+
+import com.daoninhthai.inventory.service.ImportJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImportJobScheduler {
+
+    private final ImportJobService importJobService;
+
+    @Scheduled(fixedDelayString = "${inventory.stock.import-jobs.poll-interval-ms:2000}")
+    public void dispatchImportJobs() {
+        try {
+            importJobService.dispatch();
+        } catch (Exception e) {
+            log.error("Error dispatching import jobs", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.daoninhthai.inventory.scheduler;
+
+import com.daoninhthai.inventory.service.StockChangeLog;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockChangeLogScheduler {
+
+    private final StockChangeLog stockChangeLog;
+
+    @Scheduled(fixedRate = 60000) // every minute
+    public void maintainChangeLog() {
+        if (!stockChangeLog.isEnabled()) {
+            return;
+        }
+        try {
+            stockChangeLog.maintain();
+        } catch (Exception e) {
+            log.error("Error during stock change log maintenance", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.daoninhthai.inventory.scheduler;
+
+import com.daoninhthai.inventory.service.MovementArchiveService;
+import com.daoninhthai.inventory.service.StockMovementPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockMovementPartitionScheduler {
+
+    private final StockMovementPartitionService stockMovementPartitionService;
+    private final MovementArchiveService movementArchiveService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "0 15 2 * * *") // daily at 02:15
+    public void maintainPartitions() {
+        try {
+            List<String> created = stockMovementPartitionService.createUpcomingPartitions();
+            List<String> detached = stockMovementPartitionService.detachExpiredPartitions();
+            log.info("Stock movement partitions checked: upTo={}, detached={}",
+                    created.get(created.size() - 1), detached);
+            stockMovementPartitionService.findUnprunedPartitions().forEach((query, partitions) ->
+                    log.warn("StockMovementRepository.{} scans stock movement partitions outside its created_at "
+                            + "bounds: {}", query, partitions));
+        } catch (Exception e) {
+            log.error("Error during stock movement partition maintenance", e);
+        }
+    }
+
+    @Scheduled(cron = "0 30 3 * * *") // daily at 03:30
+    public void archiveAgedPartitions() {
+        if (!movementArchiveService.isEnabled()) {
+            return;
+        }
+        try {
+            List<String> archived = movementArchiveService.archiveAgedPartitions();
+            if (!archived.isEmpty()) {
+                log.info("Archived stock movement partitions: {}", archived);
+            }
+        } catch (Exception e) {
+            log.error("Error during stock movement archiving", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.daoninhthai.inventory.scheduler;
+
+import com.daoninhthai.inventory.service.StockSnapshotService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockSnapshotScheduler {
+
+    private final StockSnapshotService stockSnapshotService;
+
+    // Resumes a run interrupted by a restart, or takes today's if the scheduled one was missed
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        takeDailySnapshot();
+    }
+
+    @Scheduled(cron = "0 10 0 * * *") // daily at 00:10
+    public void takeDailySnapshot() {
+        try {
+            stockSnapshotService.takeDailySnapshot();
+        } catch (Exception e) {
+            log.error("Error during daily stock snapshot", e);
+        }
+    }
+}
@@ -84,20 +84,20 @@ public class AlertService {
     }
 
     private void evaluateLowStock(StockLevel stockLevel, AlertConfig config) {
-        if (stockLevel.getQuantity() <= config.getThreshold()) {
+        if (stockLevel.getTotalQuantity() <= config.getThreshold()) {
             String[] recipients = config.getEmailRecipients().split(",");
             alertEmailService.sendStockAlert(
                     recipients,
                     stockLevel.getProduct().getName(),
                     stockLevel.getProduct().getSku(),
                     stockLevel.getWarehouse().getName(),
-                    stockLevel.getQuantity(),
+                    stockLevel.getTotalQuantity(),
                     config.getThreshold()
             );
             log.warn("Low stock alert triggered: product={}, warehouse={}, qty={}, threshold={}",
                     stockLevel.getProduct().getSku(),
                     stockLevel.getWarehouse().getCode(),
-                    stockLevel.getQuantity(),
+                    stockLevel.getTotalQuantity(),
                     config.getThreshold());
         }
     }
@@ -1,5 +1,7 @@
 package com.daoninhthai.inventory.service;
 
+import com.daoninhthai.inventory.dto.CursorPage;
+import com.daoninhthai.inventory.dto.HistoryCursor;
 import com.daoninhthai.inventory.entity.AuditLog;
 import com.daoninhthai.inventory.repository.AuditLogRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,6 +20,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AuditService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final AuditLogRepository auditLogRepository;
     private final ObjectMapper objectMapper;
 
@@ -61,6 +65,36 @@ public class AuditService {
         return auditLogRepository.searchAuditLogs(entityType, entityId, userId, pageable);
     }
 
+    /**
+     * Keyset page of audit logs, newest first. Filtering by entity (type and id) or by user alone uses a
+     * dedicated index; other combinations fall back to the timestamp index.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AuditLog> getAuditLogPage(String entityType, Long entityId, String userId,
+                                                String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        HistoryCursor after = HistoryCursor.decode(cursor);
+
+        List<AuditLog> rows;
+        if (entityType != null && entityId != null && userId == null) {
+            rows = auditLogRepository.findPageByEntityBefore(entityType, entityId,
+                    after.createdAt(), after.id(), size + 1);
+        } else if (userId != null && entityType == null && entityId == null) {
+            rows = auditLogRepository.findPageByUserBefore(userId, after.createdAt(), after.id(), size + 1);
+        } else {
+            rows = auditLogRepository.findPageBefore(entityType, entityId, userId,
+                    after.createdAt(), after.id(), size + 1);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<AuditLog> page = hasMore ? rows.subList(0, size) : rows;
+        AuditLog last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return CursorPage.<AuditLog>builder()
+                .items(page)
+                .nextCursor(hasMore ? new HistoryCursor(last.getTimestamp(), last.getId()).encode() : null)
+                .build();
+    }
+
     private String toJson(Object obj) {
         if (obj == null) return null;
         try {
@@ -53,7 +53,7 @@ public class BatchExportService {
             csv.append(escapeCsv(sl.getProduct().getName())).append(",");
             csv.append(escapeCsv(sl.getWarehouse().getCode())).append(",");
             csv.append(escapeCsv(sl.getWarehouse().getName())).append(",");
-            csv.append(sl.getQuantity()).append(",");
+            csv.append(sl.getTotalQuantity()).append(",");
             csv.append(sl.getMinQuantity() != null ? sl.getMinQuantity() : "").append(",");
             csv.append(sl.getMaxQuantity() != null ? sl.getMaxQuantity() : "").append("\n");
         }
@@ -2,23 +2,31 @@ package com.daoninhthai.inventory.service;
 
 import com.daoninhthai.inventory.dto.BatchImportResult;
 import com.daoninhthai.inventory.entity.Product;
-import com.daoninhthai.inventory.entity.StockLevel;
-import com.daoninhthai.inventory.entity.Warehouse;
 import com.daoninhthai.inventory.repository.ProductRepository;
+import com.daoninhthai.inventory.repository.StockKey;
 import com.daoninhthai.inventory.repository.StockLevelRepository;
+import com.daoninhthai.inventory.repository.StockLevelRepositoryCustom.ImportedStockLevel;
 import com.daoninhthai.inventory.repository.WarehouseRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -28,91 +36,20 @@ public class BatchImportService {
     private final ProductRepository productRepository;
     private final StockLevelRepository stockLevelRepository;
     private final WarehouseRepository warehouseRepository;
+    private final EntityManager entityManager;
+    private final CsvImportPipeline csvImportPipeline;
 
     @Transactional
-    public BatchImportResult importProductsFromCsv(MultipartFile file) {
+    public BatchImportResult importProductsFromCsv(InputStreamSource file) {
         BatchImportResult result = BatchImportResult.builder()
                 .totalRows(0).imported(0).failed(0).errors(new ArrayList<>()).build();
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-
-            String headerLine = reader.readLine(); // skip header
-            if (headerLine == null) {
+        try (Reader in = openReader(file)) {
+            if (!csvImportPipeline.run(in, this::readProduct, this::saveProducts, result)) {
                 result.addError(0, "Empty CSV file");
                 return result;
             }
-
-            String line;
-            int rowNum = 1;
-            List<Product> batchProducts = new ArrayList<>();
-
-            while ((line = reader.readLine()) != null) {
-                rowNum++;
-                result.setTotalRows(result.getTotalRows() + 1);
-
-                try {
-                    String[] fields = parseCsvLine(line);
-                    if (fields.length < 4) {
-                        result.addError(rowNum, "Insufficient columns. Expected: sku,name,unit,unitPrice");
-                        result.setFailed(result.getFailed() + 1);
-                        continue;
-                    }
-
-                    String sku = fields[0].trim();
-                    String name = fields[1].trim();
-                    String unit = fields[2].trim();
-                    BigDecimal unitPrice = new BigDecimal(fields[3].trim());
-
-                    if (sku.isEmpty() || name.isEmpty()) {
-                        result.addError(rowNum, "SKU and name are required");
-                        result.setFailed(result.getFailed() + 1);
-                        continue;
-                    }
-
-                    if (productRepository.existsBySku(sku)) {
-                        result.addError(rowNum, "Duplicate SKU: " + sku);
-                        result.setFailed(result.getFailed() + 1);
-                        continue;
-                    }
-
-                    Product product = Product.builder()
-                            .sku(sku)
-                            .name(name)
-                            .unit(unit)
-                            .unitPrice(unitPrice)
-                            .active(true)
-                            .build();
-
-                    if (fields.length > 4 && !fields[4].trim().isEmpty()) {
-                        product.setDescription(fields[4].trim());
-                    }
-                    if (fields.length > 5 && !fields[5].trim().isEmpty()) {
-                        product.setReorderPoint(Integer.parseInt(fields[5].trim()));
-                    }
-                    if (fields.length > 6 && !fields[6].trim().isEmpty()) {
-                        product.setReorderQuantity(Integer.parseInt(fields[6].trim()));
-                    }
-
-                    batchProducts.add(product);
-                    result.setImported(result.getImported() + 1);
-
-                    if (batchProducts.size() >= 100) {
-                        productRepository.saveAll(batchProducts);
-                        batchProducts.clear();
-                    }
-                } catch (NumberFormatException e) {
-                    result.addError(rowNum, "Invalid number format: " + e.getMessage());
-                    result.setFailed(result.getFailed() + 1);
-                } catch (Exception e) {
-                    result.addError(rowNum, "Error processing row: " + e.getMessage());
-                    result.setFailed(result.getFailed() + 1);
-                }
-            }
-
-            if (!batchProducts.isEmpty()) {
-                productRepository.saveAll(batchProducts);
-            }
+            sortErrors(result);
 
             log.info("Product import completed: total={}, imported={}, failed={}",
                     result.getTotalRows(), result.getImported(), result.getFailed());
@@ -125,79 +62,16 @@ public class BatchImportService {
     }
 
     @Transactional
-    public BatchImportResult importStockFromCsv(MultipartFile file) {
+    public BatchImportResult importStockFromCsv(InputStreamSource file) {
         BatchImportResult result = BatchImportResult.builder()
                 .totalRows(0).imported(0).failed(0).errors(new ArrayList<>()).build();
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
+        try (Reader in = openReader(file)) {
+            if (!csvImportPipeline.run(in, this::readStockRow, this::saveStockLevels, result)) {
                 result.addError(0, "Empty CSV file");
                 return result;
             }
-
-            String line;
-            int rowNum = 1;
-
-            while ((line = reader.readLine()) != null) {
-                rowNum++;
-                result.setTotalRows(result.getTotalRows() + 1);
-
-                try {
-                    String[] fields = parseCsvLine(line);
-                    if (fields.length < 3) {
-                        result.addError(rowNum, "Insufficient columns. Expected: sku,warehouseCode,quantity");
-                        result.setFailed(result.getFailed() + 1);
-                        continue;
-                    }
-
-                    String sku = fields[0].trim();
-                    String warehouseCode = fields[1].trim();
-                    int quantity = Integer.parseInt(fields[2].trim());
-
-                    Product product = productRepository.findBySku(sku).orElse(null);
-                    if (product == null) {
-                        result.addError(rowNum, "Product not found: " + sku);
-                        result.setFailed(result.getFailed() + 1);
-                        continue;
-                    }
-
-                    Warehouse warehouse = warehouseRepository.findByCode(warehouseCode).orElse(null);
-                    if (warehouse == null) {
-                        result.addError(rowNum, "Warehouse not found: " + warehouseCode);
-                        result.setFailed(result.getFailed() + 1);
-                        continue;
-                    }
-
-                    StockLevel stockLevel = stockLevelRepository
-                            .findByProductIdAndWarehouseId(product.getId(), warehouse.getId())
-                            .orElseGet(() -> StockLevel.builder()
-                                    .product(product)
-                                    .warehouse(warehouse)
-                                    .quantity(0)
-                                    .build());
-
-                    stockLevel.setQuantity(quantity);
-
-                    if (fields.length > 3 && !fields[3].trim().isEmpty()) {
-                        stockLevel.setMinQuantity(Integer.parseInt(fields[3].trim()));
-                    }
-                    if (fields.length > 4 && !fields[4].trim().isEmpty()) {
-                        stockLevel.setMaxQuantity(Integer.parseInt(fields[4].trim()));
-                    }
-
-                    stockLevelRepository.save(stockLevel);
-                    result.setImported(result.getImported() + 1);
-                } catch (NumberFormatException e) {
-                    result.addError(rowNum, "Invalid number format: " + e.getMessage());
-                    result.setFailed(result.getFailed() + 1);
-                } catch (Exception e) {
-                    result.addError(rowNum, "Error processing row: " + e.getMessage());
-                    result.setFailed(result.getFailed() + 1);
-                }
-            }
+            sortErrors(result);
 
             log.info("Stock import completed: total={}, imported={}, failed={}",
                     result.getTotalRows(), result.getImported(), result.getFailed());
@@ -209,7 +83,174 @@ public class BatchImportService {
         return result;
     }
 
-    private String[] parseCsvLine(String line) {
-        return line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
+    /**
+     * Parses the current record as a product row.
+     *
+     * @return null when the row is invalid; the error is added to the result
+     */
+    Pending<Product> readProduct(CsvReader reader, BatchImportResult result) {
+        int rowNum = (int) reader.lineNumber();
+        try {
+            if (reader.fieldCount() < 4) {
+                return reject(result, rowNum, "Insufficient columns. Expected: sku,name,unit,unitPrice");
+            }
+
+            String sku = reader.string(0);
+            String name = reader.string(1);
+            String unit = reader.string(2);
+            BigDecimal unitPrice = reader.decimalValue(3);
+
+            if (sku.isEmpty() || name.isEmpty()) {
+                return reject(result, rowNum, "SKU and name are required");
+            }
+
+            Product product = Product.builder()
+                    .sku(sku)
+                    .name(name)
+                    .unit(unit)
+                    .unitPrice(unitPrice)
+                    .active(true)
+                    .build();
+
+            if (!reader.isBlank(4)) {
+                product.setDescription(reader.string(4));
+            }
+            if (!reader.isBlank(5)) {
+                product.setReorderPoint(reader.intValue(5));
+            }
+            if (!reader.isBlank(6)) {
+                product.setReorderQuantity(reader.intValue(6));
+            }
+            return new Pending<>(rowNum, product);
+        } catch (NumberFormatException e) {
+            return reject(result, rowNum, "Invalid number format: " + e.getMessage());
+        } catch (Exception e) {
+            return reject(result, rowNum, "Error processing row: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses the current record as a stock row.
+     *
+     * @return null when the row is invalid; the error is added to the result
+     */
+    Pending<StockRow> readStockRow(CsvReader reader, BatchImportResult result) {
+        int rowNum = (int) reader.lineNumber();
+        try {
+            if (reader.fieldCount() < 3) {
+                return reject(result, rowNum, "Insufficient columns. Expected: sku,warehouseCode,quantity");
+            }
+            return new Pending<>(rowNum, new StockRow(
+                    reader.string(0),
+                    reader.string(1),
+                    reader.intValue(2),
+                    reader.isBlank(3) ? null : reader.intValue(3),
+                    reader.isBlank(4) ? null : reader.intValue(4)));
+        } catch (NumberFormatException e) {
+            return reject(result, rowNum, "Invalid number format: " + e.getMessage());
+        } catch (Exception e) {
+            return reject(result, rowNum, "Error processing row: " + e.getMessage());
+        }
+    }
+
+    private static <T> Pending<T> reject(BatchImportResult result, int rowNum, String message) {
+        result.addError(rowNum, message);
+        result.setFailed(result.getFailed() + 1);
+        return null;
+    }
+
+    /**
+     * Rejects SKUs that exist already or earlier in the chunk with one lookup, then saves the rest.
+     * Earlier chunks are flushed, so the lookup also sees them.
+     */
+    void saveProducts(List<Pending<Product>> chunk, BatchImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> skus = new HashSet<>();
+        for (Pending<Product> pending : chunk) {
+            skus.add(pending.value().getSku());
+        }
+        Set<String> taken = productRepository.findIdsBySkuIn(skus).stream()
+                .map(ProductRepository.SkuId::getSku)
+                .collect(Collectors.toCollection(HashSet::new));
+
+        List<Product> products = new ArrayList<>(chunk.size());
+        for (Pending<Product> pending : chunk) {
+            if (!taken.add(pending.value().getSku())) {
+                result.addError(pending.rowNum(), "Duplicate SKU: " + pending.value().getSku());
+                result.setFailed(result.getFailed() + 1);
+                continue;
+            }
+            products.add(pending.value());
+        }
+        productRepository.saveAll(products);
+        entityManager.flush();
+        entityManager.clear();
+        result.setImported(result.getImported() + products.size());
+    }
+
+    /**
+     * Resolves the chunk's SKUs and warehouse codes with one query each and upserts the stock levels in
+     * one statement. A later row for the same product and warehouse replaces an earlier one.
+     */
+    void saveStockLevels(List<Pending<StockRow>> chunk, BatchImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> skus = new HashSet<>();
+        Set<String> warehouseCodes = new HashSet<>();
+        for (Pending<StockRow> pending : chunk) {
+            skus.add(pending.value().sku());
+            warehouseCodes.add(pending.value().warehouseCode());
+        }
+        Map<String, Long> productIds = productRepository.findIdsBySkuIn(skus).stream()
+                .collect(Collectors.toMap(ProductRepository.SkuId::getSku, ProductRepository.SkuId::getId));
+        Map<String, Long> warehouseIds = warehouseRepository.findIdsByCodeIn(warehouseCodes).stream()
+                .collect(Collectors.toMap(WarehouseRepository.CodeId::getCode, WarehouseRepository.CodeId::getId));
+
+        Map<StockKey, ImportedStockLevel> levels = new TreeMap<>();
+        int imported = 0;
+        for (Pending<StockRow> pending : chunk) {
+            StockRow row = pending.value();
+            Long productId = productIds.get(row.sku());
+            if (productId == null) {
+                result.addError(pending.rowNum(), "Product not found: " + row.sku());
+                result.setFailed(result.getFailed() + 1);
+                continue;
+            }
+            Long warehouseId = warehouseIds.get(row.warehouseCode());
+            if (warehouseId == null) {
+                result.addError(pending.rowNum(), "Warehouse not found: " + row.warehouseCode());
+                result.setFailed(result.getFailed() + 1);
+                continue;
+            }
+            StockKey key = new StockKey(productId, warehouseId);
+            ImportedStockLevel previous = levels.get(key);
+            levels.put(key, new ImportedStockLevel(key, row.quantity(),
+                    row.minQuantity() != null ? row.minQuantity() : previous != null ? previous.minQuantity() : null,
+                    row.maxQuantity() != null ? row.maxQuantity() : previous != null ? previous.maxQuantity() : null));
+            imported++;
+        }
+        stockLevelRepository.upsertStockLevels(levels.values());
+        result.setImported(result.getImported() + imported);
+    }
+
+    static void sortErrors(BatchImportResult result) {
+        result.getErrors().sort(Comparator.comparingInt(BatchImportResult.ImportError::getRow));
+    }
+
+    static CsvReader openCsv(InputStreamSource file) throws IOException {
+        return new CsvReader(openReader(file));
+    }
+
+    static Reader openReader(InputStreamSource file) throws IOException {
+        return new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    record Pending<T>(int rowNum, T value) {
+    }
+
+    record StockRow(String sku, String warehouseCode, int quantity, Integer minQuantity, Integer maxQuantity) {
     }
 }
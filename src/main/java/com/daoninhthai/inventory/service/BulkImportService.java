@@ -0,0 +1,157 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.dto.BatchImportResult;
+import com.daoninhthai.inventory.repository.BulkImportRepository;
+import com.daoninhthai.inventory.repository.BulkImportRepository.CopyWriter;
+import com.daoninhthai.inventory.repository.BulkImportRepository.RowError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BULK import mode: the CSV is parsed once and streamed into a staging table, then validated and merged
+ * in the database. Rows that cannot be typed are rejected while parsing; duplicates and unknown references
+ * are found by joins after the copy. The import is one transaction, so a failure leaves nothing behind.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkImportService {
+
+    // unit_price is DECIMAL(12, 2)
+    private static final int PRICE_INTEGER_DIGITS = 10;
+
+    private final BulkImportRepository bulkImportRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public BatchImportResult importProductsFromCsv(InputStreamSource file) {
+        BatchImportResult result = BatchImportResult.builder()
+                .totalRows(0).imported(0).failed(0).errors(new ArrayList<>()).build();
+
+        try (CsvReader reader = BatchImportService.openCsv(file)) {
+            if (!reader.next()) { // skip header
+                result.addError(0, "Empty CSV file");
+                return result;
+            }
+            List<RowError> rejected = transactionTemplate.execute(status -> {
+                bulkImportRepository.createProductStaging();
+                bulkImportRepository.copyProducts(out -> {
+                    while (reader.next()) {
+                        result.setTotalRows(result.getTotalRows() + 1);
+                        stageProduct(reader, out, result);
+                    }
+                });
+                return bulkImportRepository.mergeProducts();
+            });
+            complete(result, rejected);
+
+            log.info("Bulk product import completed: total={}, imported={}, failed={}",
+                    result.getTotalRows(), result.getImported(), result.getFailed());
+        } catch (Exception e) {
+            log.error("Failed to bulk import products from CSV", e);
+            fail(result, e);
+        }
+
+        return result;
+    }
+
+    private void stageProduct(CsvReader reader, CopyWriter out, BatchImportResult result) throws SQLException {
+        int rowNum = (int) reader.lineNumber();
+        if (reader.fieldCount() < 4) {
+            result.addError(rowNum, "Insufficient columns. Expected: sku,name,unit,unitPrice");
+            return;
+        }
+        String sku = reader.string(0);
+        String name = reader.string(1);
+        if (sku.isEmpty() || name.isEmpty()) {
+            result.addError(rowNum, "SKU and name are required");
+            return;
+        }
+        try {
+            BigDecimal unitPrice = reader.decimalValue(3);
+            BigDecimal rounded = unitPrice.setScale(2, RoundingMode.HALF_UP);
+            if (rounded.precision() - rounded.scale() > PRICE_INTEGER_DIGITS) {
+                result.addError(rowNum, "Unit price out of range: " + unitPrice);
+                return;
+            }
+            out.row(rowNum, sku, name, reader.string(2), rounded,
+                    reader.isBlank(4) ? null : reader.string(4),
+                    reader.isBlank(5) ? null : reader.intValue(5),
+                    reader.isBlank(6) ? null : reader.intValue(6));
+        } catch (NumberFormatException e) {
+            result.addError(rowNum, "Invalid number format: " + e.getMessage());
+        }
+    }
+
+    public BatchImportResult importStockFromCsv(InputStreamSource file) {
+        BatchImportResult result = BatchImportResult.builder()
+                .totalRows(0).imported(0).failed(0).errors(new ArrayList<>()).build();
+
+        try (CsvReader reader = BatchImportService.openCsv(file)) {
+            if (!reader.next()) {
+                result.addError(0, "Empty CSV file");
+                return result;
+            }
+            List<RowError> rejected = transactionTemplate.execute(status -> {
+                bulkImportRepository.createStockStaging();
+                bulkImportRepository.copyStock(out -> {
+                    while (reader.next()) {
+                        result.setTotalRows(result.getTotalRows() + 1);
+                        stageStock(reader, out, result);
+                    }
+                });
+                return bulkImportRepository.mergeStock();
+            });
+            complete(result, rejected);
+
+            log.info("Bulk stock import completed: total={}, imported={}, failed={}",
+                    result.getTotalRows(), result.getImported(), result.getFailed());
+        } catch (Exception e) {
+            log.error("Failed to bulk import stock from CSV", e);
+            fail(result, e);
+        }
+
+        return result;
+    }
+
+    private void stageStock(CsvReader reader, CopyWriter out, BatchImportResult result) throws SQLException {
+        int rowNum = (int) reader.lineNumber();
+        if (reader.fieldCount() < 3) {
+            result.addError(rowNum, "Insufficient columns. Expected: sku,warehouseCode,quantity");
+            return;
+        }
+        try {
+            out.row(rowNum, reader.string(0), reader.string(1), reader.intValue(2),
+                    reader.isBlank(3) ? null : reader.intValue(3),
+                    reader.isBlank(4) ? null : reader.intValue(4));
+        } catch (NumberFormatException e) {
+            result.addError(rowNum, "Invalid number format: " + e.getMessage());
+        }
+    }
+
+    private static void complete(BatchImportResult result, List<RowError> rejected) {
+        if (rejected != null) {
+            for (RowError error : rejected) {
+                result.addError((int) error.line(), error.message());
+            }
+        }
+        BatchImportService.sortErrors(result);
+        result.setFailed(result.getErrors().size());
+        result.setImported(result.getTotalRows() - result.getFailed());
+    }
+
+    // The transaction rolled back: nothing from the file was imported
+    private static void fail(BatchImportResult result, Exception e) {
+        result.setImported(0);
+        result.setFailed(result.getTotalRows());
+        result.addError(0, "File processing error: " + e.getMessage());
+    }
+}
@@ -0,0 +1,133 @@
+package com.daoninhthai.inventory.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits CSV text into chunks of about {@code chunkChars} that end on record boundaries, so each chunk can
+ * be parsed on its own by a {@link CsvReader} starting at the chunk's first line. Quoting follows the same
+ * rules as CsvReader: a quote opens a quoted field only at the start of a field, and line breaks inside
+ * quoted fields do not end the record. A record longer than a chunk becomes a chunk of its own.
+ */
+final class CsvChunker {
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    // A quote inside a quoted field: either the first of a doubled quote or the closing one
+    private static final int QUOTED_QUOTE = 3;
+
+    private final Reader in;
+    private char[] buf;
+    private int filled;
+    private int scan;
+    private int state = FIELD_START;
+    private boolean started;
+    private boolean eof;
+
+    // End of the last complete record in buf and the line the record after it starts on
+    private int boundary;
+    private long boundaryLine = 1;
+    private long line = 1;
+    private long chunkLine = 1;
+    private int index;
+
+    CsvChunker(Reader in, int chunkChars) {
+        this.in = in;
+        this.buf = new char[Math.max(chunkChars, 16)];
+    }
+
+    /**
+     * @return the next chunk, or null at the end of the input
+     */
+    Chunk next() throws IOException {
+        while (true) {
+            if (filled == buf.length) {
+                if (boundary > 0) {
+                    return emit(boundary);
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            if (eof) {
+                return filled > 0 ? emit(filled) : null;
+            }
+            int read = in.read(buf, filled, buf.length - filled);
+            if (read < 0) {
+                eof = true;
+            } else {
+                filled += read;
+                scan();
+            }
+        }
+    }
+
+    private void scan() {
+        while (scan < filled) {
+            char c = buf[scan];
+            if (state == QUOTED) {
+                if (c == '"') {
+                    state = QUOTED_QUOTE;
+                } else if (c == '\n') {
+                    line++;
+                }
+                scan++;
+                continue;
+            }
+            if (state == FIELD_START) {
+                if (!started) {
+                    started = true;
+                    if (c == '\uFEFF') {
+                        scan++;
+                        continue;
+                    }
+                }
+                if (c == '"') {
+                    state = QUOTED;
+                    scan++;
+                    continue;
+                }
+            } else if (state == QUOTED_QUOTE && c == '"') {
+                state = QUOTED;
+                scan++;
+                continue;
+            }
+            if (c == ',') {
+                state = FIELD_START;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    if (scan + 1 == filled) {
+                        // Whether this is CRLF is known once more input arrives
+                        return;
+                    }
+                    if (buf[scan + 1] == '\n') {
+                        scan++;
+                    }
+                }
+                line++;
+                state = FIELD_START;
+                boundary = scan + 1;
+                boundaryLine = line;
+            } else {
+                state = UNQUOTED;
+            }
+            scan++;
+        }
+    }
+
+    private Chunk emit(int end) {
+        Chunk chunk = new Chunk(index++, Arrays.copyOf(buf, end), chunkLine);
+        System.arraycopy(buf, end, buf, 0, filled - end);
+        filled -= end;
+        scan = Math.max(scan - end, 0);
+        boundary = 0;
+        chunkLine = boundaryLine;
+        return chunk;
+    }
+
+    /**
+     * Whole records of the input; chunk 0 starts with the header.
+     */
+    record Chunk(int index, char[] chars, long firstLine) {
+    }
+}
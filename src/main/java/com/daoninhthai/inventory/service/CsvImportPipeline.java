@@ -0,0 +1,332 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.BatchImportResult;
+import com.daoninhthai.inventory.service.BatchImportService.Pending;
+import com.daoninhthai.inventory.service.CsvChunker.Chunk;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Runs a CSV import as a staged pipeline. A reader thread splits the file into chunks that end on record
+ * boundaries, a pool shared by all imports parses and validates chunks in parallel, and the calling thread
+ * writes the rows in file order, in batches of {@code batchChunkSize}, inside its own transaction. At most
+ * {@code chunksInFlight} chunks of an import are between the reader and the writer, so memory stays flat
+ * whatever the file size. Each chunk is parsed from the line it starts on, so row numbers are those of the
+ * whole file.
+ */
+@Component
+@RequiredArgsConstructor
+public class CsvImportPipeline {
+
+    private static final long POLL_MS = 100;
+
+    private final StockConfig stockConfig;
+    private final InventoryMetricsService metricsService;
+
+    // Chunks waiting for or being parsed, and parsed chunks waiting for their writer, over all imports
+    private final AtomicInteger parseQueue = new AtomicInteger();
+    private final AtomicInteger writeQueue = new AtomicInteger();
+    private ExecutorService parsers;
+    private ExecutorService readers;
+
+    @PostConstruct
+    public void start() {
+        int threads = stockConfig.getImportPipeline().getParseThreads();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger parserThreads = new AtomicInteger();
+        parsers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "csv-import-parser-" + parserThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger readerThreads = new AtomicInteger();
+        readers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "csv-import-reader-" + readerThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        metricsService.registerImportQueue("parse", parseQueue);
+        metricsService.registerImportQueue("write", writeQueue);
+    }
+
+    @PreDestroy
+    public void stop() {
+        readers.shutdownNow();
+        parsers.shutdownNow();
+    }
+
+    /**
+     * Imports the records after the header. {@code read} parses the current record and returns null for a
+     * rejected row, {@code save} writes a batch of rows; both report into the result they are given.
+     *
+     * @return false if the file has no header
+     */
+    <T> boolean run(Reader in, BiFunction<CsvReader, BatchImportResult, Pending<T>> read,
+                    BiConsumer<List<Pending<T>>, BatchImportResult> save, BatchImportResult result)
+            throws IOException, InterruptedException {
+        Run<T> run = new Run<>(read);
+        readers.execute(() -> run.readChunks(in));
+        boolean done = false;
+        try {
+            boolean header = run.write(save, result);
+            done = true;
+            return header;
+        } finally {
+            if (!done) {
+                run.cancel();
+            }
+        }
+    }
+
+    private static BatchImportResult emptyResult() {
+        return BatchImportResult.builder().totalRows(0).imported(0).failed(0).errors(new ArrayList<>()).build();
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException(failure.getMessage(), failure);
+    }
+
+    private record Parsed<T>(List<Pending<T>> rows, BatchImportResult result) {
+    }
+
+    /**
+     * One import going through the pipeline. Chunks enter the queue in file order as futures before they
+     * are parsed, so the writer takes them in order while they are parsed out of order.
+     */
+    private class Run<T> {
+
+        private final BiFunction<CsvReader, BatchImportResult, Pending<T>> read;
+        private final BlockingQueue<CompletableFuture<Parsed<T>>> chunks;
+        private final CompletableFuture<Parsed<T>> end = CompletableFuture.completedFuture(null);
+        private final CountDownLatch readerDone = new CountDownLatch(1);
+        private volatile Throwable failure;
+        private volatile boolean cancelled;
+
+        Run(BiFunction<CsvReader, BatchImportResult, Pending<T>> read) {
+            this.read = read;
+            this.chunks = new ArrayBlockingQueue<>(Math.max(stockConfig.getImportPipeline().getChunksInFlight(), 1));
+        }
+
+        void readChunks(Reader in) {
+            try {
+                try {
+                    CsvChunker chunker = new CsvChunker(in, stockConfig.getImportPipeline().getChunkChars());
+                    while (!cancelled) {
+                        long started = System.nanoTime();
+                        Chunk chunk = chunker.next();
+                        if (chunk == null) {
+                            break;
+                        }
+                        metricsService.recordImportStage("read", System.nanoTime() - started);
+                        CompletableFuture<Parsed<T>> parsed = new CompletableFuture<>();
+                        long waitStarted = System.nanoTime();
+                        if (!offer(parsed)) {
+                            return;
+                        }
+                        metricsService.recordImportStall("read", System.nanoTime() - waitStarted);
+                        parseAsync(chunk, parsed);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                }
+                offer(end);
+            } catch (InterruptedException e) {
+                failure = new IllegalStateException("CSV import interrupted", e);
+                Thread.currentThread().interrupt();
+            } finally {
+                readerDone.countDown();
+            }
+        }
+
+        // Waits for room in the queue; false once the writer gave up
+        private boolean offer(CompletableFuture<Parsed<T>> chunk) throws InterruptedException {
+            while (!cancelled) {
+                if (chunks.offer(chunk, POLL_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void parseAsync(Chunk chunk, CompletableFuture<Parsed<T>> parsed) {
+            parseQueue.incrementAndGet();
+            try {
+                parsers.execute(() -> {
+                    try {
+                        Parsed<T> result = parse(chunk);
+                        handOff();
+                        parsed.complete(result);
+                    } catch (Throwable e) {
+                        handOff();
+                        parsed.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                handOff();
+                parsed.completeExceptionally(e);
+            }
+        }
+
+        private void handOff() {
+            parseQueue.decrementAndGet();
+            writeQueue.incrementAndGet();
+        }
+
+        private Parsed<T> parse(Chunk chunk) {
+            long started = System.nanoTime();
+            BatchImportResult result = emptyResult();
+            List<Pending<T>> rows = new ArrayList<>();
+            char[] chars = chunk.chars();
+            try (CsvReader reader = new CsvReader(new CharArrayReader(chars), chars.length, chunk.firstLine())) {
+                if (chunk.index() == 0) {
+                    reader.next(); // skip header
+                }
+                while (reader.next()) {
+                    result.setTotalRows(result.getTotalRows() + 1);
+                    Pending<T> pending = read.apply(reader, result);
+                    if (pending != null) {
+                        rows.add(pending);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            metricsService.recordImportStage("parse", System.nanoTime() - started);
+            return new Parsed<>(rows, result);
+        }
+
+        boolean write(BiConsumer<List<Pending<T>>, BatchImportResult> save, BatchImportResult result)
+                throws IOException, InterruptedException {
+            int batchSize = Math.max(stockConfig.getBatchChunkSize(), 1);
+            List<Pending<T>> batch = new ArrayList<>(batchSize);
+            boolean header = false;
+            // Write time of the current chunk. Batches span chunks, so a batch counts towards the chunk that
+            // fills it and the final partial batch towards the last chunk.
+            long written = 0;
+            while (true) {
+                long waitStarted = System.nanoTime();
+                CompletableFuture<Parsed<T>> next = take();
+                if (next == end) {
+                    written += save(batch, save, result);
+                    if (header) {
+                        metricsService.recordImportStage("write", written);
+                    }
+                    break;
+                }
+                next.whenComplete((value, error) -> writeQueue.decrementAndGet());
+                Parsed<T> parsed;
+                try {
+                    parsed = next.get();
+                } catch (ExecutionException e) {
+                    rethrow(e.getCause());
+                    return false;
+                }
+                metricsService.recordImportStall("write", System.nanoTime() - waitStarted);
+                if (header) {
+                    metricsService.recordImportStage("write", written);
+                }
+                header = true;
+                written = 0;
+
+                BatchImportResult part = parsed.result();
+                result.setTotalRows(result.getTotalRows() + part.getTotalRows());
+                result.setFailed(result.getFailed() + part.getFailed());
+                result.getErrors().addAll(part.getErrors());
+                for (Pending<T> pending : parsed.rows()) {
+                    batch.add(pending);
+                    if (batch.size() >= batchSize) {
+                        written += save(batch, save, result);
+                    }
+                }
+            }
+            return header;
+        }
+
+        private CompletableFuture<Parsed<T>> take() throws IOException, InterruptedException {
+            while (true) {
+                CompletableFuture<Parsed<T>> next = chunks.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (next == end && failure != null) {
+                    rethrow(failure);
+                }
+                if (next != null) {
+                    return next;
+                }
+                // The reader queues the end marker before it finishes, unless it was interrupted
+                if (readerDone.getCount() == 0 && chunks.isEmpty()) {
+                    rethrow(failure != null ? failure : new IllegalStateException("CSV reader stopped"));
+                }
+            }
+        }
+
+        // Returns the time the save took
+        private long save(List<Pending<T>> batch, BiConsumer<List<Pending<T>>, BatchImportResult> save,
+                          BatchImportResult result) {
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            long started = System.nanoTime();
+            save.accept(batch, result);
+            batch.clear();
+            return System.nanoTime() - started;
+        }
+
+        // Stops the reader and releases the chunks the writer will not take
+        void cancel() {
+            cancelled = true;
+            boolean interrupted = Thread.interrupted();
+            while (readerDone.getCount() > 0) {
+                try {
+                    readerDone.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            List<CompletableFuture<Parsed<T>>> left = new ArrayList<>();
+            chunks.drainTo(left);
+            for (CompletableFuture<Parsed<T>> chunk : left) {
+                if (chunk != end) {
+                    chunk.whenComplete((value, error) -> writeQueue.decrementAndGet());
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.daoninhthai.inventory.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * RFC 4180 CSV reader over a reusable char buffer. Fields may be quoted, contain commas, line breaks and
+ * doubled quotes; both LF and CRLF end a record. A record is parsed in place: quoted fields are unescaped
+ * within the buffer, so reading a record allocates nothing and fields are only turned into Strings or
+ * numbers when asked for. Field values are valid until the next call to {@link #next()}.
+ */
+final class CsvReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private char[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private int recordStart;
+    private int fieldStart;
+    private int write;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    private long line = 1;
+    private long recordLine;
+    private long records;
+
+    CsvReader(Reader in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    CsvReader(Reader in, int bufferSize) {
+        this(in, bufferSize, 1);
+    }
+
+    /**
+     * A reader over part of a file that starts at a record boundary on line {@code firstLine}, so line
+     * numbers match those of the whole file.
+     */
+    CsvReader(Reader in, int bufferSize, long firstLine) {
+        this.in = in;
+        this.buf = new char[Math.max(bufferSize, 16)];
+        this.line = firstLine;
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return false at the end of the input
+     */
+    boolean next() throws IOException {
+        count = 0;
+        if (pos == limit && !fill()) {
+            return false;
+        }
+        if (records == 0 && line == 1 && buf[pos] == '\uFEFF') {
+            pos++;
+        }
+        records++;
+        recordStart = pos;
+        recordLine = line;
+
+        while (true) {
+            if (pos < limit || fill()) {
+                if (buf[pos] == '"') {
+                    pos++;
+                    readQuoted();
+                } else {
+                    fieldStart = pos;
+                    write = readUnquoted();
+                }
+            } else {
+                fieldStart = pos;
+                write = pos;
+            }
+            addField(fieldStart, write);
+
+            if (pos == limit && !fill()) {
+                return true;
+            }
+            char c = buf[pos++];
+            if (c == ',') {
+                continue;
+            }
+            line++;
+            if (c == '\r' && (pos < limit || fill()) && buf[pos] == '\n') {
+                pos++;
+            }
+            return true;
+        }
+    }
+
+    private int readUnquoted() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == ',' || c == '\n' || c == '\r') {
+                    return pos;
+                }
+                pos++;
+            }
+            if (!fill()) {
+                return pos;
+            }
+        }
+    }
+
+    // Unescapes the field into buf[fieldStart, write); pos starts after the opening quote
+    private void readQuoted() throws IOException {
+        fieldStart = pos;
+        write = pos;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw new IllegalStateException("Unterminated quoted field starting on line " + recordLine);
+            }
+            char c = buf[pos++];
+            if (c == '"') {
+                if ((pos < limit || fill()) && buf[pos] == '"') {
+                    buf[write++] = '"';
+                    pos++;
+                    continue;
+                }
+                break;
+            }
+            if (c == '\n') {
+                line++;
+            }
+            buf[write++] = c;
+        }
+        // Lenient about text between the closing quote and the delimiter: keep it as part of the field
+        while ((pos < limit || fill()) && buf[pos] != ',' && buf[pos] != '\n' && buf[pos] != '\r') {
+            buf[write++] = buf[pos++];
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Moves the current record to the front of the buffer, growing it if the record fills it, and reads
+     * more input after it.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int shift = recordStart;
+        if (shift > 0) {
+            System.arraycopy(buf, shift, buf, 0, limit - shift);
+            limit -= shift;
+            pos -= shift;
+            recordStart = 0;
+            fieldStart -= shift;
+            write -= shift;
+            for (int i = 0; i < count; i++) {
+                starts[i] -= shift;
+                ends[i] -= shift;
+            }
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    int fieldCount() {
+        return count;
+    }
+
+    /** Line on which the current record starts, counting from 1. */
+    long lineNumber() {
+        return recordLine;
+    }
+
+    /** The raw field, as a view of the buffer. */
+    CharSequence field(int index) {
+        return CharBuffer.wrap(buf, starts[index], ends[index] - starts[index]);
+    }
+
+    /** The field without leading and trailing whitespace, or "" when the record has no such field. */
+    String string(int index) {
+        if (index >= count) {
+            return "";
+        }
+        int start = trimStart(index);
+        return new String(buf, start, trimEnd(index, start) - start);
+    }
+
+    boolean isBlank(int index) {
+        return index >= count || trimStart(index) == ends[index];
+    }
+
+    int intValue(int index) {
+        int start = trimStart(index);
+        int end = trimEnd(index, start);
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        boolean negative = buf[start] == '-';
+        int i = negative || buf[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            throw invalidNumber(start, end);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidNumber(start, end);
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw invalidNumber(start, end);
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw invalidNumber(start, end);
+        }
+        return (int) value;
+    }
+
+    BigDecimal decimalValue(int index) {
+        int start = trimStart(index);
+        int end = trimEnd(index, start);
+        try {
+            return new BigDecimal(buf, start, end - start);
+        } catch (NumberFormatException e) {
+            throw invalidNumber(start, end);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int trimStart(int index) {
+        int start = starts[index];
+        while (start < ends[index] && buf[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int index, int start) {
+        int end = ends[index];
+        while (end > start && buf[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private NumberFormatException invalidNumber(int start, int end) {
+        return new NumberFormatException("For input string: \"" + new String(buf, start, end - start) + "\"");
+    }
+}
@@ -6,14 +6,15 @@ import com.daoninhthai.inventory.dto.StockValueReport;
 import com.daoninhthai.inventory.entity.OrderStatus;
 import com.daoninhthai.inventory.entity.Warehouse;
 import com.daoninhthai.inventory.repository.*;
+import com.daoninhthai.inventory.repository.MovementRollupRepository.DailyTotals;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -25,8 +26,9 @@ public class DashboardService {
     private final ProductRepository productRepository;
     private final WarehouseRepository warehouseRepository;
     private final StockLevelRepository stockLevelRepository;
-    private final StockMovementRepository stockMovementRepository;
+    private final MovementRollupRepository movementRollupRepository;
     private final PurchaseOrderRepository purchaseOrderRepository;
+    private final MovementArchiveService movementArchiveService;
 
     @Transactional(readOnly = true)
     public DashboardSummary getSummary() {
@@ -64,49 +66,50 @@ public class DashboardService {
 
     @Transactional(readOnly = true)
     public List<ProductMovementSummary> getTopMovingProducts(int limit) {
-        LocalDateTime since = LocalDateTime.now().minusDays(30);
-        List<Object[]> results = stockMovementRepository.findTopMovingProducts(
-                since, PageRequest.of(0, limit));
-
-        return results.stream()
-                .map(row -> ProductMovementSummary.builder()
-                        .productId((Long) row[0])
-                        .productName((String) row[1])
-                        .totalIn(((Number) row[2]).longValue())
-                        .totalOut(0L)
-                        .netChange(((Number) row[2]).longValue())
+        LocalDate since = LocalDate.now().minusDays(30);
+        return movementRollupRepository.findTopMovingProducts(since, limit).stream()
+                .map(totals -> ProductMovementSummary.builder()
+                        .productId(totals.productId())
+                        .productName(totals.productName())
+                        .sku(totals.sku())
+                        .totalIn(totals.totalIn())
+                        .totalOut(totals.totalOut())
+                        .netChange(totals.totalIn() - totals.totalOut())
                         .build())
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<Map<String, Object>> getStockTrends(int days) {
-        LocalDateTime since = LocalDateTime.now().minusDays(days);
-        List<Object[]> results = stockMovementRepository.findStockTrends(since);
-
-        Map<String, Map<String, Object>> trendMap = new LinkedHashMap<>();
-
-        for (Object[] row : results) {
-            String date = row[0].toString();
-            String type = row[1].toString();
-            Long quantity = ((Number) row[2]).longValue();
+        LocalDate since = LocalDate.now().minusDays(days);
+        List<Map<String, Object>> trends = new ArrayList<>();
+
+        for (DailyTotals totals : movementRollupRepository.findDailyTotals(since)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("date", totals.day().toString());
+            entry.put("totalIn", totals.totalIn());
+            entry.put("totalOut", totals.totalOut());
+            trends.add(entry);
+        }
 
-            trendMap.computeIfAbsent(date, k -> {
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("date", date);
-                entry.put("totalIn", 0L);
-                entry.put("totalOut", 0L);
-                return entry;
-            });
+        return trends;
+    }
 
-            Map<String, Object> entry = trendMap.get(date);
-            if ("IN".equals(type)) {
-                entry.put("totalIn", quantity);
-            } else if ("OUT".equals(type)) {
-                entry.put("totalOut", quantity);
-            }
+    /**
+     * Recomputes the daily movement rollup for the given days from stock_movements. Archived months are
+     * rejected: their movements are no longer in the database, so a rebuild would wipe their rollups.
+     */
+    @Transactional
+    public int rebuildMovementRollups(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalStateException("Rollup rebuild range ends before it starts");
         }
-
-        return new ArrayList<>(trendMap.values());
+        movementArchiveService.findArchivedMonth(from, to).ifPresent(month -> {
+            throw new IllegalStateException("Movements of " + YearMonth.from(month)
+                    + " are archived; rebuild rollups from a later day");
+        });
+        int rows = movementRollupRepository.rebuild(from, to);
+        log.info("Rebuilt movement rollups from {} to {}: {} rows", from, to, rows);
+        return rows;
     }
 }
@@ -0,0 +1,258 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.DemandStatsResponse;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.DemandStatsRepository;
+import com.daoninhthai.inventory.repository.DemandStatsRepository.DailyDemand;
+import com.daoninhthai.inventory.repository.DemandStatsRepository.DemandStatsRow;
+import com.daoninhthai.inventory.repository.ProductRepository;
+import com.daoninhthai.inventory.repository.WarehouseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Daily OUT demand statistics per product and warehouse, kept up to date without rescanning history.
+ * Every OUT movement already lands in movement_daily_rollup; once a day is over its totals are folded into
+ * demand_stats with Welford's algorithm, an exponentially decayed average and a 90-day ring of daily
+ * totals. Keys without demand on a day are not touched: the zero days are folded in the next time they
+ * have demand, and applied on the fly when read. Reads cost one row regardless of history length.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DemandStatsService {
+
+    public static final int WINDOW_DAYS = 90;
+
+    private final DemandStatsRepository demandStatsRepository;
+    private final ProductRepository productRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    /**
+     * Folds every closed day not folded yet, one transaction per day so an interrupted run resumes.
+     *
+     * @return the number of days folded
+     */
+    public int foldClosedDays() {
+        LocalDate through = LocalDate.now().minusDays(1);
+        int folded = 0;
+        while (Boolean.TRUE.equals(transactionTemplate.execute(status -> foldNextDay(through)))) {
+            folded++;
+        }
+        if (folded > 0) {
+            log.info("Folded {} days of demand into demand statistics (through {})", folded, through);
+        }
+        return folded;
+    }
+
+    private boolean foldNextDay(LocalDate through) {
+        Optional<LocalDate> foldedThrough = demandStatsRepository.lockFoldedThrough();
+        LocalDate day;
+        if (foldedThrough.isPresent()) {
+            day = foldedThrough.get().plusDays(1);
+        } else {
+            Optional<LocalDate> firstOut = demandStatsRepository.findFirstOutDay();
+            if (firstOut.isEmpty()) {
+                demandStatsRepository.setFoldedThrough(through);
+                return false;
+            }
+            LocalDate earliest = through.minusDays(stockConfig.getDemandStats().getBackfillDays() - 1L);
+            day = firstOut.get().isAfter(earliest) ? firstOut.get() : earliest;
+        }
+        if (day.isAfter(through)) {
+            return false;
+        }
+        foldDay(day);
+        demandStatsRepository.setFoldedThrough(day);
+        return true;
+    }
+
+    private void foldDay(LocalDate day) {
+        List<DailyDemand> demands = demandStatsRepository.findDailyOut(day);
+        if (demands.isEmpty()) {
+            return;
+        }
+        double alpha = stockConfig.getDemandStats().getEwmaAlpha();
+        Set<Long> productIds = demands.stream().map(DailyDemand::productId).collect(Collectors.toSet());
+        Map<String, DemandStatsRow> existing = new HashMap<>();
+        for (DemandStatsRow row : demandStatsRepository.findByProducts(productIds)) {
+            existing.put(key(row.productId(), row.warehouseId()), row);
+        }
+
+        List<DemandStatsRow> updated = new ArrayList<>(demands.size());
+        for (DailyDemand demand : demands) {
+            DemandStatsRow row = existing.get(key(demand.productId(), demand.warehouseId()));
+            Accumulator acc = row != null
+                    ? Accumulator.of(row)
+                    : Accumulator.start(demand.productId(), demand.warehouseId(), day);
+            if (!acc.lastDay.isBefore(day)) {
+                continue;
+            }
+            acc.add(day, demand.quantity(), alpha);
+            updated.add(acc.toRow());
+        }
+        demandStatsRepository.saveAll(updated);
+    }
+
+    /**
+     * Discards the statistics and folds them again from the daily rollup, e.g. after a rollup rebuild.
+     */
+    public int rebuild() {
+        transactionTemplate.executeWithoutResult(status -> {
+            demandStatsRepository.lockFoldedThrough();
+            demandStatsRepository.deleteAll();
+            demandStatsRepository.setFoldedThrough(null);
+        });
+        return foldClosedDays();
+    }
+
+    /**
+     * Demand statistics of the product in one warehouse, or across all warehouses when
+     * {@code warehouseId} is null.
+     */
+    @Transactional(readOnly = true)
+    public DemandStatsResponse getDemandStats(Long productId, Long warehouseId) {
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        if (warehouseId != null && !warehouseRepository.existsById(warehouseId)) {
+            throw new ResourceNotFoundException("Warehouse", "id", warehouseId);
+        }
+
+        DemandStatsResponse.DemandStatsResponseBuilder response = DemandStatsResponse.builder()
+                .productId(productId)
+                .warehouseId(warehouseId);
+        Optional<LocalDate> through = demandStatsRepository.findFoldedThrough();
+        Optional<DemandStatsRow> row = demandStatsRepository.find(productId,
+                warehouseId != null ? warehouseId : DemandStatsRepository.ALL_WAREHOUSES);
+        if (through.isEmpty() || row.isEmpty()) {
+            return response.throughDay(through.orElse(null)).build();
+        }
+
+        Accumulator acc = Accumulator.of(row.get());
+        acc.zeroThrough(through.get(), stockConfig.getDemandStats().getEwmaAlpha());
+
+        LocalDate windowStart = through.get().minusDays(WINDOW_DAYS - 1);
+        if (windowStart.isBefore(acc.firstDay)) {
+            windowStart = acc.firstDay;
+        }
+        int windowDays = (int) ChronoUnit.DAYS.between(windowStart, through.get()) + 1;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (LocalDate day = windowStart; !day.isAfter(through.get()); day = day.plusDays(1)) {
+            long quantity = acc.ring[slot(day)];
+            sum += quantity;
+            sumOfSquares += (double) quantity * quantity;
+        }
+        double windowMean = windowDays > 0 ? sum / windowDays : 0;
+        double windowVariance = windowDays > 0 ? Math.max(0, sumOfSquares / windowDays - windowMean * windowMean) : 0;
+
+        return response
+                .throughDay(through.get())
+                .daysObserved(acc.days)
+                .meanDailyDemand(acc.mean)
+                .stdDevDailyDemand(acc.days > 0 ? Math.sqrt(acc.m2 / acc.days) : 0)
+                .ewmaDailyDemand(acc.ewma)
+                .windowDays(Math.max(windowDays, 0))
+                .windowMeanDailyDemand(windowMean)
+                .windowStdDevDailyDemand(Math.sqrt(windowVariance))
+                .build();
+    }
+
+    private static String key(long productId, long warehouseId) {
+        return productId + ":" + warehouseId;
+    }
+
+    private static int slot(LocalDate day) {
+        return (int) Math.floorMod(day.toEpochDay(), (long) WINDOW_DAYS);
+    }
+
+    private static final class Accumulator {
+
+        private long productId;
+        private long warehouseId;
+        private LocalDate firstDay;
+        private LocalDate lastDay;
+        private long days;
+        private double mean;
+        private double m2;
+        private double ewma;
+        private long[] ring;
+
+        static Accumulator of(DemandStatsRow row) {
+            Accumulator acc = new Accumulator();
+            acc.productId = row.productId();
+            acc.warehouseId = row.warehouseId();
+            acc.firstDay = row.firstDay();
+            acc.lastDay = row.lastDay();
+            acc.days = row.days();
+            acc.mean = row.mean();
+            acc.m2 = row.m2();
+            acc.ewma = row.ewma();
+            acc.ring = row.ring().length == WINDOW_DAYS ? row.ring().clone() : new long[WINDOW_DAYS];
+            return acc;
+        }
+
+        static Accumulator start(long productId, long warehouseId, LocalDate firstDay) {
+            Accumulator acc = new Accumulator();
+            acc.productId = productId;
+            acc.warehouseId = warehouseId;
+            acc.firstDay = firstDay;
+            acc.lastDay = firstDay.minusDays(1);
+            acc.ring = new long[WINDOW_DAYS];
+            return acc;
+        }
+
+        /**
+         * Folds in zero demand for every day after the last folded one up to and including {@code day}.
+         * The zero days are merged as one group (Chan et al.), so a long gap costs the same as one day.
+         */
+        void zeroThrough(LocalDate day, double alpha) {
+            long gap = ChronoUnit.DAYS.between(lastDay, day);
+            if (gap <= 0) {
+                return;
+            }
+            long total = days + gap;
+            double delta = -mean;
+            m2 += delta * delta * days * gap / total;
+            mean += delta * gap / total;
+            days = total;
+            ewma *= Math.pow(1 - alpha, gap);
+            for (long i = 1; i <= Math.min(gap, WINDOW_DAYS); i++) {
+                ring[slot(lastDay.plusDays(i))] = 0;
+            }
+            lastDay = day;
+        }
+
+        void add(LocalDate day, long quantity, double alpha) {
+            zeroThrough(day.minusDays(1), alpha);
+            days++;
+            double delta = quantity - mean;
+            mean += delta / days;
+            m2 += delta * (quantity - mean);
+            ewma = days == 1 ? quantity : alpha * quantity + (1 - alpha) * ewma;
+            ring[slot(day)] = quantity;
+            lastDay = day;
+        }
+
+        DemandStatsRow toRow() {
+            return new DemandStatsRow(productId, warehouseId, firstDay, lastDay, days, mean, m2, ewma, ring);
+        }
+    }
+}
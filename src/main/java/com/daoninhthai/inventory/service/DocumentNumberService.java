@@ -0,0 +1,82 @@
+package com.daoninhthai.inventory.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates document numbers such as PO-20240131-100042. Each call to a series' database sequence
+ * reserves a block of BLOCK_SIZE numbers, which this instance then hands out from memory without
+ * locking. Numbers are unique across restarts and instances; unused numbers of a block are skipped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentNumberService {
+
+    // Must match the INCREMENT BY of the series sequences
+    private static final int BLOCK_SIZE = 50;
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Series, Block> blocks = new ConcurrentHashMap<>();
+    private final Object refillLock = new Object();
+
+    public String next(Series series) {
+        return series.prefix + "-" + LocalDate.now().format(DAY_FORMAT) + "-" + nextNumber(series);
+    }
+
+    public long nextNumber(Series series) {
+        Block block = blocks.get(series);
+        if (block == null) {
+            block = refill(series, null);
+        }
+        while (true) {
+            long number = block.next.getAndIncrement();
+            if (number < block.end) {
+                return number;
+            }
+            block = refill(series, block);
+        }
+    }
+
+    private Block refill(Series series, Block exhausted) {
+        synchronized (refillLock) {
+            Block current = blocks.get(series);
+            if (current != null && current != exhausted) {
+                // Another thread already refilled
+                return current;
+            }
+            Long start = jdbcTemplate.queryForObject("SELECT nextval('" + series.sequence + "')", Long.class);
+            Block block = new Block(new AtomicLong(start), start + BLOCK_SIZE);
+            blocks.put(series, block);
+            log.debug("Reserved {} numbers {}..{}", series, start, block.end - 1);
+            return block;
+        }
+    }
+
+    public enum Series {
+        PURCHASE_ORDER("PO", "purchase_order_number_seq"),
+        TRANSFER("TRF", "transfer_number_seq");
+
+        private final String prefix;
+        private final String sequence;
+
+        Series(String prefix, String sequence) {
+            this.prefix = prefix;
+            this.sequence = sequence;
+        }
+    }
+
+    private record Block(AtomicLong next, long end) {
+    }
+}
@@ -0,0 +1,235 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.IdempotencyConfig;
+import com.daoninhthai.inventory.exception.ServiceBusyException;
+import com.daoninhthai.inventory.repository.IdempotencyKeyRepository;
+import com.daoninhthai.inventory.repository.IdempotencyKeyRepository.StoredKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Dedupes retried mutations by their Idempotency-Key header. Completed responses are kept in a bounded
+ * in-memory cache (L1) and in the idempotency_keys table (L2); a replay returns the stored response
+ * without running the mutation again.
+ *
+ * A key is claimed in the table before the mutation runs. When the mutation goes through
+ * {@link StockWritePipeline}, its response is stored in the same transaction as the stock change, so a
+ * committed mutation never leaves its key unanswered. Concurrent duplicates wait for the first request:
+ * on a local future within this instance, and by polling the claim across instances.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    private static final ThreadLocal<Claim> CURRENT_CLAIM = new ThreadLocal<>();
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyConfig idempotencyConfig;
+
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CachedResponse> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                    return size() > idempotencyConfig.getCacheSize();
+                }
+            });
+
+    /**
+     * Runs the action once per scope and key. Without a key the action simply runs.
+     */
+    public <T> T execute(String scope, String key, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 255) {
+            throw new IllegalStateException("Idempotency-Key must be at most 255 characters");
+        }
+
+        String cacheKey = scope + ":" + key;
+        String requestHash = hash(request);
+        long deadline = System.currentTimeMillis() + idempotencyConfig.getWaitTimeoutMs();
+
+        while (true) {
+            CachedResponse cached = cache.get(cacheKey);
+            if (cached != null && cached.expiresAt().isAfter(LocalDateTime.now())) {
+                return replay(cached.requestHash(), cached.response(), requestHash, responseType);
+            }
+
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(cacheKey, mine);
+            if (running != null) {
+                awaitLocal(running, deadline);
+                continue;
+            }
+            try {
+                return executeClaimed(scope, key, cacheKey, requestHash, responseType, action, deadline);
+            } finally {
+                inFlight.remove(cacheKey, mine);
+                mine.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Makes the work store the response of the idempotent request running on the calling thread, if any.
+     * The returned supplier may run on another thread, inside the mutation's transaction.
+     */
+    public <T> Supplier<T> bindToTransaction(Supplier<T> work) {
+        Claim claim = CURRENT_CLAIM.get();
+        if (claim == null) {
+            return work;
+        }
+        CURRENT_CLAIM.remove();
+        return () -> {
+            T result = work.get();
+            idempotencyKeyRepository.complete(claim.scope(), claim.key(), toJson(result));
+            claim.recorded = true;
+            return result;
+        };
+    }
+
+    @Scheduled(fixedDelay = 3600000, initialDelay = 60000)
+    public void deleteExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired();
+        if (deleted > 0) {
+            log.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private <T> T executeClaimed(String scope, String key, String cacheKey, String requestHash,
+                                 Class<T> responseType, Supplier<T> action, long deadline) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime lockedUntil = now.plusSeconds(idempotencyConfig.getLeaseSeconds());
+        LocalDateTime expiresAt = now.plusHours(idempotencyConfig.getTtlHours());
+
+        boolean owned = idempotencyKeyRepository.claim(scope, key, requestHash, lockedUntil, expiresAt);
+        while (!owned) {
+            Optional<StoredKey> stored = idempotencyKeyRepository.find(scope, key);
+            if (stored.isPresent() && stored.get().completed()
+                    && stored.get().expiresAt().isAfter(LocalDateTime.now())) {
+                StoredKey completed = stored.get();
+                cache.put(cacheKey, new CachedResponse(completed.requestHash(), completed.response(),
+                        completed.expiresAt()));
+                return replay(completed.requestHash(), completed.response(), requestHash, responseType);
+            }
+            owned = stored.isEmpty()
+                    ? idempotencyKeyRepository.claim(scope, key, requestHash, lockedUntil, expiresAt)
+                    : idempotencyKeyRepository.takeOver(scope, key, requestHash, lockedUntil, expiresAt);
+            if (!owned) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new ServiceBusyException("A request with this Idempotency-Key is still in progress");
+                }
+                sleep(50);
+            }
+        }
+
+        Claim claim = new Claim(scope, key);
+        CURRENT_CLAIM.set(claim);
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.release(scope, key);
+            throw e;
+        } finally {
+            CURRENT_CLAIM.remove();
+        }
+
+        String response = toJson(result);
+        if (!claim.recorded) {
+            idempotencyKeyRepository.complete(scope, key, response);
+        }
+        cache.put(cacheKey, new CachedResponse(requestHash, response, expiresAt));
+        return result;
+    }
+
+    private <T> T replay(String storedHash, String response, String requestHash, Class<T> responseType) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IllegalStateException("Idempotency-Key was already used for a different request");
+        }
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read stored idempotent response", e);
+        }
+    }
+
+    private void awaitLocal(CompletableFuture<Void> running, long deadline) {
+        try {
+            running.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ServiceBusyException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an idempotent request", e);
+        } catch (ExecutionException e) {
+            // Not completed exceptionally; the caller re-checks the cache and the key either way
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash idempotent request", e);
+        }
+    }
+
+    private String toJson(Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store idempotent response", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an idempotent request", e);
+        }
+    }
+
+    private static final class Claim {
+        private final String scope;
+        private final String key;
+        private volatile boolean recorded;
+
+        private Claim(String scope, String key) {
+            this.scope = scope;
+            this.key = key;
+        }
+
+        private String scope() {
+            return scope;
+        }
+
+        private String key() {
+            return key;
+        }
+    }
+
+    private record CachedResponse(String requestHash, String response, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,360 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.config.TenantContext;
+import com.daoninhthai.inventory.dto.BatchImportResult;
+import com.daoninhthai.inventory.dto.ImportJobResponse;
+import com.daoninhthai.inventory.dto.ImportJobStatus;
+import com.daoninhthai.inventory.dto.ImportJobType;
+import com.daoninhthai.inventory.dto.ImportMode;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.ImportJobRepository;
+import com.daoninhthai.inventory.repository.ImportJobRepository.ImportJob;
+import com.daoninhthai.inventory.service.BatchImportService.Pending;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Background CSV imports. An upload is spooled to disk and queued; workers claim queued jobs within the
+ * per-tenant limits and apply STANDARD jobs in chunk transactions that also commit the job's errors and
+ * checkpoint, so a job interrupted by a failure or restart resumes after the last committed chunk. BULK
+ * jobs run as the single transaction of the bulk import and start over if interrupted. Claimed jobs hold
+ * a lease that the dispatcher renews while they run; a job whose lease expires is claimed again.
+ *
+ * The spool directory is local to the instance, so a job records the node that spooled it and only that
+ * node claims it. A job whose node is gone resumes once an instance starts with the same node name.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportJobService {
+
+    private final ImportJobRepository importJobRepository;
+    private final BatchImportService batchImportService;
+    private final BulkImportService bulkImportService;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    // Job id -> attempt, for the jobs this instance is running
+    private final Map<Long, Integer> running = new ConcurrentHashMap<>();
+    private ExecutorService workers;
+    private String node;
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory());
+        node = stockConfig.getImportJobs().getNode();
+        if (node == null || node.isBlank()) {
+            node = InetAddress.getLocalHost().getHostName();
+        }
+        log.info("Import jobs spool to {} as node {}", directory().toAbsolutePath(), node);
+        AtomicInteger threads = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(stockConfig.getImportJobs().getWorkers(), task -> {
+            Thread thread = new Thread(task, "import-job-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        workers.shutdownNow();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Import job workers did not stop; their jobs resume once the lease expires");
+        }
+    }
+
+    public ImportJobResponse submit(ImportJobType type, ImportMode mode, MultipartFile file) {
+        Path spool = directory().resolve(UUID.randomUUID() + ".csv");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, spool);
+            }
+            long id = importJobRepository.create(TenantContext.getCurrentTenantId(), type, mode,
+                    file.getOriginalFilename(), node, spool.toString(), Files.size(spool));
+            log.info("Queued {} {} import job {} ({} bytes)", mode, type, id, Files.size(spool));
+            return getJob(id);
+        } catch (IOException e) {
+            deleteSpool(spool);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteSpool(spool);
+            throw e;
+        }
+    }
+
+    public ImportJobResponse getJob(Long id) {
+        ImportJob job = importJobRepository.find(id)
+                .filter(j -> TenantContext.getCurrentTenantId() == null
+                        || Objects.equals(j.tenantId(), TenantContext.getCurrentTenantId()))
+                .orElseThrow(() -> new ResourceNotFoundException("ImportJob", "id", id));
+
+        Double rowsPerSecond = null;
+        Long etaSeconds = null;
+        if (job.runSeconds() != null && job.runSeconds() > 0) {
+            rowsPerSecond = (job.rowsDone() - job.runStartRows()) / job.runSeconds();
+            double bytesPerSecond = (job.bytesDone() - job.runStartBytes()) / job.runSeconds();
+            if (job.status() == ImportJobStatus.RUNNING && bytesPerSecond > 0) {
+                etaSeconds = (long) Math.ceil(Math.max(job.fileBytes() - job.bytesDone(), 0) / bytesPerSecond);
+            }
+        }
+
+        return ImportJobResponse.builder()
+                .id(job.id())
+                .type(job.type())
+                .mode(job.mode())
+                .status(job.status())
+                .fileName(job.fileName())
+                .fileBytes(job.fileBytes())
+                .bytesProcessed(job.bytesDone())
+                .rowsProcessed(job.rowsDone())
+                .imported(job.imported())
+                .failed(job.failed())
+                .rowsPerSecond(rowsPerSecond)
+                .etaSeconds(etaSeconds)
+                .createdAt(job.createdAt())
+                .startedAt(job.runStartedAt())
+                .finishedAt(job.finishedAt())
+                .error(job.error())
+                .errors(importJobRepository.findErrors(job.id(), stockConfig.getImportJobs().getErrorsInResponse()))
+                .build();
+    }
+
+    /**
+     * Renews the leases of this instance's jobs and starts queued jobs on free workers.
+     */
+    public void dispatch() {
+        StockConfig.ImportJobs config = stockConfig.getImportJobs();
+        importJobRepository.renewLeases(Map.copyOf(running), config.getLeaseSeconds());
+        int free = config.getWorkers() - running.size();
+        if (free <= 0 || stopping) {
+            return;
+        }
+        List<ImportJob> claimed = transactionTemplate.execute(status -> claim(free));
+        if (claimed == null) {
+            return;
+        }
+        for (ImportJob job : claimed) {
+            running.put(job.id(), job.attempt());
+            workers.execute(() -> run(job));
+        }
+    }
+
+    private List<ImportJob> claim(int slots) {
+        StockConfig.ImportJobs config = stockConfig.getImportJobs();
+        importJobRepository.lockDispatch();
+        Map<Long, Integer> perTenant = new HashMap<>(importJobRepository.countRunningByTenant());
+        List<ImportJob> claimed = new ArrayList<>();
+        for (ImportJob job : importJobRepository.findRunnable(node)) {
+            if (claimed.size() == slots) {
+                break;
+            }
+            int limit = config.getTenantMaxConcurrent().getOrDefault(job.tenantId(), config.getMaxConcurrentPerTenant());
+            if (perTenant.getOrDefault(job.tenantId(), 0) >= limit) {
+                continue;
+            }
+            perTenant.merge(job.tenantId(), 1, Integer::sum);
+            claimed.add(importJobRepository.claim(job.id(), node, config.getLeaseSeconds()));
+        }
+        return claimed;
+    }
+
+    private void run(ImportJob job) {
+        Path spool = Paths.get(job.spoolPath());
+        try {
+            if (!Files.exists(spool)) {
+                finish(job, ImportJobStatus.FAILED, "Spooled upload " + spool + " is missing");
+                return;
+            }
+            log.info("Running {} {} import job {} from row {}", job.mode(), job.type(), job.id(), job.rowsDone());
+            if (job.mode() == ImportMode.BULK) {
+                runBulk(job, spool);
+            } else if (job.type() == ImportJobType.PRODUCTS) {
+                runChunked(job, spool, batchImportService::readProduct, batchImportService::saveProducts);
+            } else {
+                runChunked(job, spool, batchImportService::readStockRow, batchImportService::saveStockLevels);
+            }
+        } catch (Exception e) {
+            if (stopping) {
+                importJobRepository.release(job.id(), job.attempt());
+            } else {
+                log.error("Import job {} failed", job.id(), e);
+                finish(job, ImportJobStatus.FAILED, e.getMessage());
+            }
+        } finally {
+            // A later attempt of the same job may already run here after this one lost its lease
+            running.remove(job.id(), job.attempt());
+        }
+    }
+
+    private <T> void runChunked(ImportJob job, Path spool,
+                                BiFunction<CsvReader, BatchImportResult, Pending<T>> read,
+                                BiConsumer<List<Pending<T>>, BatchImportResult> save) throws IOException {
+        int chunkSize = stockConfig.getBatchChunkSize();
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(spool));
+             CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            if (!reader.next()) { // skip header
+                finish(job, ImportJobStatus.FAILED, "Empty CSV file");
+                return;
+            }
+            long rowsDone = job.rowsDone();
+            for (long skipped = 0; skipped < rowsDone; skipped++) {
+                if (!reader.next()) {
+                    break;
+                }
+            }
+
+            long imported = job.imported();
+            long failed = job.failed();
+            boolean more = true;
+            while (more) {
+                if (stopping || Thread.currentThread().isInterrupted()) {
+                    importJobRepository.release(job.id(), job.attempt());
+                    return;
+                }
+                BatchImportResult chunkResult = BatchImportResult.builder()
+                        .totalRows(0).imported(0).failed(0).errors(new ArrayList<>()).build();
+                List<Pending<T>> chunk = new ArrayList<>(chunkSize);
+                while (chunkResult.getTotalRows() < chunkSize && (more = reader.next())) {
+                    chunkResult.setTotalRows(chunkResult.getTotalRows() + 1);
+                    Pending<T> pending = read.apply(reader, chunkResult);
+                    if (pending != null) {
+                        chunk.add(pending);
+                    }
+                }
+                if (chunkResult.getTotalRows() == 0) {
+                    break;
+                }
+
+                long checkpointRows = rowsDone + chunkResult.getTotalRows();
+                long checkpointBytes = in.count();
+                long checkpointImported = imported;
+                long checkpointFailed = failed;
+                transactionTemplate.executeWithoutResult(status -> {
+                    save.accept(chunk, chunkResult);
+                    BatchImportService.sortErrors(chunkResult);
+                    importJobRepository.addErrors(job.id(), chunkResult.getErrors());
+                    if (!importJobRepository.checkpoint(job.id(), job.attempt(), checkpointRows, checkpointBytes,
+                            checkpointImported + chunkResult.getImported(),
+                            checkpointFailed + chunkResult.getFailed())) {
+                        throw new IllegalStateException("Import job " + job.id() + " was taken over by another worker");
+                    }
+                });
+                rowsDone = checkpointRows;
+                imported += chunkResult.getImported();
+                failed += chunkResult.getFailed();
+            }
+            finish(job, ImportJobStatus.COMPLETED, null);
+            log.info("Import job {} completed: rows={}, imported={}, failed={}", job.id(), rowsDone, imported, failed);
+        }
+    }
+
+    private void runBulk(ImportJob job, Path spool) throws IOException {
+        FileSystemResource file = new FileSystemResource(spool);
+        BatchImportResult result = job.type() == ImportJobType.PRODUCTS
+                ? bulkImportService.importProductsFromCsv(file)
+                : bulkImportService.importStockFromCsv(file);
+        if (stopping) {
+            importJobRepository.release(job.id(), job.attempt());
+            return;
+        }
+        // File-level errors are reported on row 0
+        String error = result.getErrors().stream()
+                .filter(e -> e.getRow() == 0)
+                .map(BatchImportResult.ImportError::getMessage)
+                .findFirst()
+                .orElse(null);
+        long fileBytes = Files.size(spool);
+        transactionTemplate.executeWithoutResult(status -> {
+            importJobRepository.addErrors(job.id(), result.getErrors());
+            importJobRepository.checkpoint(job.id(), job.attempt(), result.getTotalRows(), fileBytes,
+                    result.getImported(), result.getFailed());
+        });
+        finish(job, error != null ? ImportJobStatus.FAILED : ImportJobStatus.COMPLETED, error);
+        log.info("Bulk import job {} finished: rows={}, imported={}, failed={}",
+                job.id(), result.getTotalRows(), result.getImported(), result.getFailed());
+    }
+
+    // The spooled upload is kept if another worker has taken the job over
+    private void finish(ImportJob job, ImportJobStatus status, String error) {
+        if (importJobRepository.finish(job.id(), job.attempt(), status, error)) {
+            deleteSpool(Paths.get(job.spoolPath()));
+        }
+    }
+
+    private void deleteSpool(Path spool) {
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", spool, e);
+        }
+    }
+
+    private Path directory() {
+        return Paths.get(stockConfig.getImportJobs().getPath());
+    }
+
+    // Bytes handed to the CSV decoder; runs ahead of the parsed rows by at most the read buffers
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+}
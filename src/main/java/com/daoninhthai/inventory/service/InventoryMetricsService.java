@@ -1,11 +1,16 @@
 package com.daoninhthai.inventory.service;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
@@ -41,4 +46,95 @@ public class InventoryMetricsService {
     public void stopTimer(Timer.Sample sample) {
         sample.stop(apiLatencyTimer);
     }
+
+    public void registerStockWriterQueue(Long warehouseId, Collection<?> queue) {
+        Gauge.builder("inventory_stock_writer_queue_depth", queue, Collection::size)
+                .description("Commands waiting for the stock writer of a warehouse")
+                .tag("warehouse", String.valueOf(warehouseId))
+                .register(meterRegistry);
+    }
+
+    public void recordStockWriterCommit(Long warehouseId, int batchSize, long durationNanos) {
+        DistributionSummary.builder("inventory_stock_writer_batch_size")
+                .description("Commands committed per stock writer transaction")
+                .tag("warehouse", String.valueOf(warehouseId))
+                .register(meterRegistry)
+                .record(batchSize);
+        Timer.builder("inventory_stock_writer_commit")
+                .description("Stock writer transaction duration")
+                .tag("warehouse", String.valueOf(warehouseId))
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLockWait(String operation, long durationNanos) {
+        Timer.builder("inventory_stock_lock_wait")
+                .description("Time spent acquiring stock level row locks")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLockRetry(String operation) {
+        Counter.builder("inventory_stock_lock_retries")
+                .description("Stock transactions retried after a deadlock or lock failure")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void registerMovementJournalBuffer(Collection<?> buffer) {
+        Gauge.builder("inventory_movement_journal_buffer_depth", buffer, Collection::size)
+                .description("Committed movements waiting for the movement journal writer")
+                .register(meterRegistry);
+    }
+
+    public void recordMovementJournalBatch(int batchSize, long durationNanos) {
+        DistributionSummary.builder("inventory_movement_journal_batch_size")
+                .description("Movements written per movement journal batch")
+                .register(meterRegistry)
+                .record(batchSize);
+        Timer.builder("inventory_movement_journal_commit")
+                .description("Movement journal batch transaction duration")
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordMovementJournalLag(long durationNanos) {
+        Timer.builder("inventory_movement_journal_lag")
+                .description("Time from a movement entering the journal buffer to its batch commit")
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordMovementJournalOverflow(String outcome) {
+        Counter.builder("inventory_movement_journal_overflow")
+                .description("Movements that bypassed the journal buffer because it was full")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void registerImportQueue(String stage, AtomicInteger depth) {
+        Gauge.builder("inventory_import_queue_depth", depth, AtomicInteger::get)
+                .description("CSV import chunks waiting for a pipeline stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    public void recordImportStage(String stage, long durationNanos) {
+        Timer.builder("inventory_import_stage_duration")
+                .description("Time a CSV import pipeline stage spends on one chunk")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordImportStall(String stage, long durationNanos) {
+        Timer.builder("inventory_import_stall")
+                .description("Time a CSV import pipeline stage spends blocked on a neighbouring stage")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
 }
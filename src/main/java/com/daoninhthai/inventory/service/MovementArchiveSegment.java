@@ -0,0 +1,435 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.entity.MovementType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only archive file of stock movements, sorted by (product_id, created_at, id) and split into blocks
+ * of rows. Each block stores every column separately, delta/varint encoded and deflated, so a lookup only
+ * inflates the product and time columns of candidate blocks and the rest only when a row matches.
+ * <pre>
+ * header   magic, version
+ * blocks   per block: 9 deflated columns (id, product, warehouse, type, quantity, created, reference,
+ *          notes, created_by)
+ * footer   block directory (offset, rows, min/max product, min/max created, column lengths),
+ *          row count, min/max created, product index (product id, first block, last block)
+ * trailer  footer offset
+ * </pre>
+ * Readers memory-map the file; created_at is stored as epoch microseconds.
+ */
+final class MovementArchiveSegment {
+
+    private static final int MAGIC = 0x534D5347;
+    private static final int VERSION = 1;
+    private static final int COLUMNS = 9;
+    private static final int ID = 0;
+    private static final int PRODUCT = 1;
+    private static final int WAREHOUSE = 2;
+    private static final int TYPE = 3;
+    private static final int QUANTITY = 4;
+    private static final int CREATED = 5;
+    private static final int REFERENCE = 6;
+    private static final int NOTES = 7;
+    private static final int CREATED_BY = 8;
+    private static final MovementType[] TYPES = MovementType.values();
+
+    record Row(long id, long productId, long warehouseId, MovementType type, int quantity,
+               LocalDateTime createdAt, String reference, String notes, String createdBy) {
+    }
+
+    private record Block(long offset, int rows, long minProductId, long maxProductId,
+                         long minCreated, long maxCreated, int[] compressedLengths, int[] rawLengths) {
+    }
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final List<Block> blocks;
+    private final long rowCount;
+    private final long minCreated;
+    private final long maxCreated;
+    private final long[] indexProductIds;
+    private final int[] indexFirstBlocks;
+    private final int[] indexLastBlocks;
+
+    private MovementArchiveSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a movement archive segment: " + path);
+        }
+
+        ByteBuffer footer = buffer.duplicate();
+        footer.position(Math.toIntExact(buffer.getLong(buffer.capacity() - 8)));
+        int blockCount = footer.getInt();
+        blocks = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            long offset = footer.getLong();
+            int rows = footer.getInt();
+            long minProductId = footer.getLong();
+            long maxProductId = footer.getLong();
+            long blockMinCreated = footer.getLong();
+            long blockMaxCreated = footer.getLong();
+            int[] compressed = new int[COLUMNS];
+            int[] raw = new int[COLUMNS];
+            for (int c = 0; c < COLUMNS; c++) {
+                compressed[c] = footer.getInt();
+                raw[c] = footer.getInt();
+            }
+            blocks.add(new Block(offset, rows, minProductId, maxProductId, blockMinCreated, blockMaxCreated,
+                    compressed, raw));
+        }
+        rowCount = footer.getLong();
+        minCreated = footer.getLong();
+        maxCreated = footer.getLong();
+        int products = footer.getInt();
+        indexProductIds = new long[products];
+        indexFirstBlocks = new int[products];
+        indexLastBlocks = new int[products];
+        for (int p = 0; p < products; p++) {
+            indexProductIds[p] = footer.getLong();
+            indexFirstBlocks[p] = footer.getInt();
+            indexLastBlocks[p] = footer.getInt();
+        }
+    }
+
+    static MovementArchiveSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MovementArchiveSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Movements of the product with {@code from <= created_at <= to}, in (created_at, id) order.
+     */
+    List<Row> find(long productId, LocalDateTime from, LocalDateTime to) throws IOException {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        int p = Arrays.binarySearch(indexProductIds, productId);
+        if (p < 0 || rowCount == 0 || toMicros < minCreated || fromMicros > maxCreated) {
+            return List.of();
+        }
+
+        List<Row> rows = new ArrayList<>();
+        for (int b = indexFirstBlocks[p]; b <= indexLastBlocks[p]; b++) {
+            Block block = blocks.get(b);
+            if (toMicros < block.minCreated() || fromMicros > block.maxCreated()) {
+                continue;
+            }
+            ByteBuffer products = inflate(block, PRODUCT);
+            ByteBuffer created = inflate(block, CREATED);
+            long product = 0;
+            long micros = 0;
+            List<Integer> matches = new ArrayList<>();
+            long[] createdMicros = new long[block.rows()];
+            for (int r = 0; r < block.rows(); r++) {
+                product += readVarLong(products);
+                micros += unzigzag(readVarLong(created));
+                createdMicros[r] = micros;
+                if (product == productId && micros >= fromMicros && micros <= toMicros) {
+                    matches.add(r);
+                }
+            }
+            if (!matches.isEmpty()) {
+                decodeRows(block, productId, createdMicros, matches, rows);
+            }
+        }
+        return rows;
+    }
+
+    private void decodeRows(Block block, long productId, long[] createdMicros, List<Integer> matches,
+                            List<Row> out) throws IOException {
+        ByteBuffer ids = inflate(block, ID);
+        ByteBuffer warehouses = inflate(block, WAREHOUSE);
+        ByteBuffer types = inflate(block, TYPE);
+        ByteBuffer quantities = inflate(block, QUANTITY);
+        ByteBuffer references = inflate(block, REFERENCE);
+        ByteBuffer notes = inflate(block, NOTES);
+        ByteBuffer createdBys = inflate(block, CREATED_BY);
+
+        long id = 0;
+        long warehouse = 0;
+        int next = 0;
+        for (int r = 0; r < block.rows() && next < matches.size(); r++) {
+            id += unzigzag(readVarLong(ids));
+            warehouse += unzigzag(readVarLong(warehouses));
+            MovementType type = TYPES[types.get()];
+            int quantity = (int) unzigzag(readVarLong(quantities));
+            String reference = readString(references);
+            String note = readString(notes);
+            String createdBy = readString(createdBys);
+            if (matches.get(next) == r) {
+                out.add(new Row(id, productId, warehouse, type, quantity, fromMicros(createdMicros[r]),
+                        reference, note, createdBy));
+                next++;
+            }
+        }
+    }
+
+    private ByteBuffer inflate(Block block, int column) throws IOException {
+        long offset = block.offset();
+        for (int c = 0; c < column; c++) {
+            offset += block.compressedLengths()[c];
+        }
+        byte[] raw = new byte[block.rawLengths()[column]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice(Math.toIntExact(offset), block.compressedLengths()[column]));
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt movement archive block in " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    /**
+     * Streams rows, which must arrive in (product_id, created_at, id) order, into a new segment file.
+     */
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int blockRows;
+        private final Deflater deflater = new Deflater();
+        private final ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMNS];
+        private final List<Block> blocks = new ArrayList<>();
+        private final List<long[]> productIndex = new ArrayList<>();
+
+        private long position;
+        private int rows;
+        private long rowCount;
+        private long minCreated = Long.MAX_VALUE;
+        private long maxCreated = Long.MIN_VALUE;
+        private long blockMinCreated;
+        private long blockMaxCreated;
+        private long blockMinProduct;
+        private long previousId;
+        private long previousProduct;
+        private long previousWarehouse;
+        private long previousCreated;
+
+        Writer(Path path, int blockRows) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.blockRows = blockRows;
+            for (int c = 0; c < COLUMNS; c++) {
+                columns[c] = new ByteArrayOutputStream();
+            }
+            write(ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+        }
+
+        long rowCount() {
+            return rowCount;
+        }
+
+        void add(Row row) throws IOException {
+            long created = toMicros(row.createdAt());
+            if (!productIndex.isEmpty() && row.productId() < productIndex.get(productIndex.size() - 1)[0]) {
+                throw new IllegalStateException("Archive rows must be sorted by product id");
+            }
+            if (rows == 0) {
+                previousId = 0;
+                previousProduct = 0;
+                previousWarehouse = 0;
+                previousCreated = 0;
+                blockMinProduct = row.productId();
+                blockMinCreated = created;
+                blockMaxCreated = created;
+            }
+
+            if (productIndex.isEmpty() || productIndex.get(productIndex.size() - 1)[0] != row.productId()) {
+                productIndex.add(new long[]{row.productId(), blocks.size(), blocks.size()});
+            } else {
+                productIndex.get(productIndex.size() - 1)[2] = blocks.size();
+            }
+
+            writeVarLong(columns[ID], zigzag(row.id() - previousId));
+            writeVarLong(columns[PRODUCT], row.productId() - previousProduct);
+            writeVarLong(columns[WAREHOUSE], zigzag(row.warehouseId() - previousWarehouse));
+            columns[TYPE].write(row.type().ordinal());
+            writeVarLong(columns[QUANTITY], zigzag(row.quantity()));
+            writeVarLong(columns[CREATED], zigzag(created - previousCreated));
+            writeString(columns[REFERENCE], row.reference());
+            writeString(columns[NOTES], row.notes());
+            writeString(columns[CREATED_BY], row.createdBy());
+
+            previousId = row.id();
+            previousProduct = row.productId();
+            previousWarehouse = row.warehouseId();
+            previousCreated = created;
+            blockMinCreated = Math.min(blockMinCreated, created);
+            blockMaxCreated = Math.max(blockMaxCreated, created);
+            minCreated = Math.min(minCreated, created);
+            maxCreated = Math.max(maxCreated, created);
+            rows++;
+            rowCount++;
+            if (rows == blockRows) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Writes the footer and forces the file to disk.
+         */
+        void finish() throws IOException {
+            flushBlock();
+            long footerOffset = position;
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(blocks.size());
+            footer.write(header.array());
+            for (Block block : blocks) {
+                ByteBuffer entry = ByteBuffer.allocate(8 + 4 + 8 * 4 + COLUMNS * 8)
+                        .putLong(block.offset()).putInt(block.rows())
+                        .putLong(block.minProductId()).putLong(block.maxProductId())
+                        .putLong(block.minCreated()).putLong(block.maxCreated());
+                for (int c = 0; c < COLUMNS; c++) {
+                    entry.putInt(block.compressedLengths()[c]).putInt(block.rawLengths()[c]);
+                }
+                footer.write(entry.array());
+            }
+            footer.write(ByteBuffer.allocate(8 * 3 + 4)
+                    .putLong(rowCount)
+                    .putLong(rowCount > 0 ? minCreated : 0)
+                    .putLong(rowCount > 0 ? maxCreated : 0)
+                    .putInt(productIndex.size()).array());
+            for (long[] entry : productIndex) {
+                footer.write(ByteBuffer.allocate(16)
+                        .putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]).array());
+            }
+            footer.write(ByteBuffer.allocate(8).putLong(footerOffset).array());
+            write(ByteBuffer.wrap(footer.toByteArray()));
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+
+        private void flushBlock() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            long offset = position;
+            int[] compressedLengths = new int[COLUMNS];
+            int[] rawLengths = new int[COLUMNS];
+            for (int c = 0; c < COLUMNS; c++) {
+                byte[] raw = columns[c].toByteArray();
+                byte[] compressed = deflate(raw);
+                rawLengths[c] = raw.length;
+                compressedLengths[c] = compressed.length;
+                write(ByteBuffer.wrap(compressed));
+                columns[c].reset();
+            }
+            blocks.add(new Block(offset, rows, blockMinProduct, previousProduct, blockMinCreated, blockMaxCreated,
+                    compressedLengths, rawLengths));
+            rows = 0;
+        }
+
+        private byte[] deflate(byte[] raw) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(raw.length / 2, 64));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                position += channel.write(data);
+            }
+        }
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // Length + 1 as a varint, 0 for null, then UTF-8 bytes
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
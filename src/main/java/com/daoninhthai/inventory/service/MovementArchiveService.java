@@ -0,0 +1,219 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.repository.StockMovementPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves monthly stock_movements partitions older than {@code archive-after-months} into read-only segment
+ * files on local disk and serves reads from them. A partition is streamed into a temporary segment, the
+ * file is forced to disk and its row count checked, and only then is the partition detached and dropped in
+ * the same transaction that held it locked. The temporary file is renamed after commit; on startup a
+ * leftover temporary file is kept if its partition is gone and deleted otherwise.
+ *
+ * Product movement history and point-in-time replays read the segments together with the database; the
+ * keyset movement pages only read the database. Rollups cannot be rebuilt for archived months, since that
+ * would recompute them from the emptied partitions.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MovementArchiveService {
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("stock_movements_y(\\d{4})m(\\d{2})");
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".seg.tmp";
+
+    private final StockMovementPartitionRepository stockMovementPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    // Partition name -> segment; names sort chronologically
+    private final NavigableMap<String, MovementArchiveSegment> segments = new ConcurrentSkipListMap<>();
+
+    // Segments written earlier are still served when archiving has been turned off since
+    @PostConstruct
+    public void loadSegments() throws IOException {
+        Path dir = directory();
+        if (isEnabled()) {
+            Files.createDirectories(dir);
+        } else if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + TEMP_SUFFIX)) {
+            for (Path temp : files) {
+                String partition = partitionName(temp, TEMP_SUFFIX);
+                if (stockMovementPartitionRepository.tableExists(partition)) {
+                    Files.delete(temp);
+                    log.warn("Deleted incomplete movement archive segment {}", temp);
+                } else {
+                    Files.move(temp, dir.resolve(partition + SEGMENT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+                    log.warn("Recovered movement archive segment for dropped partition {}", partition);
+                }
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(partitionName(file, SEGMENT_SUFFIX), MovementArchiveSegment.open(file));
+            }
+        }
+        log.info("Loaded {} movement archive segments from {}", segments.size(), dir);
+    }
+
+    public boolean isEnabled() {
+        return stockConfig.getMovementArchive().isEnabled();
+    }
+
+    /**
+     * Archives every attached monthly partition that ends before the archive cutoff.
+     *
+     * @return the archived partition names
+     */
+    public List<String> archiveAgedPartitions() {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        StockConfig.MovementArchive config = stockConfig.getMovementArchive();
+        LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(config.getArchiveAfterMonths());
+
+        List<String> archived = new ArrayList<>();
+        for (String partition : stockMovementPartitionRepository.findAttachedPartitions()) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            LocalDate month = LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), 1);
+            if (!month.plusMonths(1).isAfter(cutoff)) {
+                archivePartition(partition);
+                archived.add(partition);
+            }
+        }
+        return archived;
+    }
+
+    private void archivePartition(String partition) {
+        Path dir = directory();
+        Path temp = dir.resolve(partition + TEMP_SUFFIX);
+        Path target = dir.resolve(partition + SEGMENT_SUFFIX);
+        int blockRows = stockConfig.getMovementArchive().getBlockRows();
+        try {
+            Long rows = transactionTemplate.execute(status -> {
+                stockMovementPartitionRepository.lockPartition(partition);
+                try (MovementArchiveSegment.Writer writer = new MovementArchiveSegment.Writer(temp, blockRows)) {
+                    stockMovementPartitionRepository.streamPartition(partition, rs -> {
+                        try {
+                            writer.add(new MovementArchiveSegment.Row(
+                                    rs.getLong("id"),
+                                    rs.getLong("product_id"),
+                                    rs.getLong("warehouse_id"),
+                                    MovementType.valueOf(rs.getString("type")),
+                                    rs.getInt("quantity"),
+                                    rs.getTimestamp("created_at").toLocalDateTime(),
+                                    rs.getString("reference"),
+                                    rs.getString("notes"),
+                                    rs.getString("created_by")));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    writer.finish();
+                    long expected = stockMovementPartitionRepository.countRows(partition);
+                    if (writer.rowCount() != expected) {
+                        throw new IllegalStateException("Archived " + writer.rowCount() + " of " + expected
+                                + " rows from " + partition);
+                    }
+                    stockMovementPartitionRepository.detachPartition(partition);
+                    stockMovementPartitionRepository.dropTable(partition);
+                    return writer.rowCount();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            segments.put(partition, MovementArchiveSegment.open(target));
+            log.info("Archived stock movement partition {} ({} rows) to {}", partition, rows, target);
+        } catch (IOException | RuntimeException e) {
+            if (stockMovementPartitionRepository.tableExists(partition)) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+            }
+            throw new IllegalStateException("Failed to archive stock movement partition " + partition, e);
+        }
+    }
+
+    /**
+     * The first archived month between {@code from} and {@code to} inclusive, if any.
+     */
+    public Optional<LocalDate> findArchivedMonth(LocalDate from, LocalDate to) {
+        return segments.subMap(partitionName(from), true, partitionName(to), true).keySet().stream()
+                .findFirst()
+                .map(partition -> {
+                    Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+                    matcher.matches();
+                    return LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), 1);
+                });
+    }
+
+    /**
+     * Archived movements of the product between {@code start} and {@code end} inclusive, oldest first.
+     * Only the segments of the months in range are read.
+     */
+    List<MovementArchiveSegment.Row> findMovements(Long productId, LocalDateTime start, LocalDateTime end) {
+        if (segments.isEmpty() || end.isBefore(start)) {
+            return List.of();
+        }
+        List<MovementArchiveSegment.Row> rows = new ArrayList<>();
+        for (Map.Entry<String, MovementArchiveSegment> entry : segments.subMap(
+                partitionName(start.toLocalDate()), true, partitionName(end.toLocalDate()), true).entrySet()) {
+            try {
+                rows.addAll(entry.getValue().find(productId, start, end));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        rows.sort(Comparator.comparing(MovementArchiveSegment.Row::createdAt)
+                .thenComparingLong(MovementArchiveSegment.Row::id));
+        return rows;
+    }
+
+    private Path directory() {
+        return Paths.get(stockConfig.getMovementArchive().getPath());
+    }
+
+    // Same naming as ensure_stock_movement_partition
+    private static String partitionName(LocalDate day) {
+        return String.format("stock_movements_y%04dm%02d", day.getYear(), day.getMonthValue());
+    }
+
+    private static String partitionName(Path file, String suffix) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - suffix.length());
+    }
+}
@@ -13,9 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -30,8 +28,9 @@ public class PurchaseOrderService {
     private final StockLevelRepository stockLevelRepository;
     private final StockMovementService stockMovementService;
     private final StockWebSocketService stockWebSocketService;
-
-    private static final AtomicLong orderSequence = new AtomicLong(1000);
+    private final StockWritePipeline stockWritePipeline;
+    private final DocumentNumberService documentNumberService;
+    private final SupplierLeadTimeService supplierLeadTimeService;
 
     @Transactional(readOnly = true)
     public Page<PurchaseOrderResponse> getAllOrders(Pageable pageable) {
@@ -57,8 +56,7 @@ public class PurchaseOrderService {
         Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
                 .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getWarehouseId()));
 
-        String orderNumber = "PO-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"))
-                + "-" + orderSequence.incrementAndGet();
+        String orderNumber = documentNumberService.next(DocumentNumberService.Series.PURCHASE_ORDER);
 
         PurchaseOrder order = PurchaseOrder.builder()
                 .orderNumber(orderNumber)
@@ -119,8 +117,15 @@ public class PurchaseOrderService {
         return toResponse(saved);
     }
 
-    @Transactional
     public PurchaseOrderResponse receiveOrder(Long id, ReceiveOrderRequest receiveRequest) {
+        Long warehouseId = stockWritePipeline.isEnabled()
+                ? purchaseOrderRepository.findWarehouseIdById(id)
+                        .orElseThrow(() -> new ResourceNotFoundException("PurchaseOrder", "id", id))
+                : null;
+        return stockWritePipeline.execute(warehouseId, () -> applyReceipt(id, receiveRequest));
+    }
+
+    private PurchaseOrderResponse applyReceipt(Long id, ReceiveOrderRequest receiveRequest) {
         PurchaseOrder order = purchaseOrderRepository.findByIdWithItems(id)
                 .orElseThrow(() -> new ResourceNotFoundException("PurchaseOrder", "id", id));
 
@@ -163,6 +168,7 @@ public class PurchaseOrderService {
         order.setStatus(OrderStatus.RECEIVED);
         order.setReceivedAt(LocalDateTime.now());
         PurchaseOrder saved = purchaseOrderRepository.save(order);
+        supplierLeadTimeService.recordReceipt(saved);
         stockWebSocketService.broadcastOrderStatus(saved.getOrderNumber(), "APPROVED", "RECEIVED");
         log.info("Received purchase order: {} ({} items)", saved.getOrderNumber(), order.getItems().size());
         return toResponse(saved);
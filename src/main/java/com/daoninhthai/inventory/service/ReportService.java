@@ -37,7 +37,7 @@ public class ReportService {
             String sku = sl.getProduct().getSku();
             String productName = escapeCsv(sl.getProduct().getName());
             String warehouseName = escapeCsv(sl.getWarehouse().getName());
-            int quantity = sl.getQuantity();
+            int quantity = sl.getTotalQuantity();
             Integer minQty = sl.getMinQuantity();
             Integer maxQty = sl.getMaxQuantity();
 
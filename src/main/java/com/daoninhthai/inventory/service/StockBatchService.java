@@ -0,0 +1,388 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.StockAdjustmentBatchRequest;
+import com.daoninhthai.inventory.dto.StockAdjustmentBatchResult;
+import com.daoninhthai.inventory.dto.StockAdjustmentBatchResult.LineResult;
+import com.daoninhthai.inventory.dto.StockAdjustmentBatchResult.LineStatus;
+import com.daoninhthai.inventory.dto.StockAdjustmentRequest;
+import com.daoninhthai.inventory.dto.StockTransferBatchRequest;
+import com.daoninhthai.inventory.dto.StockTransferBatchResult;
+import com.daoninhthai.inventory.dto.StockUpdateEvent;
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.entity.Product;
+import com.daoninhthai.inventory.entity.StockMovement;
+import com.daoninhthai.inventory.entity.Warehouse;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.ProductRepository;
+import com.daoninhthai.inventory.repository.StockKey;
+import com.daoninhthai.inventory.repository.StockLevelRepository;
+import com.daoninhthai.inventory.repository.StockLevelRepositoryCustom.LockedStockLevel;
+import com.daoninhthai.inventory.repository.WarehouseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockBatchService {
+
+    private final StockLevelRepository stockLevelRepository;
+    private final ProductRepository productRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final StockMovementService stockMovementService;
+    private final StockWebSocketService stockWebSocketService;
+    private final DocumentNumberService documentNumberService;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryMetricsService metricsService;
+    private final StockConfig stockConfig;
+
+    public StockAdjustmentBatchResult adjustStockBatch(StockAdjustmentBatchRequest request) {
+        List<StockAdjustmentRequest> items = request.getItems();
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : stockConfig.getBatchChunkSize();
+        if (chunkSize <= 0) {
+            chunkSize = items.size();
+        }
+
+        Map<Long, Product> products = productRepository.findAllById(
+                        items.stream().map(StockAdjustmentRequest::getProductId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<Long, Warehouse> warehouses = warehouseRepository.findAllById(
+                        items.stream().map(StockAdjustmentRequest::getWarehouseId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Warehouse::getId, Function.identity()));
+
+        List<LineResult> lines = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            StockAdjustmentRequest item = items.get(i);
+            lines.add(LineResult.builder()
+                    .line(i + 1)
+                    .productId(item.getProductId())
+                    .warehouseId(item.getWarehouseId())
+                    .type(item.getType())
+                    .quantity(item.getQuantity())
+                    .build());
+        }
+
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, items.size());
+            List<StockAdjustmentRequest> chunkItems = items.subList(from, to);
+            List<LineResult> chunkLines = lines.subList(from, to);
+            try {
+                List<StockUpdateEvent> events = inTransaction("batch_adjustment",
+                        () -> applyChunk(chunkItems, chunkLines, products, warehouses));
+                stockWebSocketService.broadcastStockUpdates(events);
+            } catch (RuntimeException e) {
+                log.error("Stock batch chunk failed: lines {}-{}", from + 1, to, e);
+                for (LineResult line : chunkLines) {
+                    line.setStatus(LineStatus.FAILED);
+                    line.setPreviousQuantity(null);
+                    line.setNewQuantity(null);
+                    if (line.getMessage() == null) {
+                        line.setMessage("Chunk rolled back: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        int applied = (int) lines.stream().filter(l -> l.getStatus() == LineStatus.APPLIED).count();
+        log.info("Stock batch adjusted: lines={}, applied={}, failed={}, chunkSize={}",
+                items.size(), applied, items.size() - applied, chunkSize);
+
+        return StockAdjustmentBatchResult.builder()
+                .totalLines(items.size())
+                .applied(applied)
+                .failed(items.size() - applied)
+                .lines(lines)
+                .build();
+    }
+
+    private List<StockUpdateEvent> applyChunk(List<StockAdjustmentRequest> items, List<LineResult> lines,
+                                              Map<Long, Product> products, Map<Long, Warehouse> warehouses) {
+        // A retried chunk starts over from the request
+        for (LineResult line : lines) {
+            line.setStatus(null);
+            line.setMessage(null);
+            line.setPreviousQuantity(null);
+            line.setNewQuantity(null);
+        }
+
+        Set<StockKey> keys = new TreeSet<>();
+        Set<StockKey> creatableKeys = new TreeSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            StockAdjustmentRequest item = items.get(i);
+            String error = validate(item, products, warehouses);
+            if (error != null) {
+                fail(lines.get(i), error);
+                continue;
+            }
+            StockKey key = new StockKey(item.getProductId(), item.getWarehouseId());
+            keys.add(key);
+            if (item.getType() != MovementType.OUT) {
+                creatableKeys.add(key);
+            }
+        }
+
+        Map<StockKey, LockedStockLevel> locked = lock("batch_adjustment", creatableKeys, keys);
+
+        Map<StockKey, Integer> current = new HashMap<>();
+        Map<StockKey, Integer> initial = new HashMap<>();
+        Map<StockKey, Integer> reserved = new HashMap<>();
+        locked.forEach((key, level) -> {
+            reserved.put(key, level.reserved());
+            current.put(key, level.quantity());
+            initial.put(key, level.quantity());
+        });
+
+        List<StockMovement> movements = new ArrayList<>();
+        Map<StockKey, Integer> changed = new LinkedHashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < items.size(); i++) {
+            LineResult line = lines.get(i);
+            if (line.getStatus() == LineStatus.FAILED) {
+                continue;
+            }
+            StockAdjustmentRequest item = items.get(i);
+            StockKey key = new StockKey(item.getProductId(), item.getWarehouseId());
+            int before = current.getOrDefault(key, 0);
+            int after;
+            switch (item.getType()) {
+                case IN -> after = before + item.getQuantity();
+                case OUT -> {
+                    int available = before - reserved.getOrDefault(key, 0);
+                    if (available < item.getQuantity()) {
+                        fail(line, "Insufficient stock. Available: " + Math.max(available, 0));
+                        continue;
+                    }
+                    after = before - item.getQuantity();
+                }
+                case ADJUSTMENT -> after = item.getQuantity();
+                default -> {
+                    fail(line, "Invalid movement type: " + item.getType());
+                    continue;
+                }
+            }
+
+            current.put(key, after);
+            changed.put(key, after);
+            line.setStatus(LineStatus.APPLIED);
+            line.setPreviousQuantity(before);
+            line.setNewQuantity(after);
+
+            movements.add(StockMovement.builder()
+                    .product(products.get(item.getProductId()))
+                    .warehouse(warehouses.get(item.getWarehouseId()))
+                    .type(item.getType())
+                    .quantity(item.getQuantity())
+                    .notes(item.getNotes())
+                    .createdAt(now)
+                    .build());
+        }
+
+        Map<Long, Integer> quantitiesById = new LinkedHashMap<>();
+        changed.forEach((key, quantity) -> quantitiesById.put(locked.get(key).id(), quantity));
+        stockLevelRepository.updateQuantities(quantitiesById);
+        stockMovementService.recordMovements(movements);
+
+        List<StockUpdateEvent> events = new ArrayList<>(changed.size());
+        changed.forEach((key, quantity) -> {
+            Product product = products.get(key.productId());
+            Warehouse warehouse = warehouses.get(key.warehouseId());
+            events.add(StockUpdateEvent.builder()
+                    .productId(product.getId())
+                    .productSku(product.getSku())
+                    .warehouseId(warehouse.getId())
+                    .warehouseCode(warehouse.getCode())
+                    .oldQuantity(initial.get(key))
+                    .newQuantity(quantity)
+                    .changeType("BATCH_ADJUSTMENT")
+                    .timestamp(now)
+                    .build());
+        });
+        return events;
+    }
+
+    /**
+     * Moves many products from one warehouse to another in a single transaction. All rows are locked up
+     * front in canonical order, so opposing transfers wait for each other instead of deadlocking. The
+     * transfer is all-or-nothing and every movement carries the same reference.
+     */
+    public StockTransferBatchResult transferStockBatch(StockTransferBatchRequest request) {
+        Long fromWarehouseId = request.getFromWarehouseId();
+        Long toWarehouseId = request.getToWarehouseId();
+        if (fromWarehouseId.equals(toWarehouseId)) {
+            throw new IllegalStateException("Source and destination warehouses must be different");
+        }
+
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (StockTransferBatchRequest.Line line : request.getItems()) {
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+
+        Warehouse from = warehouseRepository.findById(fromWarehouseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", fromWarehouseId));
+        Warehouse to = warehouseRepository.findById(toWarehouseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", toWarehouseId));
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : quantities.keySet()) {
+            if (!products.containsKey(productId)) {
+                throw new ResourceNotFoundException("Product", "id", productId);
+            }
+        }
+
+        String reference = documentNumberService.next(DocumentNumberService.Series.TRANSFER);
+        StockTransferBatchResult result = inTransaction("transfer",
+                () -> applyTransfer(quantities, products, from, to, reference, request.getNotes()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<StockUpdateEvent> events = new ArrayList<>(result.getLines().size() * 2);
+        for (StockTransferBatchResult.LineResult line : result.getLines()) {
+            events.add(StockUpdateEvent.builder()
+                    .productId(line.getProductId()).productSku(line.getProductSku())
+                    .warehouseId(from.getId()).warehouseCode(from.getCode())
+                    .oldQuantity(line.getSourceQuantity() + line.getQuantity())
+                    .newQuantity(line.getSourceQuantity())
+                    .changeType("TRANSFER_OUT").timestamp(now)
+                    .build());
+            events.add(StockUpdateEvent.builder()
+                    .productId(line.getProductId()).productSku(line.getProductSku())
+                    .warehouseId(to.getId()).warehouseCode(to.getCode())
+                    .oldQuantity(line.getDestinationQuantity() - line.getQuantity())
+                    .newQuantity(line.getDestinationQuantity())
+                    .changeType("TRANSFER_IN").timestamp(now)
+                    .build());
+        }
+        stockWebSocketService.broadcastStockUpdates(events);
+
+        log.info("Stock transferred: ref={}, from={}, to={}, lines={}, qty={}",
+                reference, from.getCode(), to.getCode(), result.getTotalLines(), result.getTotalQuantity());
+        return result;
+    }
+
+    private StockTransferBatchResult applyTransfer(Map<Long, Integer> quantities, Map<Long, Product> products,
+                                                   Warehouse from, Warehouse to, String reference, String notes) {
+        Set<StockKey> sourceKeys = new TreeSet<>();
+        Set<StockKey> destinationKeys = new TreeSet<>();
+        for (Long productId : quantities.keySet()) {
+            sourceKeys.add(new StockKey(productId, from.getId()));
+            destinationKeys.add(new StockKey(productId, to.getId()));
+        }
+        Set<StockKey> keys = new TreeSet<>(sourceKeys);
+        keys.addAll(destinationKeys);
+        Map<StockKey, LockedStockLevel> locked = lock("transfer", destinationKeys, keys);
+
+        String suffix = notes != null ? ": " + notes : "";
+        Map<Long, Integer> newQuantities = new LinkedHashMap<>();
+        List<StockMovement> movements = new ArrayList<>(quantities.size() * 2);
+        List<StockTransferBatchResult.LineResult> lines = new ArrayList<>(quantities.size());
+        LocalDateTime now = LocalDateTime.now();
+
+        quantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            LockedStockLevel source = locked.get(new StockKey(productId, from.getId()));
+            LockedStockLevel destination = locked.get(new StockKey(productId, to.getId()));
+            int available = source != null ? source.available() : 0;
+            if (available < quantity) {
+                throw new IllegalStateException("Insufficient stock at source warehouse for product "
+                        + product.getSku() + ". Available: " + Math.max(available, 0));
+            }
+
+            newQuantities.put(source.id(), source.quantity() - quantity);
+            newQuantities.put(destination.id(), destination.quantity() + quantity);
+            movements.add(StockMovement.builder()
+                    .product(product).warehouse(from).type(MovementType.OUT).quantity(quantity)
+                    .reference(reference).notes("Transfer to " + to.getCode() + suffix).createdAt(now)
+                    .build());
+            movements.add(StockMovement.builder()
+                    .product(product).warehouse(to).type(MovementType.IN).quantity(quantity)
+                    .reference(reference).notes("Transfer from " + from.getCode() + suffix).createdAt(now)
+                    .build());
+            lines.add(StockTransferBatchResult.LineResult.builder()
+                    .productId(productId)
+                    .productSku(product.getSku())
+                    .quantity(quantity)
+                    .sourceQuantity(source.quantity() - quantity)
+                    .destinationQuantity(destination.quantity() + quantity)
+                    .build());
+        });
+
+        stockLevelRepository.updateQuantities(newQuantities);
+        stockMovementService.recordMovements(movements);
+
+        return StockTransferBatchResult.builder()
+                .reference(reference)
+                .fromWarehouseId(from.getId())
+                .toWarehouseId(to.getId())
+                .totalLines(lines.size())
+                .totalQuantity(quantities.values().stream().mapToInt(Integer::intValue).sum())
+                .lines(lines)
+                .build();
+    }
+
+    /**
+     * Creates the missing rows and locks all rows of the given keys, both in canonical order.
+     */
+    private Map<StockKey, LockedStockLevel> lock(String operation, Set<StockKey> creatableKeys,
+                                                 Set<StockKey> keys) {
+        long start = System.nanoTime();
+        stockLevelRepository.insertMissingStockLevels(creatableKeys);
+        Map<StockKey, LockedStockLevel> locked = new HashMap<>();
+        for (LockedStockLevel level : stockLevelRepository.lockStockLevels(keys)) {
+            locked.put(level.key(), level);
+        }
+        metricsService.recordLockWait(operation, System.nanoTime() - start);
+        return locked;
+    }
+
+    private <T> T inTransaction(String operation, Supplier<T> work) {
+        int attempts = Math.max(1, stockConfig.getLockRetryAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                metricsService.recordLockRetry(operation);
+                log.warn("Stock {} hit a lock conflict, retrying ({}/{}): {}",
+                        operation, attempt, attempts, e.getMessage());
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20) * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private String validate(StockAdjustmentRequest item, Map<Long, Product> products,
+                            Map<Long, Warehouse> warehouses) {
+        if (!products.containsKey(item.getProductId())) {
+            return "Product not found with id: '" + item.getProductId() + "'";
+        }
+        if (!warehouses.containsKey(item.getWarehouseId())) {
+            return "Warehouse not found with id: '" + item.getWarehouseId() + "'";
+        }
+        if (item.getType() == MovementType.TRANSFER) {
+            return "Invalid movement type: " + item.getType();
+        }
+        return null;
+    }
+
+    private void fail(LineResult line, String message) {
+        line.setStatus(LineStatus.FAILED);
+        line.setMessage(message);
+    }
+}
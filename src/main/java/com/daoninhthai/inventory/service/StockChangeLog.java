@@ -0,0 +1,344 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.StockChange;
+import com.daoninhthai.inventory.dto.StockUpdateEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Append-only log of committed stock changes with monotonically increasing offsets, for consumers that
+ * tail {@code GET /api/stock/changes} instead of re-reading stock tables. The log is a sequence of
+ * preallocated, memory-mapped segment files named after their first offset; each record is
+ * {@code length, offset, epoch millis} followed by the change as one JSON line, and the length is written
+ * last so a torn record reads as the end of the segment. Reads hand out slices of the mapping.
+ *
+ * Changes are appended after their transaction commits. The mapping is forced to disk periodically and on
+ * shutdown, so a host crash may lose the most recent changes; the feed is a notification channel, not the
+ * system of record. Whole segments are deleted once the log exceeds its size or age limit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockChangeLog {
+
+    private static final int HEADER_BYTES = 4 + 8 + 8;
+    private static final int INDEX_INTERVAL = 256;
+    private static final int MAX_READ = 10000;
+    private static final String SUFFIX = ".log";
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper objectMapper;
+    private final StockConfig stockConfig;
+
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+    private long nextOffset = 1;
+
+    public boolean isEnabled() {
+        return stockConfig.getChangeLog().isEnabled();
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Path dir = directory();
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            Segment segment = Segment.recover(file, baseOffset);
+            segments.put(baseOffset, segment);
+            nextOffset = Math.max(nextOffset, segment.baseOffset + segment.count);
+        }
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+        }
+        log.info("Stock change log opened: segments={}, nextOffset={}", segments.size(), nextOffset);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+        }
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    /**
+     * Appends the changes once the current transaction commits, or right away outside a transaction.
+     */
+    public void append(Collection<StockUpdateEvent> events) {
+        if (!isEnabled() || events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<StockUpdateEvent> pending = List.copyOf(events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appendQuietly(pending);
+                }
+            });
+        } else {
+            appendQuietly(events);
+        }
+    }
+
+    private void appendQuietly(Collection<StockUpdateEvent> events) {
+        try {
+            write(events);
+        } catch (Exception e) {
+            log.error("Failed to append {} stock changes to the change log", events.size(), e);
+        }
+    }
+
+    private synchronized void write(Collection<StockUpdateEvent> events) throws IOException {
+        int segmentBytes = stockConfig.getChangeLog().getSegmentBytes();
+        for (StockUpdateEvent event : events) {
+            long offset = nextOffset;
+            byte[] json = toJson(offset, event);
+            int size = HEADER_BYTES + json.length + 1;
+            if (size > segmentBytes) {
+                throw new IllegalStateException("Stock change of " + size + " bytes exceeds the segment size");
+            }
+            if (active == null || active.position + size > active.buffer.capacity()) {
+                roll(offset, segmentBytes);
+            }
+            long millis = event.getTimestamp() != null
+                    ? event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : System.currentTimeMillis();
+            active.append(offset, millis, json);
+            nextOffset++;
+        }
+    }
+
+    private void roll(long baseOffset, int segmentBytes) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+        }
+        Path file = directory().resolve(String.format("%020d%s", baseOffset, SUFFIX));
+        active = Segment.create(file, baseOffset, segmentBytes);
+        segments.put(baseOffset, active);
+        log.info("Stock change log rolled to segment {}", file.getFileName());
+        enforceRetention();
+    }
+
+    /**
+     * Changes with an offset greater than {@code after}, at most {@code limit}. When {@code after} is older
+     * than the retained log, reading starts at the oldest retained change.
+     */
+    public ChangeBatch read(long after, int limit) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("The stock change feed is disabled");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_READ));
+        List<ByteBuffer> records = new ArrayList<>();
+        long startOffset = segments.isEmpty() ? after + 1 : Math.max(after + 1, segments.firstKey());
+        long offset = startOffset;
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        while (entry != null && records.size() < size) {
+            Segment segment = entry.getValue();
+            offset = segment.read(offset, size - records.size(), records);
+            entry = segments.higherEntry(entry.getKey());
+        }
+        long lastOffset = records.isEmpty() ? after : startOffset + records.size() - 1;
+        return new ChangeBatch(records, logStartOffset(), lastOffset);
+    }
+
+    public long logStartOffset() {
+        return segments.isEmpty() ? nextOffset : segments.firstKey();
+    }
+
+    /**
+     * Forces the active segment to disk and deletes the oldest segments beyond the size or age limit.
+     */
+    public synchronized void maintain() {
+        if (active == null) {
+            return;
+        }
+        active.buffer.force();
+        enforceRetention();
+    }
+
+    private void enforceRetention() {
+        StockConfig.ChangeLog config = stockConfig.getChangeLog();
+        long cutoffMillis = System.currentTimeMillis() - Duration.ofHours(config.getRetentionHours()).toMillis();
+        long totalBytes = segments.values().stream().mapToLong(s -> s.position).sum();
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (totalBytes <= config.getRetentionBytes() && oldest.lastTimestamp >= cutoffMillis) {
+                break;
+            }
+            segments.remove(oldest.baseOffset);
+            totalBytes -= oldest.position;
+            try {
+                oldest.channel.close();
+                Files.deleteIfExists(oldest.path);
+                log.info("Deleted stock change log segment {} (offsets {}-{})",
+                        oldest.path.getFileName(), oldest.baseOffset, oldest.baseOffset + oldest.count - 1);
+            } catch (IOException e) {
+                log.warn("Failed to delete stock change log segment {}", oldest.path, e);
+            }
+        }
+    }
+
+    private byte[] toJson(long offset, StockUpdateEvent event) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(StockChange.builder()
+                .offset(offset)
+                .productId(event.getProductId())
+                .productSku(event.getProductSku())
+                .warehouseId(event.getWarehouseId())
+                .warehouseCode(event.getWarehouseCode())
+                .oldQuantity(event.getOldQuantity())
+                .newQuantity(event.getNewQuantity())
+                .changeType(event.getChangeType())
+                .timestamp(event.getTimestamp())
+                .build());
+    }
+
+    private Path directory() {
+        return Paths.get(stockConfig.getChangeLog().getPath());
+    }
+
+    /**
+     * Newline-terminated JSON records, oldest first, as read-only views of the log.
+     */
+    public record ChangeBatch(List<ByteBuffer> records, long logStartOffset, long lastOffset) {
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final long baseOffset;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // Byte position of every INDEX_INTERVAL-th record
+        private int[] index = new int[16];
+        private int position;
+        private long lastTimestamp;
+        // Published after the record bytes, so readers never see a partial record
+        private volatile long count;
+
+        private Segment(Path path, long baseOffset, FileChannel channel, int size) throws IOException {
+            this.path = path;
+            this.baseOffset = baseOffset;
+            this.channel = channel;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        static Segment create(Path path, long baseOffset, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, baseOffset, channel, size);
+        }
+
+        static Segment recover(Path path, long baseOffset) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(path, baseOffset, channel, Math.toIntExact(channel.size()));
+            MappedByteBuffer buffer = segment.buffer;
+            long recovered = 0;
+            int pos = 0;
+            while (pos + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(pos);
+                if (length <= 0 || pos + HEADER_BYTES + length > buffer.capacity()
+                        || buffer.getLong(pos + 4) != baseOffset + recovered) {
+                    break;
+                }
+                segment.indexRecord(recovered, pos);
+                segment.lastTimestamp = buffer.getLong(pos + 12);
+                pos += HEADER_BYTES + length;
+                recovered++;
+            }
+            segment.position = pos;
+            segment.count = recovered;
+            return segment;
+        }
+
+        void append(long offset, long timestamp, byte[] json) {
+            int pos = position;
+            buffer.putLong(pos + 4, offset);
+            buffer.putLong(pos + 12, timestamp);
+            buffer.put(pos + HEADER_BYTES, json);
+            buffer.put(pos + HEADER_BYTES + json.length, NEWLINE);
+            buffer.putInt(pos, json.length + 1);
+            indexRecord(count, pos);
+            position = pos + HEADER_BYTES + json.length + 1;
+            lastTimestamp = timestamp;
+            count = count + 1;
+        }
+
+        /**
+         * Adds records from {@code offset} on to {@code out}.
+         *
+         * @return the offset after the last record added
+         */
+        long read(long offset, int limit, List<ByteBuffer> out) {
+            long available = count;
+            long first = offset - baseOffset;
+            if (first < 0 || first >= available) {
+                return offset;
+            }
+            int[] positions = index;
+            int pos = positions[(int) (first / INDEX_INTERVAL)];
+            for (long skip = first % INDEX_INTERVAL; skip > 0; skip--) {
+                pos += HEADER_BYTES + buffer.getInt(pos);
+            }
+            long record = first;
+            while (record < available && limit-- > 0) {
+                int length = buffer.getInt(pos);
+                out.add(buffer.slice(pos + HEADER_BYTES, length).asReadOnlyBuffer());
+                pos += HEADER_BYTES + length;
+                record++;
+            }
+            return baseOffset + record;
+        }
+
+        private void indexRecord(long record, int pos) {
+            if (record % INDEX_INTERVAL != 0) {
+                return;
+            }
+            int slot = (int) (record / INDEX_INTERVAL);
+            if (slot == index.length) {
+                // Readers may hold the old array; it stays valid for the records it covers
+                index = Arrays.copyOf(index, slot * 2);
+            }
+            index[slot] = pos;
+        }
+    }
+}
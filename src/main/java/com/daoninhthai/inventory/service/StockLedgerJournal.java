@@ -0,0 +1,141 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.repository.StockKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only local journal of the write-behind stock ledger. One record per line:
+ * <pre>
+ * S,productId,warehouseId,in,out,scans   pending counts
+ * F,flushId                              everything above was taken by flush flushId
+ * C,flushId,productId,warehouseId,in,out,scans   counts flush flushId could not apply
+ * </pre>
+ * A torn last line (no trailing newline) is ignored on read.
+ */
+@Slf4j
+final class StockLedgerJournal implements Closeable {
+
+    enum Kind { SCAN, FLUSH, CARRIED }
+
+    record Entry(Kind kind, String flushId, StockKey key, long in, long out, long scans) {
+    }
+
+    private final Path path;
+    private final boolean fsync;
+    private FileChannel channel;
+
+    StockLedgerJournal(Path path, boolean fsync) throws IOException {
+        this.path = path;
+        this.fsync = fsync;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    void appendScan(StockKey key, long in, long out) throws IOException {
+        write("S," + key.productId() + "," + key.warehouseId() + "," + in + "," + out + ",1\n");
+    }
+
+    void appendFlush(String flushId) throws IOException {
+        write("F," + flushId + "\n");
+    }
+
+    void appendCarried(String flushId, Map<StockKey, long[]> counts) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        counts.forEach((key, c) -> sb.append("C,").append(flushId).append(',')
+                .append(key.productId()).append(',').append(key.warehouseId()).append(',')
+                .append(c[0]).append(',').append(c[1]).append(',').append(c[2]).append('\n'));
+        write(sb.toString());
+    }
+
+    List<Entry> read() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n');
+        if (end < content.length() - 1) {
+            log.warn("Ignoring torn record at the end of stock ledger journal {}", path);
+        }
+        if (end < 0) {
+            return entries;
+        }
+        for (String line : content.substring(0, end).split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] f = line.split(",");
+            switch (f[0]) {
+                case "S" -> entries.add(new Entry(Kind.SCAN, null,
+                        new StockKey(Long.parseLong(f[1]), Long.parseLong(f[2])),
+                        Long.parseLong(f[3]), Long.parseLong(f[4]), Long.parseLong(f[5])));
+                case "F" -> entries.add(new Entry(Kind.FLUSH, f[1], null, 0, 0, 0));
+                case "C" -> entries.add(new Entry(Kind.CARRIED, f[1],
+                        new StockKey(Long.parseLong(f[2]), Long.parseLong(f[3])),
+                        Long.parseLong(f[4]), Long.parseLong(f[5]), Long.parseLong(f[6])));
+                default -> throw new IOException("Corrupt stock ledger journal record: " + line);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Atomically replaces the journal with one record per pending key.
+     */
+    void compact(Map<StockKey, long[]> pending) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        StringBuilder sb = new StringBuilder();
+        pending.forEach((key, c) -> sb.append("S,")
+                .append(key.productId()).append(',').append(key.warehouseId()).append(',')
+                .append(c[0]).append(',').append(c[1]).append(',').append(c[2]).append('\n'));
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, sb.toString());
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void write(String records) throws IOException {
+        writeFully(channel, records);
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private static void writeFully(FileChannel target, String records) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(records);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.StockUpdateEvent;
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.entity.Product;
+import com.daoninhthai.inventory.entity.StockMovement;
+import com.daoninhthai.inventory.entity.Warehouse;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.ProductRepository;
+import com.daoninhthai.inventory.repository.StockKey;
+import com.daoninhthai.inventory.repository.StockLedgerRepository;
+import com.daoninhthai.inventory.repository.StockLevelRepository;
+import com.daoninhthai.inventory.repository.StockLevelRepository.StockMutation;
+import com.daoninhthai.inventory.repository.WarehouseRepository;
+import com.daoninhthai.inventory.service.StockShardService.SplitCounter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind ledger for scanner traffic. Scans are journaled locally and summed per product/warehouse
+ * in memory; every {@code flush-interval-ms} or {@code flush-max-events} scans the net delta of each key
+ * is written as one stock update plus at most one IN and one OUT movement.
+ *
+ * Each flush writes a marker to the journal before its transaction and commits a row to
+ * stock_ledger_flushes, so on restart the journal can tell which scans are already in the database.
+ * Availability checks for outgoing scans are best effort: stock taken or reserved through other endpoints
+ * between two flushes can make a net decrement fail, in which case the key stays pending and is retried.
+ * The flush itself never takes reserved stock, as every decrement checks reservations under the row lock.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockLedgerService {
+
+    private final StockLevelRepository stockLevelRepository;
+    private final ProductRepository productRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final StockLedgerRepository stockLedgerRepository;
+    private final StockShardService stockShardService;
+    private final StockMovementService stockMovementService;
+    private final StockWebSocketService stockWebSocketService;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    private final Object lock = new Object();
+    private final Set<StockKey> knownKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // Per key: {in, out, scans}
+    private Map<StockKey, long[]> pending = new HashMap<>();
+    private Map<StockKey, long[]> inFlight = Map.of();
+    private long pendingScans;
+
+    private StockLedgerJournal journal;
+    private ScheduledExecutorService flusher;
+
+    public boolean isEnabled() {
+        return stockConfig.getLedger().isEnabled();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        StockConfig.Ledger config = stockConfig.getLedger();
+        journal = new StockLedgerJournal(Path.of(config.getJournalPath()), config.isJournalFsync());
+        recover();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-ledger-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                config.getFlushIntervalMs(), config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("Stock ledger started: journal={}, pendingKeys={}", config.getJournalPath(), pending.size());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+        journal.close();
+    }
+
+    /**
+     * Accepts one scan. Returns once the scan is in the journal; the database is updated by the next flush.
+     */
+    public void record(Long productId, Long warehouseId, int delta) {
+        StockKey key = new StockKey(productId, warehouseId);
+        Integer persisted = delta < 0
+                ? stockLevelRepository.findAvailableQuantity(productId, warehouseId).orElse(null) : null;
+        if (persisted == null && !knownKeys.contains(key)) {
+            if (!productRepository.existsById(productId)) {
+                throw new ResourceNotFoundException("Product", "id", productId);
+            }
+            if (!warehouseRepository.existsById(warehouseId)) {
+                throw new ResourceNotFoundException("Warehouse", "id", warehouseId);
+            }
+        }
+        knownKeys.add(key);
+
+        long in = Math.max(delta, 0);
+        long out = Math.max(-delta, 0);
+        boolean flushNow;
+        synchronized (lock) {
+            if (delta < 0) {
+                long available = (persisted != null ? persisted : 0) + net(pending, key) + net(inFlight, key);
+                if (available < out) {
+                    throw new IllegalStateException("Insufficient stock. Available: " + available);
+                }
+            }
+            try {
+                journal.appendScan(key, in, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write stock ledger journal", e);
+            }
+            add(pending, key, in, out, 1);
+            pendingScans++;
+            flushNow = pendingScans >= stockConfig.getLedger().getFlushMaxEvents();
+        }
+        if (flushNow && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Net quantity scanned for the key but not yet committed to stock_levels.
+     */
+    public int pendingDelta(Long productId, Long warehouseId) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        StockKey key = new StockKey(productId, warehouseId);
+        synchronized (lock) {
+            return (int) (net(pending, key) + net(inFlight, key));
+        }
+    }
+
+    private void flush() throws IOException {
+        flushRequested.set(false);
+        String flushId = UUID.randomUUID().toString();
+        Map<StockKey, long[]> snapshot;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            snapshot = pending;
+            pending = new HashMap<>();
+            pendingScans = 0;
+            inFlight = snapshot;
+            journal.appendFlush(flushId);
+        }
+
+        List<StockUpdateEvent> events = new ArrayList<>();
+        Map<StockKey, long[]> carried;
+        try {
+            carried = transactionTemplate.execute(status -> applyFlush(flushId, snapshot, events));
+        } catch (RuntimeException e) {
+            log.error("Stock ledger flush {} failed, keeping {} keys pending", flushId, snapshot.size(), e);
+            synchronized (lock) {
+                snapshot.forEach((key, c) -> add(pending, key, c[0], c[1], c[2]));
+                pendingScans += snapshot.values().stream().mapToLong(c -> c[2]).sum();
+                inFlight = Map.of();
+            }
+            return;
+        }
+
+        synchronized (lock) {
+            carried.forEach((key, c) -> add(pending, key, c[0], c[1], c[2]));
+            inFlight = Map.of();
+            journal.compact(pending);
+        }
+        stockWebSocketService.broadcastStockUpdates(events);
+        log.debug("Stock ledger flush {}: keys={}, carried={}", flushId, snapshot.size(), carried.size());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Stock ledger flush failed", e);
+        }
+    }
+
+    private Map<StockKey, long[]> applyFlush(String flushId, Map<StockKey, long[]> snapshot,
+                                             List<StockUpdateEvent> events) {
+        stockLedgerRepository.recordFlush(flushId);
+
+        Map<StockKey, long[]> carried = new HashMap<>();
+        List<StockMovement> movements = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        String reference = "LEDGER-" + flushId;
+
+        snapshot.forEach((key, c) -> {
+            int net = Math.toIntExact(c[0] - c[1]);
+            Optional<StockMutation> mutation = net != 0 ? applyNetDelta(key, net) : Optional.empty();
+            if (net != 0 && mutation.isEmpty()) {
+                log.warn("Stock ledger could not apply {} to product={}, warehouse={}; keeping it pending",
+                        net, key.productId(), key.warehouseId());
+                carried.put(key, c);
+                return;
+            }
+
+            Product product = productRepository.getReferenceById(key.productId());
+            Warehouse warehouse = warehouseRepository.getReferenceById(key.warehouseId());
+            String notes = "Scanner ledger: " + c[2] + " scans";
+            if (c[0] > 0) {
+                movements.add(StockMovement.builder().product(product).warehouse(warehouse)
+                        .type(MovementType.IN).quantity(Math.toIntExact(c[0]))
+                        .reference(reference).notes(notes).createdAt(now).build());
+            }
+            if (c[1] > 0) {
+                movements.add(StockMovement.builder().product(product).warehouse(warehouse)
+                        .type(MovementType.OUT).quantity(Math.toIntExact(c[1]))
+                        .reference(reference).notes(notes).createdAt(now).build());
+            }
+            mutation.ifPresent(m -> events.add(StockUpdateEvent.builder()
+                    .productId(m.getProductId())
+                    .productSku(m.getProductSku())
+                    .warehouseId(m.getWarehouseId())
+                    .warehouseCode(m.getWarehouseCode())
+                    .oldQuantity(m.getPreviousQuantity())
+                    .newQuantity(m.getQuantity())
+                    .changeType("SCAN")
+                    .timestamp(now)
+                    .build()));
+        });
+
+        if (!carried.isEmpty()) {
+            // Only replayed if this flush commits; otherwise the whole snapshot is still pending
+            synchronized (lock) {
+                try {
+                    journal.appendCarried(flushId, carried);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        stockMovementService.recordMovements(movements);
+        return carried;
+    }
+
+    private Optional<StockMutation> applyNetDelta(StockKey key, int net) {
+        Long productId = key.productId();
+        Long warehouseId = key.warehouseId();
+        SplitCounter counter = stockShardService.getSplitCounter(productId, warehouseId);
+        if (net > 0) {
+            return counter != null
+                    ? stockShardService.increment(counter, productId, warehouseId, net)
+                    : stockLevelRepository.incrementStock(productId, warehouseId, net);
+        }
+        if (counter == null) {
+            counter = stockShardService.reloadSplitCounter(productId, warehouseId);
+        }
+        return counter != null
+                ? stockShardService.decrement(counter, productId, warehouseId, -net)
+                : stockLevelRepository.decrementStock(productId, warehouseId, -net);
+    }
+
+    private void recover() throws IOException {
+        List<StockLedgerJournal.Entry> entries = journal.read();
+        Set<String> flushIds = new HashSet<>();
+        for (StockLedgerJournal.Entry entry : entries) {
+            if (entry.flushId() != null) {
+                flushIds.add(entry.flushId());
+            }
+        }
+        Set<String> committed = stockLedgerRepository.findCommittedFlushes(flushIds);
+
+        Map<StockKey, long[]> recovered = new HashMap<>();
+        for (StockLedgerJournal.Entry entry : entries) {
+            switch (entry.kind()) {
+                case SCAN -> add(recovered, entry.key(), entry.in(), entry.out(), entry.scans());
+                case FLUSH -> {
+                    if (committed.contains(entry.flushId())) {
+                        recovered.clear();
+                    }
+                }
+                case CARRIED -> {
+                    if (committed.contains(entry.flushId())) {
+                        add(recovered, entry.key(), entry.in(), entry.out(), entry.scans());
+                    }
+                }
+            }
+        }
+
+        synchronized (lock) {
+            pending = recovered;
+            pendingScans = recovered.values().stream().mapToLong(c -> c[2]).sum();
+            journal.compact(pending);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Recovered {} unflushed scans for {} stock levels from journal", pendingScans, recovered.size());
+        }
+    }
+
+    private static void add(Map<StockKey, long[]> counts, StockKey key, long in, long out, long scans) {
+        long[] c = counts.computeIfAbsent(key, k -> new long[3]);
+        c[0] += in;
+        c[1] += out;
+        c[2] += scans;
+    }
+
+    private static long net(Map<StockKey, long[]> counts, StockKey key) {
+        long[] c = counts.get(key);
+        return c != null ? c[0] - c[1] : 0;
+    }
+}
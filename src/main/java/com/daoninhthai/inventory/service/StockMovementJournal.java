@@ -0,0 +1,192 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.entity.StockMovement;
+import com.daoninhthai.inventory.repository.StockMovementOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit journal for single stock movements. The caller's transaction only appends a row to
+ * stock_movement_outbox; after it commits, the row id goes into a bounded ring buffer and a writer thread
+ * moves buffered rows into stock_movements in multi-row batches.
+ *
+ * The outbox row commits or rolls back with the stock change, so a committed movement cannot be lost: rows
+ * the writer never saw (full buffer, crash) are moved by a periodic sweep. When the buffer is full,
+ * {@link #append} refuses the movement and the caller writes it directly, which slows producers down to
+ * the speed of the database instead of growing the backlog.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockMovementJournal {
+
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    private final StockMovementOutboxRepository stockMovementOutboxRepository;
+    private final InventoryMetricsService inventoryMetricsService;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    private BlockingQueue<Pending> buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    public boolean isEnabled() {
+        return stockConfig.getMovementJournal().isEnabled();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        StockConfig.MovementJournal config = stockConfig.getMovementJournal();
+        buffer = new ArrayBlockingQueue<>(config.getBufferCapacity());
+        inventoryMetricsService.registerMovementJournalBuffer(buffer);
+
+        running = true;
+        writer = new Thread(this::runWriter, "stock-movement-journal");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Stock movement journal started: bufferCapacity={}, maxBatchSize={}",
+                config.getBufferCapacity(), config.getMaxBatchSize());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Appends the movement to the outbox within the current transaction. Returns false when the movement
+     * must be written directly instead: the journal is off or stopped, or its buffer is full.
+     */
+    public boolean append(StockMovement movement) {
+        if (!running || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        if (buffer.remainingCapacity() == 0) {
+            inventoryMetricsService.recordMovementJournalOverflow("direct");
+            return false;
+        }
+
+        Long id = stockMovementOutboxRepository.append(movement);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (!buffer.offer(new Pending(id, System.nanoTime()))) {
+                    // Still committed in the outbox; the sweep picks it up
+                    inventoryMetricsService.recordMovementJournalOverflow("swept");
+                }
+            }
+        });
+        return true;
+    }
+
+    private void runWriter() {
+        StockConfig.MovementJournal config = stockConfig.getMovementJournal();
+        List<Pending> batch = new ArrayList<>(config.getMaxBatchSize());
+        long nextSweep = System.nanoTime();
+
+        while (running) {
+            if (System.nanoTime() - nextSweep >= 0) {
+                sweep();
+                nextSweep = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getSweepIntervalMs());
+            }
+            try {
+                Pending first = buffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getBatchWindowMs());
+                while (batch.size() < config.getMaxBatchSize()) {
+                    buffer.drainTo(batch, config.getMaxBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= config.getMaxBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            write(batch);
+            batch.clear();
+        }
+
+        while (buffer.drainTo(batch, config.getMaxBatchSize()) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            ids.add(pending.outboxId());
+        }
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> stockMovementOutboxRepository.moveToMovements(ids));
+        } catch (RuntimeException e) {
+            log.error("Movement journal batch of {} failed; the outbox sweep will retry it", batch.size(), e);
+            return;
+        }
+        long end = System.nanoTime();
+
+        inventoryMetricsService.recordMovementJournalBatch(batch.size(), end - start);
+        for (Pending pending : batch) {
+            inventoryMetricsService.recordMovementJournalLag(end - pending.enqueuedNanos());
+        }
+        log.debug("Movement journal wrote {} movements", batch.size());
+    }
+
+    private void sweep() {
+        StockConfig.MovementJournal config = stockConfig.getMovementJournal();
+        double minAgeSeconds = config.getSweepAgeMs() / 1000.0;
+        try {
+            int total = 0;
+            Integer moved;
+            do {
+                moved = transactionTemplate.execute(status ->
+                        stockMovementOutboxRepository.moveStale(minAgeSeconds, config.getMaxBatchSize()));
+                total += moved != null ? moved : 0;
+            } while (running && moved != null && moved == config.getMaxBatchSize());
+            if (total > 0) {
+                log.info("Movement journal sweep moved {} movements from the outbox", total);
+            }
+        } catch (RuntimeException e) {
+            log.error("Movement journal sweep failed", e);
+        }
+    }
+
+    private record Pending(Long outboxId, long enqueuedNanos) {
+    }
+}
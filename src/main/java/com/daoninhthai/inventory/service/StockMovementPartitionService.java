@@ -0,0 +1,138 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.repository.StockMovementPartitionRepository;
+import com.daoninhthai.inventory.repository.StockMovementRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the monthly partitions of stock_movements in shape: the next {@code months-ahead} months always
+ * exist, so inserts never land in the default partition, and months older than {@code retention-months}
+ * are detached. Detached partitions stay in the database as plain tables unless {@code drop-detached}.
+ * Each run also plans the repository's created_at-bounded queries and warns when they are not pruned.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockMovementPartitionService {
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("stock_movements_y(\\d{4})m(\\d{2})");
+    private static final String DEFAULT_PARTITION = "stock_movements_default";
+
+    private final StockMovementPartitionRepository stockMovementPartitionRepository;
+    private final StockConfig stockConfig;
+
+    @Transactional
+    public List<String> createUpcomingPartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        List<String> partitions = new ArrayList<>();
+        for (int i = 0; i <= stockConfig.getMovementPartitions().getMonthsAhead(); i++) {
+            partitions.add(stockMovementPartitionRepository.ensurePartition(month.plusMonths(i)));
+        }
+        return partitions;
+    }
+
+    /**
+     * Plans the created_at-bounded statements of {@link StockMovementRepository} with sample bounds and
+     * returns, per repository method, the partitions scanned that the bounds exclude. The history query is
+     * bounded to the current month and may only scan that month's partition; the keyset pages start from a
+     * cursor at the end of the previous month and may not scan the current month or later ones. The
+     * default partition is always allowed. An empty map means every statement prunes.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, List<String>> findUnprunedPartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        String current = partitionName(month);
+        LocalDateTime cursor = month.atStartOfDay().minusNanos(1000);
+
+        Map<String, List<String>> unpruned = new LinkedHashMap<>();
+        checkPruning(unpruned, "findByProductIdAndCreatedAtBetween", StockMovementRepository.HISTORY_SQL,
+                Map.of("productId", 0L, "start", month.atStartOfDay(),
+                        "end", month.plusMonths(1).atStartOfDay().minusNanos(1000)),
+                partition -> !partition.equals(current));
+        Predicate<String> notBeforeCursor = partition ->
+                MONTHLY_PARTITION.matcher(partition).matches() && partition.compareTo(current) >= 0;
+        checkPruning(unpruned, "findPageBefore", StockMovementRepository.PAGE_SQL,
+                pageParams(cursor, Map.of()), notBeforeCursor);
+        checkPruning(unpruned, "findPageByProductBefore", StockMovementRepository.PAGE_BY_PRODUCT_SQL,
+                pageParams(cursor, Map.of("productId", 0L)), notBeforeCursor);
+        checkPruning(unpruned, "findPageByWarehouseBefore", StockMovementRepository.PAGE_BY_WAREHOUSE_SQL,
+                pageParams(cursor, Map.of("warehouseId", 0L)), notBeforeCursor);
+        checkPruning(unpruned, "findPageByTypeBefore", StockMovementRepository.PAGE_BY_TYPE_SQL,
+                pageParams(cursor, Map.of("type", MovementType.OUT.name())), notBeforeCursor);
+        return unpruned;
+    }
+
+    private void checkPruning(Map<String, List<String>> unpruned, String query, String sql,
+                              Map<String, ?> params, Predicate<String> excluded) {
+        List<String> scanned = stockMovementPartitionRepository.findScannedPartitions(sql, params).stream()
+                .filter(partition -> !partition.equals(DEFAULT_PARTITION))
+                .filter(excluded)
+                .collect(Collectors.toList());
+        if (!scanned.isEmpty()) {
+            unpruned.put(query, scanned);
+        }
+    }
+
+    private static Map<String, Object> pageParams(LocalDateTime cursor, Map<String, Object> filter) {
+        Map<String, Object> params = new HashMap<>(filter);
+        params.put("createdAt", cursor);
+        params.put("id", Long.MAX_VALUE);
+        params.put("limit", 50);
+        return params;
+    }
+
+    // Same naming as ensure_stock_movement_partition
+    private static String partitionName(LocalDate month) {
+        return String.format("stock_movements_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Detaches (and optionally drops) monthly partitions that end before the retention cutoff.
+     *
+     * @return the detached partition names
+     */
+    @Transactional
+    public List<String> detachExpiredPartitions() {
+        StockConfig.MovementPartitions config = stockConfig.getMovementPartitions();
+        if (config.getRetentionMonths() <= 0) {
+            return List.of();
+        }
+        LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(config.getRetentionMonths());
+
+        List<String> detached = new ArrayList<>();
+        for (String partition : stockMovementPartitionRepository.findAttachedPartitions()) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            LocalDate month = LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), 1);
+            if (!month.plusMonths(1).isAfter(cutoff)) {
+                stockMovementPartitionRepository.detachPartition(partition);
+                if (config.isDropDetached()) {
+                    stockMovementPartitionRepository.dropTable(partition);
+                }
+                detached.add(partition);
+                log.info("{} stock movement partition {} (retention {} months)",
+                        config.isDropDetached() ? "Dropped" : "Detached", partition, config.getRetentionMonths());
+            }
+        }
+        return detached;
+    }
+}
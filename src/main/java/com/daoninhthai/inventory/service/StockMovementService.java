@@ -1,9 +1,13 @@
 package com.daoninhthai.inventory.service;
 
+import com.daoninhthai.inventory.dto.CursorPage;
+import com.daoninhthai.inventory.dto.HistoryCursor;
+import com.daoninhthai.inventory.dto.StockMovementResponse;
 import com.daoninhthai.inventory.entity.MovementType;
 import com.daoninhthai.inventory.entity.Product;
 import com.daoninhthai.inventory.entity.StockMovement;
 import com.daoninhthai.inventory.entity.Warehouse;
+import com.daoninhthai.inventory.repository.MovementRollupRepository;
 import com.daoninhthai.inventory.repository.StockMovementRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,15 +17,30 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StockMovementService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final Comparator<StockMovementResponse> HISTORY_ORDER =
+            Comparator.comparing(StockMovementResponse::getCreatedAt).thenComparing(StockMovementResponse::getId);
+
     private final StockMovementRepository stockMovementRepository;
+    private final StockMovementJournal stockMovementJournal;
+    private final MovementRollupRepository movementRollupRepository;
+    private final MovementArchiveService movementArchiveService;
 
+    /**
+     * Records one movement in the caller's transaction. In journal mode the movement goes through the
+     * outbox and reaches stock_movements shortly after commit; the returned movement then has no id.
+     */
     @Transactional
     public StockMovement recordMovement(Product product, Warehouse warehouse,
                                          MovementType type, Integer quantity,
@@ -36,12 +55,30 @@ public class StockMovementService {
                 .createdBy(createdBy)
                 .build();
 
+        if (stockMovementJournal.isEnabled()) {
+            movement.setCreatedAt(LocalDateTime.now());
+            if (stockMovementJournal.append(movement)) {
+                movementRollupRepository.add(List.of(movement));
+                log.debug("Journaled {} movement: productId={}, warehouseId={}, qty={}",
+                        type, product.getId(), warehouse.getId(), quantity);
+                return movement;
+            }
+        }
+
         StockMovement saved = stockMovementRepository.save(movement);
-        log.info("Recorded {} movement: product={}, warehouse={}, qty={}",
-                type, product.getSku(), warehouse.getCode(), quantity);
+        movementRollupRepository.add(List.of(saved));
+        log.info("Recorded {} movement: productId={}, warehouseId={}, qty={}",
+                type, product.getId(), warehouse.getId(), quantity);
         return saved;
     }
 
+    @Transactional
+    public void recordMovements(List<StockMovement> movements) {
+        stockMovementRepository.insertAll(movements);
+        movementRollupRepository.add(movements);
+        log.info("Recorded {} movements in batch", movements.size());
+    }
+
     @Transactional(readOnly = true)
     public Page<StockMovement> getMovementsByProduct(Long productId, Pageable pageable) {
         return stockMovementRepository.findByProductId(productId, pageable);
@@ -57,8 +94,98 @@ public class StockMovementService {
         return stockMovementRepository.findByType(type, pageable);
     }
 
+    /**
+     * Movements of the product between {@code start} and {@code end} inclusive, oldest first. Months that
+     * were moved to the cold archive are read from its segment files and merged with the rows still in the
+     * database by (created_at, id).
+     */
+    @Transactional(readOnly = true)
+    public List<StockMovementResponse> getMovementHistory(Long productId, LocalDateTime start, LocalDateTime end) {
+        if (end.isBefore(start)) {
+            throw new IllegalStateException("end must not be before start");
+        }
+        List<StockMovementResponse> hot = stockMovementRepository
+                .findByProductIdAndCreatedAtBetween(productId, start, end).stream()
+                .map(this::toResponse)
+                .sorted(HISTORY_ORDER)
+                .collect(Collectors.toList());
+        List<MovementArchiveSegment.Row> archived = movementArchiveService.findMovements(productId, start, end);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+
+        List<StockMovementResponse> movements = new ArrayList<>(archived.size() + hot.size());
+        int h = 0;
+        for (MovementArchiveSegment.Row row : archived) {
+            StockMovementResponse cold = toResponse(row);
+            while (h < hot.size() && HISTORY_ORDER.compare(hot.get(h), cold) < 0) {
+                movements.add(hot.get(h++));
+            }
+            movements.add(cold);
+        }
+        movements.addAll(hot.subList(h, hot.size()));
+        return movements;
+    }
+
+    /**
+     * Keyset page of movements, newest first, optionally filtered by one of product, warehouse or type.
+     * Cost per page is independent of how deep into the history the cursor is.
+     */
     @Transactional(readOnly = true)
-    public List<StockMovement> getMovementHistory(Long productId, LocalDateTime start, LocalDateTime end) {
-        return stockMovementRepository.findByProductIdAndCreatedAtBetween(productId, start, end);
+    public CursorPage<StockMovementResponse> getMovementPage(Long productId, Long warehouseId, MovementType type,
+                                                             String cursor, int limit) {
+        int filters = (productId != null ? 1 : 0) + (warehouseId != null ? 1 : 0) + (type != null ? 1 : 0);
+        if (filters > 1) {
+            throw new IllegalStateException("Filter by at most one of productId, warehouseId and type");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        HistoryCursor after = HistoryCursor.decode(cursor);
+
+        List<StockMovement> rows;
+        if (productId != null) {
+            rows = stockMovementRepository.findPageByProductBefore(productId, after.createdAt(), after.id(), size + 1);
+        } else if (warehouseId != null) {
+            rows = stockMovementRepository.findPageByWarehouseBefore(warehouseId, after.createdAt(), after.id(), size + 1);
+        } else if (type != null) {
+            rows = stockMovementRepository.findPageByTypeBefore(type.name(), after.createdAt(), after.id(), size + 1);
+        } else {
+            rows = stockMovementRepository.findPageBefore(after.createdAt(), after.id(), size + 1);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<StockMovement> page = hasMore ? rows.subList(0, size) : rows;
+        StockMovement last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return CursorPage.<StockMovementResponse>builder()
+                .items(page.stream().map(this::toResponse).collect(Collectors.toList()))
+                .nextCursor(hasMore ? new HistoryCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
+    }
+
+    private StockMovementResponse toResponse(MovementArchiveSegment.Row row) {
+        return StockMovementResponse.builder()
+                .id(row.id())
+                .productId(row.productId())
+                .warehouseId(row.warehouseId())
+                .type(row.type())
+                .quantity(row.quantity())
+                .reference(row.reference())
+                .notes(row.notes())
+                .createdBy(row.createdBy())
+                .createdAt(row.createdAt())
+                .build();
+    }
+
+    private StockMovementResponse toResponse(StockMovement movement) {
+        return StockMovementResponse.builder()
+                .id(movement.getId())
+                .productId(movement.getProduct().getId())
+                .warehouseId(movement.getWarehouse().getId())
+                .type(movement.getType())
+                .quantity(movement.getQuantity())
+                .reference(movement.getReference())
+                .notes(movement.getNotes())
+                .createdBy(movement.getCreatedBy())
+                .createdAt(movement.getCreatedAt())
+                .build();
     }
 }
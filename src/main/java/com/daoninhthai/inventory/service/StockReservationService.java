@@ -0,0 +1,282 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.StockAdjustmentRequest;
+import com.daoninhthai.inventory.dto.StockAvailabilityResponse;
+import com.daoninhthai.inventory.dto.StockReservationRequest;
+import com.daoninhthai.inventory.dto.StockReservationResponse;
+import com.daoninhthai.inventory.entity.MovementType;
+import com.daoninhthai.inventory.entity.ReservationStatus;
+import com.daoninhthai.inventory.entity.StockReservation;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.*;
+import com.daoninhthai.inventory.repository.StockLevelRepositoryCustom.LockedStockLevel;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservations hold stock for an order until it is committed (one OUT movement) or released.
+ *
+ * Creating a reservation checks on-hand minus active reservations under the stock level row lock, so
+ * concurrent reservations cannot oversell. The reserved quantity is also kept on the stock level row and
+ * released in the same statement that closes the reservation; every decrement checks it under the row lock,
+ * so other OUT movements and transfers cannot take reserved stock. Reads of available-to-sell use an
+ * in-memory index of active reservations per product/warehouse, rebuilt from the table on startup. Expiry
+ * runs off a delay queue ordered by expiry time instead of polling the table.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    private final StockReservationRepository stockReservationRepository;
+    private final StockLevelRepository stockLevelRepository;
+    private final ProductRepository productRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final StockService stockService;
+    private final StockLedgerService stockLedgerService;
+    private final StockWritePipeline stockWritePipeline;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    private final Map<Long, ActiveReservation> activeReservations = new ConcurrentHashMap<>();
+    private final Map<StockKey, Integer> reservedByKey = new ConcurrentHashMap<>();
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+    private Thread expiryThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (Object[] row : stockReservationRepository.findActiveReservations()) {
+            track((Long) row[0], new StockKey((Long) row[1], (Long) row[2]), (Integer) row[3], (LocalDateTime) row[4]);
+        }
+        log.info("Loaded {} active stock reservations", activeReservations.size());
+
+        expiryThread = new Thread(this::runExpiries, "stock-reservation-expiry");
+        expiryThread.setDaemon(true);
+        expiryThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (expiryThread != null) {
+            expiryThread.interrupt();
+        }
+    }
+
+    public StockReservationResponse reserve(StockReservationRequest request) {
+        Long productId = request.getProductId();
+        Long warehouseId = request.getWarehouseId();
+        int quantity = request.getQuantity();
+        long ttlSeconds = request.getTtlSeconds() != null
+                ? request.getTtlSeconds() : stockConfig.getReservationTtlSeconds();
+
+        StockReservationResponse response = stockWritePipeline.execute(warehouseId, () -> {
+            StockKey key = new StockKey(productId, warehouseId);
+            List<LockedStockLevel> locked = stockLevelRepository.lockStockLevels(List.of(key));
+            if (locked.isEmpty()) {
+                if (!productRepository.existsById(productId)) {
+                    throw new ResourceNotFoundException("Product", "id", productId);
+                }
+                if (!warehouseRepository.existsById(warehouseId)) {
+                    throw new ResourceNotFoundException("Warehouse", "id", warehouseId);
+                }
+            }
+
+            int available = (locked.isEmpty() ? 0 : locked.get(0).available())
+                    + stockLedgerService.pendingDelta(productId, warehouseId);
+            if (locked.isEmpty() || available < quantity) {
+                throw new IllegalStateException("Insufficient available stock. Available: "
+                        + Math.max(available, 0));
+            }
+            stockLevelRepository.addReservedQuantity(locked.get(0).id(), quantity);
+
+            LocalDateTime now = LocalDateTime.now();
+
+            StockReservation reservation = stockReservationRepository.save(StockReservation.builder()
+                    .product(productRepository.getReferenceById(productId))
+                    .warehouse(warehouseRepository.getReferenceById(warehouseId))
+                    .quantity(quantity)
+                    .reference(request.getReference())
+                    .expiresAt(now.plusSeconds(ttlSeconds))
+                    .build());
+            return toResponse(reservation);
+        });
+
+        track(response.getId(), new StockKey(productId, warehouseId), quantity, response.getExpiresAt());
+        log.info("Stock reserved: id={}, product={}, warehouse={}, qty={}, ref={}",
+                response.getId(), productId, warehouseId, quantity, response.getReference());
+        return response;
+    }
+
+    @Transactional(readOnly = true)
+    public StockReservationResponse getReservation(Long id) {
+        return toResponse(findReservation(id));
+    }
+
+    /**
+     * Turns the reservation into an OUT movement.
+     */
+    public StockReservationResponse commit(Long id) {
+        Long warehouseId = transactionTemplate.execute(status -> findReservation(id).getWarehouse().getId());
+
+        StockReservationResponse response = stockWritePipeline.execute(warehouseId, () -> {
+            StockReservation reservation = findReservation(id);
+            if (reservation.getStatus() == ReservationStatus.ACTIVE
+                    && reservation.getExpiresAt().isBefore(LocalDateTime.now())) {
+                throw new IllegalStateException("Reservation " + id + " has expired");
+            }
+            close(reservation, ReservationStatus.COMMITTED);
+
+            stockService.applyAdjustment(StockAdjustmentRequest.builder()
+                    .productId(reservation.getProduct().getId())
+                    .warehouseId(warehouseId)
+                    .type(MovementType.OUT)
+                    .quantity(reservation.getQuantity())
+                    .notes(reservation.getReference() != null
+                            ? "Reservation " + id + " committed: " + reservation.getReference()
+                            : "Reservation " + id + " committed")
+                    .build());
+            reservation.setStatus(ReservationStatus.COMMITTED);
+            return toResponse(reservation);
+        });
+
+        forget(id);
+        log.info("Stock reservation committed: id={}, qty={}", id, response.getQuantity());
+        return response;
+    }
+
+    @Transactional
+    public StockReservationResponse release(Long id) {
+        StockReservation reservation = findReservation(id);
+        close(reservation, ReservationStatus.RELEASED);
+        reservation.setStatus(ReservationStatus.RELEASED);
+        forgetAfterCommit(id);
+        log.info("Stock reservation released: id={}, qty={}", id, reservation.getQuantity());
+        return toResponse(reservation);
+    }
+
+    /**
+     * On-hand minus active reservations, from the in-memory index.
+     */
+    public StockAvailabilityResponse getAvailability(Long productId, Long warehouseId) {
+        int onHand = stockLevelRepository.findQuantity(productId, warehouseId).orElse(0)
+                + stockLedgerService.pendingDelta(productId, warehouseId);
+        int reserved = reservedByKey.getOrDefault(new StockKey(productId, warehouseId), 0);
+        return StockAvailabilityResponse.builder()
+                .productId(productId)
+                .warehouseId(warehouseId)
+                .onHand(onHand)
+                .reserved(reserved)
+                .available(Math.max(onHand - reserved, 0))
+                .build();
+    }
+
+    private void runExpiries() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Expiry expiry;
+            try {
+                expiry = expiries.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!activeReservations.containsKey(expiry.reservationId())) {
+                continue;
+            }
+            try {
+                Integer closed = transactionTemplate.execute(status ->
+                        stockReservationRepository.closeReservation(expiry.reservationId(), ReservationStatus.EXPIRED));
+                forget(expiry.reservationId());
+                if (closed != null && closed > 0) {
+                    log.info("Stock reservation expired: id={}", expiry.reservationId());
+                }
+            } catch (RuntimeException e) {
+                log.error("Could not expire stock reservation {}, retrying later", expiry.reservationId(), e);
+                expiries.put(new Expiry(expiry.reservationId(), System.nanoTime() + TimeUnit.SECONDS.toNanos(30)));
+            }
+        }
+    }
+
+    private StockReservation findReservation(Long id) {
+        return stockReservationRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("StockReservation", "id", id));
+    }
+
+    private void close(StockReservation reservation, ReservationStatus status) {
+        if (reservation.getStatus() != ReservationStatus.ACTIVE
+                || stockReservationRepository.closeReservation(reservation.getId(), status) == 0) {
+            throw new IllegalStateException("Reservation " + reservation.getId() + " is no longer active");
+        }
+    }
+
+    private void track(Long id, StockKey key, int quantity, LocalDateTime expiresAt) {
+        if (activeReservations.putIfAbsent(id, new ActiveReservation(key, quantity)) == null) {
+            reservedByKey.merge(key, quantity, Integer::sum);
+            long delay = Duration.between(LocalDateTime.now(), expiresAt).toNanos();
+            expiries.put(new Expiry(id, System.nanoTime() + Math.max(delay, 0)));
+        }
+    }
+
+    private void forget(Long id) {
+        ActiveReservation reservation = activeReservations.remove(id);
+        if (reservation != null) {
+            reservedByKey.computeIfPresent(reservation.key(), (key, reserved) ->
+                    reserved > reservation.quantity() ? reserved - reservation.quantity() : null);
+        }
+    }
+
+    private void forgetAfterCommit(Long id) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                forget(id);
+            }
+        });
+    }
+
+    private StockReservationResponse toResponse(StockReservation reservation) {
+        return StockReservationResponse.builder()
+                .id(reservation.getId())
+                .productId(reservation.getProduct().getId())
+                .warehouseId(reservation.getWarehouse().getId())
+                .quantity(reservation.getQuantity())
+                .reference(reservation.getReference())
+                .status(reservation.getStatus())
+                .expiresAt(reservation.getExpiresAt())
+                .createdAt(reservation.getCreatedAt())
+                .build();
+    }
+
+    private record ActiveReservation(StockKey key, int quantity) {
+    }
+
+    private record Expiry(Long reservationId, long deadlineNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
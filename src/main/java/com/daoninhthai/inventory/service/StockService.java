@@ -5,13 +5,16 @@ import com.daoninhthai.inventory.entity.*;
 import com.daoninhthai.inventory.exception.ResourceNotFoundException;
 import com.daoninhthai.inventory.repository.ProductRepository;
 import com.daoninhthai.inventory.repository.StockLevelRepository;
+import com.daoninhthai.inventory.repository.StockLevelRepository.StockMutation;
 import com.daoninhthai.inventory.repository.WarehouseRepository;
+import com.daoninhthai.inventory.service.StockShardService.SplitCounter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,6 +27,10 @@ public class StockService {
     private final WarehouseRepository warehouseRepository;
     private final StockMovementService stockMovementService;
     private final StockWebSocketService stockWebSocketService;
+    private final DocumentNumberService documentNumberService;
+    private final StockShardService stockShardService;
+    private final StockWritePipeline stockWritePipeline;
+    private final StockLedgerService stockLedgerService;
 
     @Transactional(readOnly = true)
     public StockLevelResponse getStockLevel(Long productId, Long warehouseId) {
@@ -47,109 +54,124 @@ public class StockService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional
     public StockLevelResponse adjustStock(StockAdjustmentRequest request) {
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
-        Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
-                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getWarehouseId()));
-
-        StockLevel stockLevel = stockLevelRepository
-                .findByProductIdAndWarehouseId(request.getProductId(), request.getWarehouseId())
-                .orElseGet(() -> StockLevel.builder()
-                        .product(product)
-                        .warehouse(warehouse)
-                        .quantity(0)
-                        .build());
-
-        int oldQty = stockLevel.getQuantity();
-
-        switch (request.getType()) {
-            case IN -> stockLevel.setQuantity(stockLevel.getQuantity() + request.getQuantity());
-            case OUT -> {
-                if (stockLevel.getQuantity() < request.getQuantity()) {
-                    throw new IllegalStateException("Insufficient stock. Available: " + stockLevel.getQuantity());
-                }
-                stockLevel.setQuantity(stockLevel.getQuantity() - request.getQuantity());
-            }
-            case ADJUSTMENT -> stockLevel.setQuantity(request.getQuantity());
-            default -> throw new IllegalStateException("Invalid movement type: " + request.getType());
-        }
-        StockLevel saved = stockLevelRepository.save(stockLevel);
-
-        stockMovementService.recordMovement(product, warehouse, request.getType(),
-                request.getQuantity(), null, request.getNotes(), null);
-
-        stockWebSocketService.broadcastStockUpdate(
-                product.getId(), product.getSku(),
-                warehouse.getId(), warehouse.getCode(),
-                oldQty, saved.getQuantity(),
-                request.getType().name());
-
-        log.info("Stock adjusted: product={}, warehouse={}, type={}, qty={}",
-                product.getSku(), warehouse.getCode(), request.getType(), request.getQuantity());
-
-        return toResponse(saved);
+        return stockWritePipeline.execute(request.getWarehouseId(), () -> applyAdjustment(request));
     }
 
-    @Transactional
     public void transferStock(StockTransferRequest request) {
         if (request.getFromWarehouseId().equals(request.getToWarehouseId())) {
             throw new IllegalStateException("Source and destination warehouses must be different");
         }
+        stockWritePipeline.executeAcrossWarehouses("transfer", () -> {
+            applyTransfer(request);
+            return null;
+        });
+    }
+
+    public void scanStock(StockScanRequest request) {
+        int delta = request.getDelta();
+        if (delta == 0) {
+            throw new IllegalStateException("Scan delta must not be zero");
+        }
+        if (stockLedgerService.isEnabled()) {
+            stockLedgerService.record(request.getProductId(), request.getWarehouseId(), delta);
+            return;
+        }
+        adjustStock(StockAdjustmentRequest.builder()
+                .productId(request.getProductId())
+                .warehouseId(request.getWarehouseId())
+                .type(delta > 0 ? MovementType.IN : MovementType.OUT)
+                .quantity(Math.abs(delta))
+                .notes("Scan")
+                .build());
+    }
 
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
-        Warehouse fromWarehouse = warehouseRepository.findById(request.getFromWarehouseId())
-                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getFromWarehouseId()));
-        Warehouse toWarehouse = warehouseRepository.findById(request.getToWarehouseId())
-                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getToWarehouseId()));
+    /**
+     * Applies an adjustment in the current transaction, without going through the write pipeline.
+     * Meant for callers that already run on it.
+     */
+    public StockLevelResponse applyAdjustment(StockAdjustmentRequest request) {
+        Long productId = request.getProductId();
+        Long warehouseId = request.getWarehouseId();
+        int quantity = request.getQuantity();
 
-        StockLevel sourceStock = stockLevelRepository
-                .findByProductIdAndWarehouseId(request.getProductId(), request.getFromWarehouseId())
-                .orElseThrow(() -> new ResourceNotFoundException("StockLevel", "warehouse", request.getFromWarehouseId()));
+        StockMutation mutation = switch (request.getType()) {
+            case IN -> increment(productId, warehouseId, quantity)
+                    .orElseThrow(() -> stockTargetNotFound(productId, warehouseId));
+            case OUT -> decrement(productId, warehouseId, quantity)
+                    .orElseThrow(() -> insufficientStock(productId, warehouseId));
+            case ADJUSTMENT -> stockLevelRepository.setStock(productId, warehouseId, quantity)
+                    .orElseThrow(() -> stockTargetNotFound(productId, warehouseId));
+            default -> throw new IllegalStateException("Invalid movement type: " + request.getType());
+        };
 
-        if (sourceStock.getQuantity() < request.getQuantity()) {
-            throw new IllegalStateException("Insufficient stock at source warehouse. Available: " + sourceStock.getQuantity());
-        }
+        stockMovementService.recordMovement(
+                productRepository.getReferenceById(productId),
+                warehouseRepository.getReferenceById(warehouseId),
+                request.getType(), quantity, null, request.getNotes(), null);
 
-        sourceStock.setQuantity(sourceStock.getQuantity() - request.getQuantity());
-        stockLevelRepository.save(sourceStock);
+        stockWebSocketService.broadcastStockUpdate(
+                productId, mutation.getProductSku(),
+                warehouseId, mutation.getWarehouseCode(),
+                mutation.getPreviousQuantity(), mutation.getQuantity(),
+                request.getType().name());
+
+        log.info("Stock adjusted: product={}, warehouse={}, type={}, qty={}",
+                mutation.getProductSku(), mutation.getWarehouseCode(), request.getType(), quantity);
 
-        StockLevel destStock = stockLevelRepository
-                .findByProductIdAndWarehouseId(request.getProductId(), request.getToWarehouseId())
-                .orElseGet(() -> StockLevel.builder()
-                        .product(product)
-                        .warehouse(toWarehouse)
-                        .quantity(0)
-                        .build());
+        return toResponse(mutation);
+    }
+
+    private void applyTransfer(StockTransferRequest request) {
+        Long productId = request.getProductId();
+        Long fromWarehouseId = request.getFromWarehouseId();
+        Long toWarehouseId = request.getToWarehouseId();
+        int quantity = request.getQuantity();
 
-        destStock.setQuantity(destStock.getQuantity() + request.getQuantity());
-        stockLevelRepository.save(destStock);
+        // Touch the two rows in canonical (warehouse) order so opposing transfers cannot deadlock
+        StockMutation source;
+        StockMutation destination;
+        if (fromWarehouseId < toWarehouseId) {
+            source = decrement(productId, fromWarehouseId, quantity)
+                    .orElseThrow(() -> insufficientSourceStock(productId, fromWarehouseId));
+            destination = increment(productId, toWarehouseId, quantity)
+                    .orElseThrow(() -> stockTargetNotFound(productId, toWarehouseId));
+        } else {
+            destination = increment(productId, toWarehouseId, quantity)
+                    .orElseThrow(() -> stockTargetNotFound(productId, toWarehouseId));
+            source = decrement(productId, fromWarehouseId, quantity)
+                    .orElseThrow(() -> insufficientSourceStock(productId, fromWarehouseId));
+        }
 
-        String transferRef = "TRANSFER-" + System.currentTimeMillis();
+        Product product = productRepository.getReferenceById(productId);
+        String transferRef = documentNumberService.next(DocumentNumberService.Series.TRANSFER);
 
-        stockMovementService.recordMovement(product, fromWarehouse, MovementType.OUT,
-                request.getQuantity(), transferRef,
-                "Transfer to " + toWarehouse.getCode() + ": " + request.getNotes(), null);
+        stockMovementService.recordMovement(product, warehouseRepository.getReferenceById(fromWarehouseId),
+                MovementType.OUT, quantity, transferRef,
+                "Transfer to " + destination.getWarehouseCode() + ": " + request.getNotes(), null);
 
-        stockMovementService.recordMovement(product, toWarehouse, MovementType.IN,
-                request.getQuantity(), transferRef,
-                "Transfer from " + fromWarehouse.getCode() + ": " + request.getNotes(), null);
+        stockMovementService.recordMovement(product, warehouseRepository.getReferenceById(toWarehouseId),
+                MovementType.IN, quantity, transferRef,
+                "Transfer from " + source.getWarehouseCode() + ": " + request.getNotes(), null);
 
         stockWebSocketService.broadcastStockUpdate(
-                product.getId(), product.getSku(),
-                fromWarehouse.getId(), fromWarehouse.getCode(),
-                sourceStock.getQuantity() + request.getQuantity(), sourceStock.getQuantity(),
+                productId, source.getProductSku(),
+                fromWarehouseId, source.getWarehouseCode(),
+                source.getPreviousQuantity(), source.getQuantity(),
                 "TRANSFER_OUT");
         stockWebSocketService.broadcastStockUpdate(
-                product.getId(), product.getSku(),
-                toWarehouse.getId(), toWarehouse.getCode(),
-                destStock.getQuantity() - request.getQuantity(), destStock.getQuantity(),
+                productId, destination.getProductSku(),
+                toWarehouseId, destination.getWarehouseCode(),
+                destination.getPreviousQuantity(), destination.getQuantity(),
                 "TRANSFER_IN");
 
         log.info("Stock transferred: product={}, from={}, to={}, qty={}",
-                product.getSku(), fromWarehouse.getCode(), toWarehouse.getCode(), request.getQuantity());
+                source.getProductSku(), source.getWarehouseCode(), destination.getWarehouseCode(), quantity);
+    }
+
+    @Transactional
+    public void splitStockLevel(Long productId, Long warehouseId, int shardCount) {
+        stockShardService.setShardCount(productId, warehouseId, shardCount);
     }
 
     @Transactional(readOnly = true)
@@ -161,12 +183,85 @@ public class StockService {
                         .sku(sl.getProduct().getSku())
                         .warehouseId(sl.getWarehouse().getId())
                         .warehouseName(sl.getWarehouse().getName())
-                        .currentQuantity(sl.getQuantity())
+                        .currentQuantity(sl.getTotalQuantity())
                         .minQuantity(sl.getMinQuantity())
                         .build())
                 .collect(Collectors.toList());
     }
 
+    private Optional<StockMutation> increment(Long productId, Long warehouseId, int quantity) {
+        SplitCounter counter = stockShardService.getSplitCounter(productId, warehouseId);
+        return counter != null
+                ? stockShardService.increment(counter, productId, warehouseId, quantity)
+                : stockLevelRepository.incrementStock(productId, warehouseId, quantity);
+    }
+
+    private Optional<StockMutation> decrement(Long productId, Long warehouseId, int quantity) {
+        SplitCounter counter = stockShardService.getSplitCounter(productId, warehouseId);
+        if (counter != null) {
+            return stockShardService.decrement(counter, productId, warehouseId, quantity);
+        }
+        Optional<StockMutation> mutation = stockLevelRepository.decrementStock(productId, warehouseId, quantity);
+        if (mutation.isEmpty()) {
+            // The row may have been split by another instance since the registry was last refreshed
+            counter = stockShardService.reloadSplitCounter(productId, warehouseId);
+            if (counter != null) {
+                return stockShardService.decrement(counter, productId, warehouseId, quantity);
+            }
+        }
+        return mutation;
+    }
+
+    private RuntimeException insufficientSourceStock(Long productId, Long warehouseId) {
+        return stockLevelRepository.findAvailableQuantity(productId, warehouseId)
+                .<RuntimeException>map(available -> new IllegalStateException(
+                        "Insufficient stock at source warehouse. Available: " + Math.max(available, 0)))
+                .orElseGet(() -> new ResourceNotFoundException("StockLevel", "warehouse", warehouseId));
+    }
+
+    private RuntimeException insufficientStock(Long productId, Long warehouseId) {
+        Integer available = stockLevelRepository.findAvailableQuantity(productId, warehouseId).orElse(null);
+        if (available == null) {
+            ResourceNotFoundException missing = missingProductOrWarehouse(productId, warehouseId);
+            if (missing != null) {
+                return missing;
+            }
+            available = 0;
+        }
+        return new IllegalStateException("Insufficient stock. Available: " + Math.max(available, 0));
+    }
+
+    private ResourceNotFoundException stockTargetNotFound(Long productId, Long warehouseId) {
+        ResourceNotFoundException missing = missingProductOrWarehouse(productId, warehouseId);
+        return missing != null ? missing : new ResourceNotFoundException(
+                "StockLevel", "productId/warehouseId", productId + "/" + warehouseId);
+    }
+
+    private ResourceNotFoundException missingProductOrWarehouse(Long productId, Long warehouseId) {
+        if (!productRepository.existsById(productId)) {
+            return new ResourceNotFoundException("Product", "id", productId);
+        }
+        if (!warehouseRepository.existsById(warehouseId)) {
+            return new ResourceNotFoundException("Warehouse", "id", warehouseId);
+        }
+        return null;
+    }
+
+    private StockLevelResponse toResponse(StockMutation mutation) {
+        return StockLevelResponse.builder()
+                .id(mutation.getId())
+                .productId(mutation.getProductId())
+                .productName(mutation.getProductName())
+                .productSku(mutation.getProductSku())
+                .warehouseId(mutation.getWarehouseId())
+                .warehouseName(mutation.getWarehouseName())
+                .quantity(mutation.getQuantity())
+                .minQuantity(mutation.getMinQuantity())
+                .maxQuantity(mutation.getMaxQuantity())
+                .lastUpdated(mutation.getLastUpdated())
+                .build();
+    }
+
     private StockLevelResponse toResponse(StockLevel sl) {
         return StockLevelResponse.builder()
                 .id(sl.getId())
@@ -175,7 +270,8 @@ public class StockService {
                 .productSku(sl.getProduct().getSku())
                 .warehouseId(sl.getWarehouse().getId())
                 .warehouseName(sl.getWarehouse().getName())
-                .quantity(sl.getQuantity())
+                .quantity(sl.getTotalQuantity()
+                        + stockLedgerService.pendingDelta(sl.getProduct().getId(), sl.getWarehouse().getId()))
                 .minQuantity(sl.getMinQuantity())
                 .maxQuantity(sl.getMaxQuantity())
                 .lastUpdated(sl.getLastUpdated())
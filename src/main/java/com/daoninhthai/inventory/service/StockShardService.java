@@ -0,0 +1,142 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.entity.StockLevel;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.StockKey;
+import com.daoninhthai.inventory.repository.StockLevelRepository;
+import com.daoninhthai.inventory.repository.StockLevelRepository.StockMutation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Split ("sharded") counters for hot stock levels. A split stock level keeps its quantity in N buckets:
+ * the stock_levels row itself (bucket 0) plus N-1 rows in stock_level_shards, so concurrent mutations
+ * on the same SKU/warehouse mostly land on different rows.
+ *
+ * The registry of split keys is cached locally and refreshed periodically. A stale entry only costs
+ * contention, never correctness: bucket 0 is always a valid target for any mutation.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockShardService {
+
+    public static final int MAX_SHARDS = 64;
+
+    private final StockLevelRepository stockLevelRepository;
+
+    private final Map<StockKey, SplitCounter> splitCounters = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public void refreshSplitCounters() {
+        Map<StockKey, SplitCounter> loaded = new HashMap<>();
+        for (Object[] row : stockLevelRepository.findSplitStockLevels()) {
+            StockKey key = new StockKey((Long) row[1], (Long) row[2]);
+            loaded.put(key, new SplitCounter((Long) row[0], (Integer) row[3]));
+        }
+        splitCounters.keySet().retainAll(loaded.keySet());
+        splitCounters.putAll(loaded);
+        log.debug("Loaded {} split stock counters", loaded.size());
+    }
+
+    public SplitCounter getSplitCounter(Long productId, Long warehouseId) {
+        return splitCounters.get(new StockKey(productId, warehouseId));
+    }
+
+    /**
+     * Re-reads the split state of one key from the database, for callers whose fast path failed.
+     */
+    public SplitCounter reloadSplitCounter(Long productId, Long warehouseId) {
+        StockKey key = new StockKey(productId, warehouseId);
+        Optional<StockLevel> stockLevel = stockLevelRepository.findByProductIdAndWarehouseId(productId, warehouseId)
+                .filter(sl -> sl.getShardCount() > 1);
+        if (stockLevel.isEmpty()) {
+            splitCounters.remove(key);
+            return null;
+        }
+        SplitCounter counter = new SplitCounter(stockLevel.get().getId(), stockLevel.get().getShardCount());
+        splitCounters.put(key, counter);
+        return counter;
+    }
+
+    @Transactional
+    public void setShardCount(Long productId, Long warehouseId, int shardCount) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalStateException("Shard count must be between 1 and " + MAX_SHARDS);
+        }
+        StockLevel stockLevel = stockLevelRepository.findByProductIdAndWarehouseId(productId, warehouseId)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "StockLevel", "productId/warehouseId", productId + "/" + warehouseId));
+
+        stockLevelRepository.resizeShards(stockLevel.getId(), shardCount);
+
+        StockKey key = new StockKey(productId, warehouseId);
+        if (shardCount > 1) {
+            splitCounters.put(key, new SplitCounter(stockLevel.getId(), shardCount));
+        } else {
+            splitCounters.remove(key);
+        }
+        log.info("Stock level split: product={}, warehouse={}, shards={}", productId, warehouseId, shardCount);
+    }
+
+    /**
+     * Adds to the bucket picked for the calling thread.
+     */
+    public Optional<StockMutation> increment(SplitCounter counter, Long productId, Long warehouseId, int quantity) {
+        int shard = pickShard(counter);
+        if (shard != 0) {
+            Optional<StockMutation> mutation = stockLevelRepository.incrementShard(
+                    counter.stockLevelId(), shard, quantity);
+            if (mutation.isPresent()) {
+                return mutation;
+            }
+            // The bucket is gone: the row was merged or resized by another instance
+            reloadSplitCounter(productId, warehouseId);
+        }
+        return stockLevelRepository.incrementStock(productId, warehouseId, quantity);
+    }
+
+    /**
+     * Takes from the bucket picked for the calling thread, then from its siblings, and finally from all
+     * buckets together under lock when no single bucket holds enough.
+     *
+     * @return the mutation, or empty when the on-hand total less active reservations is insufficient
+     */
+    public Optional<StockMutation> decrement(SplitCounter counter, Long productId, Long warehouseId, int quantity) {
+        int start = pickShard(counter);
+        for (int i = 0; i < counter.shardCount(); i++) {
+            int shard = (start + i) % counter.shardCount();
+            Optional<StockMutation> mutation = shard == 0
+                    ? stockLevelRepository.decrementStock(productId, warehouseId, quantity)
+                    : stockLevelRepository.decrementShard(counter.stockLevelId(), shard, quantity);
+            if (mutation.isPresent()) {
+                return mutation;
+            }
+        }
+
+        int previous = stockLevelRepository.drainStock(counter.stockLevelId(), quantity);
+        if (previous < quantity) {
+            return Optional.empty();
+        }
+        log.debug("Drained split stock level {} across buckets: qty={}", counter.stockLevelId(), quantity);
+        return stockLevelRepository.describeMutation(counter.stockLevelId(), previous, previous - quantity);
+    }
+
+    private int pickShard(SplitCounter counter) {
+        return (int) (Thread.currentThread().getId() % counter.shardCount());
+    }
+
+    public record SplitCounter(Long stockLevelId, int shardCount) {
+    }
+}
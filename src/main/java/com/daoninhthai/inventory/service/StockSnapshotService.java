@@ -0,0 +1,253 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.dto.StockAsOfResponse;
+import com.daoninhthai.inventory.dto.StockBalanceHistoryResponse;
+import com.daoninhthai.inventory.dto.StockBalanceHistoryResponse.DailyBalance;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.ProductRepository;
+import com.daoninhthai.inventory.repository.StockMovementRepository;
+import com.daoninhthai.inventory.repository.StockMovementRepositoryCustom.MovementDelta;
+import com.daoninhthai.inventory.repository.StockSnapshotRepository;
+import com.daoninhthai.inventory.repository.StockSnapshotRepository.Snapshot;
+import com.daoninhthai.inventory.repository.StockSnapshotRepository.SnapshotRun;
+import com.daoninhthai.inventory.repository.StockSnapshotRepository.StockLevelTotal;
+import com.daoninhthai.inventory.repository.WarehouseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Point-in-time stock balances. A daily job snapshots the on-hand total of every stock level that changed
+ * since the previous run; a balance at time T starts from the latest snapshot at or before T and replays
+ * only the movements recorded after it. IN and OUT movements add and subtract, an ADJUSTMENT sets the
+ * absolute quantity.
+ *
+ * A movement's created_at is taken before its transaction commits, so one recorded just before a snapshot
+ * may still be missing from it. Each snapshot therefore lists the movements of the last
+ * {@code REPLAY_MARGIN} it already includes; replays start that margin before the snapshot and skip them.
+ *
+ * The job commits one chunk of stock levels at a time and records its position, so an interrupted run
+ * resumes where it stopped. Replays also read the movements of archived months from the archive segments.
+ * Movements still in the journal outbox are not replayed until they are moved.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockSnapshotService {
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // Covers stock changes whose transaction was still open when the previous run started
+    private static final Duration CHANGE_MARGIN = Duration.ofHours(1);
+    // Longest a stock change transaction may stay open between taking created_at and committing
+    private static final Duration REPLAY_MARGIN = Duration.ofMinutes(5);
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final MovementArchiveService movementArchiveService;
+    private final ProductRepository productRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockConfig stockConfig;
+
+    /**
+     * Takes (or resumes) today's snapshot.
+     *
+     * @return the number of stock levels snapshotted by this call
+     */
+    public int takeDailySnapshot() {
+        LocalDate day = LocalDate.now();
+        SnapshotRun run = transactionTemplate.execute(status -> {
+            Optional<SnapshotRun> existing = stockSnapshotRepository.findRun(day);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            LocalDateTime changedSince = stockSnapshotRepository.findLastCompletedRunBefore(day)
+                    .map(previous -> previous.startedAt().minus(CHANGE_MARGIN))
+                    .orElse(null);
+            stockSnapshotRepository.startRun(day, changedSince);
+            return stockSnapshotRepository.findRun(day).orElseThrow();
+        });
+        if (run.completedAt() != null) {
+            return 0;
+        }
+        if (run.lastStockLevelId() > 0) {
+            log.info("Resuming stock snapshot for {} after stock level {}", day, run.lastStockLevelId());
+        }
+
+        int chunkSize = stockConfig.getBatchChunkSize();
+        long lastId = run.lastStockLevelId();
+        int snapshotted = 0;
+        while (true) {
+            long afterId = lastId;
+            List<StockLevelTotal> chunk = transactionTemplate.execute(status -> {
+                List<StockLevelTotal> totals = stockSnapshotRepository.findStockLevels(
+                        afterId, run.changedSince(), REPLAY_MARGIN, chunkSize);
+                if (!totals.isEmpty()) {
+                    stockSnapshotRepository.saveSnapshots(day, totals);
+                    stockSnapshotRepository.advanceRun(day, totals.get(totals.size() - 1).stockLevelId());
+                }
+                return totals;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            snapshotted += chunk.size();
+            lastId = chunk.get(chunk.size() - 1).stockLevelId();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> stockSnapshotRepository.completeRun(day));
+        log.info("Stock snapshot for {} completed: {} stock levels (changed since {})",
+                day, snapshotted, run.changedSince() != null ? run.changedSince() : "the beginning");
+        return snapshotted;
+    }
+
+    @Transactional(readOnly = true)
+    public StockAsOfResponse getStockAsOf(Long productId, Long warehouseId, LocalDateTime at) {
+        requireStockTarget(productId, warehouseId);
+
+        Optional<Snapshot> snapshot = stockSnapshotRepository.findLatestSnapshot(productId, warehouseId, at);
+        LocalDateTime from = snapshot.map(Snapshot::replayFrom).orElse(BEGINNING);
+        int quantity = snapshot.map(Snapshot::quantity).orElse(0);
+
+        List<MovementDelta> movements = findMovementsBetween(productId, warehouseId, from, at);
+        int replayed = 0;
+        for (MovementDelta movement : movements) {
+            if (snapshot.isEmpty() || !snapshot.get().covers(movement.id())) {
+                quantity = apply(quantity, movement);
+                replayed++;
+            }
+        }
+
+        return StockAsOfResponse.builder()
+                .productId(productId)
+                .warehouseId(warehouseId)
+                .at(at)
+                .quantity(quantity)
+                .snapshotTakenAt(snapshot.map(Snapshot::takenAt).orElse(null))
+                .replayedMovements(replayed)
+                .build();
+    }
+
+    /**
+     * Closing balance of each day from {@code from} to {@code to} inclusive. Snapshots taken inside the
+     * range re-anchor the balance, so stock changes without movements (imports) are picked up.
+     */
+    @Transactional(readOnly = true)
+    public StockBalanceHistoryResponse getDailyBalances(Long productId, Long warehouseId,
+                                                        LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalStateException("Balance range ends before it starts");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalStateException("Balance range is limited to " + MAX_RANGE_DAYS + " days");
+        }
+        requireStockTarget(productId, warehouseId);
+
+        LocalDateTime start = from.atStartOfDay().minusNanos(1000);
+        LocalDateTime end = endOfDay(to);
+        Snapshot anchor = stockSnapshotRepository.findLatestSnapshot(productId, warehouseId, start).orElse(null);
+        LocalDateTime anchoredAt = anchor != null ? anchor.takenAt() : BEGINNING;
+        LocalDateTime replayFrom = anchor != null ? anchor.replayFrom() : BEGINNING;
+        int quantity = anchor != null ? anchor.quantity() : 0;
+
+        List<MovementDelta> movements =
+                findMovementsBetween(productId, warehouseId, replayFrom, end);
+        List<Snapshot> snapshots = stockSnapshotRepository.findSnapshots(productId, warehouseId, anchoredAt, end);
+
+        List<DailyBalance> balances = new ArrayList<>();
+        int m = 0;
+        int s = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDateTime closing = endOfDay(day);
+            // Re-anchor on the latest snapshot of the day and replay again from its margin
+            if (s < snapshots.size() && !snapshots.get(s).takenAt().isAfter(closing)) {
+                while (s + 1 < snapshots.size() && !snapshots.get(s + 1).takenAt().isAfter(closing)) {
+                    s++;
+                }
+                anchor = snapshots.get(s++);
+                quantity = anchor.quantity();
+                while (m > 0 && movements.get(m - 1).createdAt().isAfter(anchor.replayFrom())) {
+                    m--;
+                }
+                while (m < movements.size() && !movements.get(m).createdAt().isAfter(anchor.replayFrom())) {
+                    m++;
+                }
+            }
+            while (m < movements.size() && !movements.get(m).createdAt().isAfter(closing)) {
+                MovementDelta movement = movements.get(m++);
+                if (anchor == null || !anchor.covers(movement.id())) {
+                    quantity = apply(quantity, movement);
+                }
+            }
+            balances.add(DailyBalance.builder().date(day).closingQuantity(quantity).build());
+        }
+
+        return StockBalanceHistoryResponse.builder()
+                .productId(productId)
+                .warehouseId(warehouseId)
+                .from(from)
+                .to(to)
+                .balances(balances)
+                .build();
+    }
+
+    /**
+     * Movements with {@code after < created_at <= upTo} from the database and, for archived months, the
+     * archive segments, in the order they happened.
+     */
+    private List<MovementDelta> findMovementsBetween(Long productId, Long warehouseId,
+                                                     LocalDateTime after, LocalDateTime upTo) {
+        List<MovementDelta> movements =
+                stockMovementRepository.findMovementsBetween(productId, warehouseId, after, upTo);
+        List<MovementDelta> archived = new ArrayList<>();
+        for (MovementArchiveSegment.Row row : movementArchiveService.findMovements(productId, after, upTo)) {
+            if (row.warehouseId() == warehouseId && row.createdAt().isAfter(after)) {
+                archived.add(new MovementDelta(row.id(), row.type(), row.quantity(), row.createdAt()));
+            }
+        }
+        if (archived.isEmpty()) {
+            return movements;
+        }
+        archived.addAll(movements);
+        archived.sort(Comparator.comparing(MovementDelta::createdAt).thenComparingLong(MovementDelta::id));
+        return archived;
+    }
+
+    private void requireStockTarget(Long productId, Long warehouseId) {
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        if (!warehouseRepository.existsById(warehouseId)) {
+            throw new ResourceNotFoundException("Warehouse", "id", warehouseId);
+        }
+    }
+
+    private static int apply(int quantity, MovementDelta movement) {
+        return switch (movement.type()) {
+            case IN -> quantity + movement.quantity();
+            case OUT -> quantity - movement.quantity();
+            case ADJUSTMENT -> movement.quantity();
+            case TRANSFER -> quantity;
+        };
+    }
+
+    private static LocalDateTime endOfDay(LocalDate day) {
+        return day.plusDays(1).atStartOfDay().minusNanos(1000);
+    }
+}
@@ -5,16 +5,25 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Broadcasts go out once the current transaction commits, or right away outside a transaction, so clients
+ * never see changes that were rolled back or are sent again by a retry.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StockWebSocketService {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final StockChangeLog stockChangeLog;
 
     public void broadcastStockUpdate(Long productId, String productSku,
                                      Long warehouseId, String warehouseCode,
@@ -31,18 +40,26 @@ public class StockWebSocketService {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        messagingTemplate.convertAndSend("/topic/stock-updates", event);
+        afterCommit(() -> messagingTemplate.convertAndSend("/topic/stock-updates", event));
+        stockChangeLog.append(List.of(event));
         log.debug("Broadcast stock update: product={}, warehouse={}, {} -> {}",
                 productSku, warehouseCode, oldQuantity, newQuantity);
     }
 
+    public void broadcastStockUpdates(Collection<StockUpdateEvent> events) {
+        List<StockUpdateEvent> pending = List.copyOf(events);
+        afterCommit(() -> pending.forEach(event -> messagingTemplate.convertAndSend("/topic/stock-updates", event)));
+        stockChangeLog.append(pending);
+        log.debug("Broadcast {} stock updates", events.size());
+    }
+
     public void broadcastAlert(String alertType, String message) {
         Map<String, Object> alert = Map.of(
                 "type", alertType,
                 "message", message,
                 "timestamp", LocalDateTime.now().toString()
         );
-        messagingTemplate.convertAndSend("/topic/alerts", alert);
+        afterCommit(() -> messagingTemplate.convertAndSend("/topic/alerts", alert));
         log.debug("Broadcast alert: type={}", alertType);
     }
 
@@ -53,7 +70,21 @@ public class StockWebSocketService {
                 "newStatus", newStatus,
                 "timestamp", LocalDateTime.now().toString()
         );
-        messagingTemplate.convertAndSend("/topic/order-updates", statusUpdate);
+        afterCommit(() -> messagingTemplate.convertAndSend("/topic/order-updates", statusUpdate));
         log.debug("Broadcast order status: order={}, {} -> {}", orderNumber, oldStatus, newStatus);
     }
+
+    // The change log defers its own append, so only the sends are deferred here
+    private static void afterCommit(Runnable send) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                send.run();
+            }
+        });
+    }
 }
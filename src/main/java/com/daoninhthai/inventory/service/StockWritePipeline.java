@@ -0,0 +1,283 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.config.StockConfig;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.exception.ServiceBusyException;
+import com.daoninhthai.inventory.repository.WarehouseRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Executes stock mutations either directly in the caller's transaction or, when
+ * {@code inventory.stock.writer.enabled} is set, on a single writer thread per warehouse.
+ *
+ * The writer drains its queue for up to {@code batch-window-ms} and commits every command it collected in
+ * one transaction. Each command runs under its own savepoint, so a failing command is rolled back alone
+ * and reported to its caller while the rest of the batch still commits. The JPA transaction manager does
+ * not support savepoints, so they are taken on the JDBC connection bound to the transaction, and the
+ * after-commit callbacks a failed command registered are dropped with its changes.
+ *
+ * A writer batch keeps the rows of its warehouse locked until it commits, so commands that lock rows of
+ * other warehouses, such as transfers, do not run on a writer: two writers could each hold a row the
+ * other's transfer needs. They run alone in their own transaction instead and retry lock conflicts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockWritePipeline {
+
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final DataSource dataSource;
+    private final WarehouseRepository warehouseRepository;
+    private final InventoryMetricsService metricsService;
+    private final IdempotencyService idempotencyService;
+    private final StockConfig stockConfig;
+
+    private final Map<Long, WarehouseWriter> writers = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return stockConfig.getWriter().isEnabled();
+    }
+
+    /**
+     * Runs the work in a transaction and returns its result. The warehouse id selects the writer in
+     * pipeline mode and is ignored otherwise.
+     */
+    public <T> T execute(Long warehouseId, Supplier<T> mutation) {
+        Supplier<T> work = idempotencyService.bindToTransaction(mutation);
+        if (!isEnabled()) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+
+        Command<T> command = new Command<>(work);
+        WarehouseWriter writer = writers.get(warehouseId);
+        if (writer == null) {
+            if (!warehouseRepository.existsById(warehouseId)) {
+                throw new ResourceNotFoundException("Warehouse", "id", warehouseId);
+            }
+            writer = writers.computeIfAbsent(warehouseId, WarehouseWriter::new);
+        }
+        if (!writer.queue.offer(command)) {
+            throw new ServiceBusyException("Stock writer for warehouse " + warehouseId + " is busy, retry later");
+        }
+
+        try {
+            return command.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for stock writer", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs work that mutates rows of more than one warehouse in its own transaction, outside the
+     * warehouse writers, retrying up to {@code lock-retry-attempts} times if it loses a deadlock or lock
+     * wait. The work must lock its rows in canonical order.
+     */
+    public <T> T executeAcrossWarehouses(String operation, Supplier<T> mutation) {
+        Supplier<T> work = idempotencyService.bindToTransaction(mutation);
+        int attempts = Math.max(1, stockConfig.getLockRetryAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                metricsService.recordLockRetry(operation);
+                log.warn("Stock {} hit a lock conflict, retrying ({}/{}): {}",
+                        operation, attempt, attempts, e.getMessage());
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20) * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.values().forEach(WarehouseWriter::stop);
+    }
+
+    private static final class Command<T> {
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private RuntimeException error;
+
+        private Command(Supplier<T> work) {
+            this.work = work;
+        }
+
+        private void run() {
+            result = work.get();
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final class WarehouseWriter implements Runnable {
+
+        private final Long warehouseId;
+        private final BlockingQueue<Command<?>> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private WarehouseWriter(Long warehouseId) {
+            this.warehouseId = warehouseId;
+            this.queue = new LinkedBlockingQueue<>(stockConfig.getWriter().getQueueCapacity());
+            metricsService.registerStockWriterQueue(warehouseId, queue);
+            this.thread = new Thread(this, "stock-writer-" + warehouseId);
+            this.thread.setDaemon(true);
+            this.thread.start();
+            log.info("Started stock writer for warehouse {}", warehouseId);
+        }
+
+        @Override
+        public void run() {
+            int maxBatchSize = Math.max(1, stockConfig.getWriter().getMaxBatchSize());
+            long windowNanos = TimeUnit.MILLISECONDS.toNanos(stockConfig.getWriter().getBatchWindowMs());
+            List<Command<?>> batch = new ArrayList<>(maxBatchSize);
+
+            while (running) {
+                try {
+                    Command<?> first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.nanoTime() + windowNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        Command<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    commit(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } finally {
+                    batch.clear();
+                }
+            }
+
+            List<Command<?>> pending = new ArrayList<>();
+            queue.drainTo(pending);
+            pending.forEach(c -> c.future.completeExceptionally(
+                    new ServiceBusyException("Stock writer for warehouse " + warehouseId + " stopped")));
+        }
+
+        private void commit(List<Command<?>> batch) {
+            long start = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Connection connection = DataSourceUtils.getConnection(dataSource);
+                    try {
+                        for (Command<?> command : batch) {
+                            runUnderSavepoint(connection, command);
+                            // Later commands must not see entities left behind by earlier ones
+                            entityManager.clear();
+                        }
+                    } finally {
+                        DataSourceUtils.releaseConnection(connection, dataSource);
+                    }
+                });
+                batch.forEach(Command::complete);
+            } catch (RuntimeException e) {
+                log.warn("Stock writer batch of {} failed for warehouse {}, retrying commands one by one",
+                        batch.size(), warehouseId, e);
+                for (Command<?> command : batch) {
+                    retryAlone(command);
+                }
+            }
+            metricsService.recordStockWriterCommit(warehouseId, batch.size(), System.nanoTime() - start);
+        }
+
+        private void runUnderSavepoint(Connection connection, Command<?> command) {
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            Savepoint savepoint;
+            try {
+                savepoint = connection.setSavepoint();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to set savepoint", e);
+            }
+            try {
+                command.run();
+                entityManager.flush();
+            } catch (RuntimeException e) {
+                try {
+                    connection.rollback(savepoint);
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                    throw e;
+                }
+                restoreSynchronizations(synchronizations);
+                command.error = e;
+                return;
+            }
+            try {
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to release savepoint", e);
+            }
+        }
+
+        // Drops callbacks, such as broadcasts, registered by a command that was rolled back
+        private void restoreSynchronizations(List<TransactionSynchronization> synchronizations) {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            synchronizations.forEach(TransactionSynchronizationManager::registerSynchronization);
+        }
+
+        private void retryAlone(Command<?> command) {
+            command.error = null;
+            try {
+                transactionTemplate.executeWithoutResult(status -> command.run());
+            } catch (RuntimeException e) {
+                command.error = e;
+            }
+            command.complete();
+        }
+
+        private void stop() {
+            running = false;
+            thread.interrupt();
+        }
+    }
+}
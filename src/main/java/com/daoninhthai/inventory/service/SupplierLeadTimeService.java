@@ -0,0 +1,113 @@
+package com.daoninhthai.inventory.service;
+
+import com.daoninhthai.inventory.dto.SupplierLeadTimeResponse;
+import com.daoninhthai.inventory.entity.PurchaseOrder;
+import com.daoninhthai.inventory.entity.PurchaseOrderItem;
+import com.daoninhthai.inventory.exception.ResourceNotFoundException;
+import com.daoninhthai.inventory.repository.SupplierLeadTimeRepository;
+import com.daoninhthai.inventory.repository.SupplierLeadTimeRepository.LeadTimeStats;
+import com.daoninhthai.inventory.repository.SupplierLeadTimeRepository.Sample;
+import com.daoninhthai.inventory.repository.SupplierRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Purchase-order lead times (created to received) per supplier and per supplier and product. Each receipt
+ * adds one sample to the running statistics in the receipt's transaction, so reads never scan orders.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SupplierLeadTimeService {
+
+    private final SupplierLeadTimeRepository supplierLeadTimeRepository;
+    private final SupplierRepository supplierRepository;
+
+    public void recordReceipt(PurchaseOrder order) {
+        if (order.getCreatedAt() == null || order.getReceivedAt() == null) {
+            return;
+        }
+        double days = Math.max(0, Duration.between(order.getCreatedAt(), order.getReceivedAt()).toMinutes() / 1440.0);
+        long supplierId = order.getSupplier().getId();
+
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (PurchaseOrderItem item : order.getItems()) {
+            productIds.add(item.getProduct().getId());
+        }
+        List<Sample> samples = new ArrayList<>(productIds.size() + 1);
+        samples.add(new Sample(supplierId, SupplierLeadTimeRepository.ALL_PRODUCTS, days, order.getReceivedAt()));
+        for (Long productId : productIds) {
+            samples.add(new Sample(supplierId, productId, days, order.getReceivedAt()));
+        }
+        supplierLeadTimeRepository.record(samples);
+        log.debug("Recorded lead time of {} days for supplier {} ({} products)", days, supplierId, productIds.size());
+    }
+
+    /**
+     * Lead time of the supplier for one product, or across all its products when {@code productId} is null.
+     */
+    @Transactional(readOnly = true)
+    public SupplierLeadTimeResponse getLeadTime(Long supplierId, Long productId) {
+        if (!supplierRepository.existsById(supplierId)) {
+            throw new ResourceNotFoundException("Supplier", "id", supplierId);
+        }
+        long key = productId != null ? productId : SupplierLeadTimeRepository.ALL_PRODUCTS;
+        return supplierLeadTimeRepository.find(supplierId, key)
+                .map(SupplierLeadTimeService::toResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Lead time", "supplierId", supplierId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<SupplierLeadTimeResponse> getProductLeadTimes(Long supplierId) {
+        if (!supplierRepository.existsById(supplierId)) {
+            throw new ResourceNotFoundException("Supplier", "id", supplierId);
+        }
+        return supplierLeadTimeRepository.findBySupplier(supplierId).stream()
+                .filter(stats -> stats.productId() != SupplierLeadTimeRepository.ALL_PRODUCTS)
+                .map(SupplierLeadTimeService::toResponse)
+                .toList();
+    }
+
+    /**
+     * Lead time of the product from the supplier that delivered it last, if it was ever received.
+     */
+    @Transactional(readOnly = true)
+    public Optional<SupplierLeadTimeResponse> findLeadTimeForProduct(Long productId) {
+        return supplierLeadTimeRepository.findLatestForProduct(productId).map(SupplierLeadTimeService::toResponse);
+    }
+
+    private static SupplierLeadTimeResponse toResponse(LeadTimeStats stats) {
+        double variance = stats.orders() > 0 ? stats.m2() / stats.orders() : 0;
+        return SupplierLeadTimeResponse.builder()
+                .supplierId(stats.supplierId())
+                .productId(stats.productId() != SupplierLeadTimeRepository.ALL_PRODUCTS ? stats.productId() : null)
+                .receivedOrders(stats.orders())
+                .meanDays(stats.mean())
+                .varianceDays(variance)
+                .stdDevDays(Math.sqrt(variance))
+                .p90Days(percentile(stats.histogram(), stats.orders(), 0.9))
+                .lastReceivedAt(stats.lastReceivedAt())
+                .build();
+    }
+
+    private static int percentile(int[] histogram, long count, double fraction) {
+        long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int day = 0; day < histogram.length; day++) {
+            seen += histogram[day];
+            if (seen >= target && seen > 0) {
+                return day;
+            }
+        }
+        return histogram.length - 1;
+    }
+}
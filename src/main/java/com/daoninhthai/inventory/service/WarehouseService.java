@@ -92,7 +92,7 @@ public class WarehouseService {
                         .productSku(sl.getProduct().getSku())
                         .warehouseId(sl.getWarehouse().getId())
                         .warehouseName(sl.getWarehouse().getName())
-                        .quantity(sl.getQuantity())
+                        .quantity(sl.getTotalQuantity())
                         .minQuantity(sl.getMinQuantity())
                         .maxQuantity(sl.getMaxQuantity())
                         .lastUpdated(sl.getLastUpdated())
@@ -0,0 +1,15 @@
+ALTER TABLE stock_levels ADD COLUMN shard_count INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE stock_levels ADD CONSTRAINT chk_stock_shard_count CHECK (shard_count BETWEEN 1 AND 64);
+
+-- Extra counter buckets for split stock levels. The stock_levels row itself is bucket 0,
+-- so the on-hand total is stock_levels.quantity plus the sum of these rows.
+CREATE TABLE stock_level_shards (
+    stock_level_id BIGINT NOT NULL REFERENCES stock_levels(id) ON DELETE CASCADE,
+    shard INTEGER NOT NULL,
+    quantity INTEGER NOT NULL DEFAULT 0,
+    CONSTRAINT pk_stock_level_shards PRIMARY KEY (stock_level_id, shard),
+    CONSTRAINT chk_stock_shard_number CHECK (shard >= 1),
+    CONSTRAINT chk_stock_shard_quantity CHECK (quantity >= 0)
+);
+
+CREATE INDEX idx_stock_levels_split ON stock_levels(id) WHERE shard_count > 1;
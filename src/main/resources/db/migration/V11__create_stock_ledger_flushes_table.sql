@@ -0,0 +1,8 @@
+-- Flushes of the write-behind stock ledger, committed together with the stock changes they carry.
+-- The local journal is replayed against this table after a restart to skip flushes already applied.
+CREATE TABLE stock_ledger_flushes (
+    flush_id VARCHAR(36) PRIMARY KEY,
+    flushed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stock_ledger_flushes_flushed_at ON stock_ledger_flushes(flushed_at);
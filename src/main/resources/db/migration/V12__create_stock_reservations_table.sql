@@ -0,0 +1,18 @@
+CREATE TABLE stock_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    warehouse_id BIGINT NOT NULL REFERENCES warehouses(id),
+    quantity INTEGER NOT NULL,
+    reference VARCHAR(100),
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT chk_reservation_quantity CHECK (quantity > 0),
+    CONSTRAINT chk_reservation_status CHECK (status IN ('ACTIVE', 'COMMITTED', 'RELEASED', 'EXPIRED'))
+);
+
+-- Only active reservations are summed or scanned, so keep the hot indexes small
+CREATE INDEX idx_stock_reservations_active ON stock_reservations(product_id, warehouse_id)
+    WHERE status = 'ACTIVE';
+CREATE INDEX idx_stock_reservations_reference ON stock_reservations(reference);
@@ -0,0 +1,5 @@
+-- Document number series. Each nextval reserves a block of INCREMENT numbers that one instance hands
+-- out from memory, so the increment must match DocumentNumberService.BLOCK_SIZE.
+-- Numbering starts well above the per-boot counters used before (1001, 1002, ...).
+CREATE SEQUENCE purchase_order_number_seq START WITH 100000 INCREMENT BY 50;
+CREATE SEQUENCE transfer_number_seq START WITH 100000 INCREMENT BY 50;
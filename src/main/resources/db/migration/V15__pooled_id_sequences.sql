@@ -0,0 +1,7 @@
+-- Hibernate allocates ids for these entities in blocks with the pooled-lo optimizer: each nextval reserves
+-- INCREMENT ids, so the increment must match the entity's allocationSize. Plain SQL inserts that take the
+-- column default still draw their own nextval and can never collide with a block handed out to Hibernate.
+ALTER SEQUENCE products_id_seq INCREMENT BY 50;
+ALTER SEQUENCE stock_levels_id_seq INCREMENT BY 50;
+ALTER SEQUENCE stock_movements_id_seq INCREMENT BY 50;
+ALTER SEQUENCE purchase_order_items_id_seq INCREMENT BY 50;
@@ -0,0 +1,14 @@
+-- Movements recorded in journal mode. A row is written in the same transaction as its stock change and
+-- moved into stock_movements by the movement journal writer in multi-row batches. Rows the writer never
+-- picked up (full buffer, crash, restart) are swept after a delay, so a committed movement is never lost.
+CREATE TABLE stock_movement_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    warehouse_id BIGINT NOT NULL REFERENCES warehouses(id),
+    type VARCHAR(20) NOT NULL,
+    quantity INTEGER NOT NULL,
+    reference VARCHAR(100),
+    notes TEXT,
+    created_by VARCHAR(50),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
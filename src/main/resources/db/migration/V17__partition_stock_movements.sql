@@ -0,0 +1,64 @@
+-- Range-partition stock_movements by month on created_at. The primary key has to include the partition
+-- key, so it becomes (id, created_at); ids still come from stock_movements_id_seq and stay unique.
+-- Existing rows are copied into monthly partitions. StockMovementPartitionService creates partitions
+-- ahead of time and detaches those past the retention window; the default partition only catches rows
+-- outside every monthly partition and should stay empty.
+
+ALTER TABLE stock_movements RENAME TO stock_movements_unpartitioned;
+ALTER SEQUENCE stock_movements_id_seq OWNED BY NONE;
+
+CREATE TABLE stock_movements (
+    id BIGINT NOT NULL DEFAULT nextval('stock_movements_id_seq'),
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    warehouse_id BIGINT NOT NULL REFERENCES warehouses(id),
+    type VARCHAR(20) NOT NULL,
+    quantity INTEGER NOT NULL,
+    reference VARCHAR(100),
+    notes TEXT,
+    created_by VARCHAR(50),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT chk_movement_type CHECK (type IN ('IN', 'OUT', 'TRANSFER', 'ADJUSTMENT')),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE stock_movements_id_seq OWNED BY stock_movements.id;
+
+CREATE TABLE stock_movements_default PARTITION OF stock_movements DEFAULT;
+
+CREATE FUNCTION ensure_stock_movement_partition(p_month DATE) RETURNS TEXT AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_name TEXT := 'stock_movements_y' || to_char(v_start, 'YYYY') || 'm' || to_char(v_start, 'MM');
+BEGIN
+    IF to_regclass(v_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF stock_movements FOR VALUES FROM (%L) TO (%L)',
+                       v_name, v_start, (v_start + INTERVAL '1 month')::DATE);
+    END IF;
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    v_month DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(created_at), LOCALTIMESTAMP))::DATE
+    INTO v_month FROM stock_movements_unpartitioned;
+    WHILE v_month <= (date_trunc('month', LOCALTIMESTAMP) + INTERVAL '3 months')::DATE LOOP
+        PERFORM ensure_stock_movement_partition(v_month);
+        v_month := (v_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END;
+$$;
+
+INSERT INTO stock_movements (id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at)
+SELECT id, product_id, warehouse_id, type, quantity, reference, notes, created_by, created_at
+FROM stock_movements_unpartitioned;
+
+DROP TABLE stock_movements_unpartitioned;
+
+CREATE INDEX idx_stock_movements_product ON stock_movements(product_id);
+CREATE INDEX idx_stock_movements_warehouse ON stock_movements(warehouse_id);
+CREATE INDEX idx_stock_movements_type ON stock_movements(type);
+CREATE INDEX idx_stock_movements_created ON stock_movements(created_at);
+CREATE INDEX idx_stock_movements_reference ON stock_movements(reference);
@@ -0,0 +1,19 @@
+-- Per-day movement totals, updated in the same transaction as every recorded movement and read by the
+-- dashboard instead of aggregating stock_movements. Rebuilt from stock_movements by
+-- POST /api/dashboard/rollups/rebuild if it ever drifts.
+CREATE TABLE movement_daily_rollup (
+    day DATE NOT NULL,
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    warehouse_id BIGINT NOT NULL REFERENCES warehouses(id),
+    type VARCHAR(20) NOT NULL,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    movement_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, product_id, warehouse_id, type)
+);
+
+CREATE INDEX idx_movement_daily_rollup_product ON movement_daily_rollup(product_id, day);
+
+INSERT INTO movement_daily_rollup (day, product_id, warehouse_id, type, quantity, movement_count)
+SELECT created_at::DATE, product_id, warehouse_id, type, SUM(quantity), COUNT(*)
+FROM stock_movements
+GROUP BY created_at::DATE, product_id, warehouse_id, type;
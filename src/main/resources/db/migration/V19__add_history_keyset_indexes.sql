@@ -0,0 +1,32 @@
+-- Keyset pagination walks histories in (created_at, id) order per filter. These composite indexes serve
+-- both the filter and the order, and replace the single-column ones they cover.
+CREATE INDEX idx_stock_movements_product_created ON stock_movements(product_id, created_at, id);
+CREATE INDEX idx_stock_movements_warehouse_created ON stock_movements(warehouse_id, created_at, id);
+CREATE INDEX idx_stock_movements_type_created ON stock_movements(type, created_at, id);
+CREATE INDEX idx_stock_movements_created_id ON stock_movements(created_at, id);
+
+DROP INDEX idx_stock_movements_product;
+DROP INDEX idx_stock_movements_warehouse;
+DROP INDEX idx_stock_movements_type;
+DROP INDEX idx_stock_movements_created;
+
+-- audit_logs had no migration so far; create it if missing so its indexes are managed here
+CREATE TABLE IF NOT EXISTS audit_logs (
+    id BIGSERIAL PRIMARY KEY,
+    entity_type VARCHAR(30) NOT NULL,
+    entity_id BIGINT,
+    action VARCHAR(50) NOT NULL,
+    old_value TEXT,
+    new_value TEXT,
+    user_id VARCHAR(100),
+    ip_address VARCHAR(45),
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_audit_entity_timestamp ON audit_logs(entity_type, entity_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_audit_user_timestamp ON audit_logs(user_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_audit_timestamp_id ON audit_logs(timestamp, id);
+
+DROP INDEX IF EXISTS idx_audit_entity;
+DROP INDEX IF EXISTS idx_audit_user;
+DROP INDEX IF EXISTS idx_audit_timestamp;
@@ -0,0 +1,19 @@
+-- Per-day on-hand snapshots for point-in-time queries. A key only gets a row on days it changed, so the
+-- balance at time T starts from the latest row taken at or before T and replays later movements.
+CREATE TABLE stock_snapshots (
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    warehouse_id BIGINT NOT NULL REFERENCES warehouses(id),
+    snapshot_day DATE NOT NULL,
+    quantity INTEGER NOT NULL,
+    taken_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (product_id, warehouse_id, snapshot_day)
+);
+
+-- One row per snapshot job run; last_stock_level_id lets an interrupted run resume where it stopped
+CREATE TABLE stock_snapshot_runs (
+    snapshot_day DATE PRIMARY KEY,
+    changed_since TIMESTAMP,
+    last_stock_level_id BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP
+);
@@ -0,0 +1,24 @@
+-- Streaming statistics of daily OUT demand per product and warehouse; warehouse_id 0 holds the product
+-- across all warehouses. Days are folded in from movement_daily_rollup once they are over: mean/m2 are
+-- Welford accumulators over every day since first_day (days without demand count as zero), ewma is an
+-- exponentially decayed daily average and ring holds the last 90 daily totals indexed by epoch day % 90.
+CREATE TABLE demand_stats (
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    warehouse_id BIGINT NOT NULL,
+    first_day DATE NOT NULL,
+    last_day DATE NOT NULL,
+    days BIGINT NOT NULL,
+    mean DOUBLE PRECISION NOT NULL,
+    m2 DOUBLE PRECISION NOT NULL,
+    ewma DOUBLE PRECISION NOT NULL,
+    ring BIGINT[] NOT NULL,
+    PRIMARY KEY (product_id, warehouse_id)
+);
+
+-- Last day folded into demand_stats; the single row is locked while a day is folded
+CREATE TABLE demand_stats_state (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    folded_through DATE
+);
+
+INSERT INTO demand_stats_state (id, folded_through) VALUES (1, NULL);
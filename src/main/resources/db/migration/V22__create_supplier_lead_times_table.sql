@@ -0,0 +1,38 @@
+-- Lead time (created_at -> received_at, in days) of received purchase orders per supplier and product;
+-- product_id 0 holds the supplier across all products. Updated by every receipt: mean/m2 are Welford
+-- accumulators and histogram[d + 1] counts orders received within d whole days (the last bin is 120+).
+CREATE TABLE supplier_lead_times (
+    supplier_id BIGINT NOT NULL REFERENCES suppliers(id),
+    product_id BIGINT NOT NULL,
+    orders BIGINT NOT NULL,
+    mean DOUBLE PRECISION NOT NULL,
+    m2 DOUBLE PRECISION NOT NULL,
+    histogram INTEGER[] NOT NULL,
+    last_received_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (supplier_id, product_id)
+);
+
+CREATE INDEX idx_supplier_lead_times_product ON supplier_lead_times(product_id, last_received_at);
+
+WITH orders AS (
+    SELECT id, supplier_id, received_at,
+           GREATEST(EXTRACT(EPOCH FROM (received_at - created_at)) / 86400.0, 0) AS days
+    FROM purchase_orders
+    WHERE status = 'RECEIVED' AND received_at IS NOT NULL
+), samples AS (
+    SELECT supplier_id, 0::BIGINT AS product_id, days, received_at FROM orders
+    UNION ALL
+    SELECT o.supplier_id, i.product_id, o.days, o.received_at
+    FROM orders o
+    JOIN (SELECT DISTINCT purchase_order_id, product_id FROM purchase_order_items) i ON i.purchase_order_id = o.id
+)
+INSERT INTO supplier_lead_times (supplier_id, product_id, orders, mean, m2, histogram, last_received_at)
+SELECT s.supplier_id, s.product_id, COUNT(*), AVG(s.days), COALESCE(VAR_POP(s.days), 0) * COUNT(*),
+       (SELECT array_agg(COALESCE(h.n, 0)::INTEGER ORDER BY b.bin)
+        FROM generate_series(0, 120) AS b(bin)
+        LEFT JOIN (SELECT LEAST(CEIL(x.days), 120)::INTEGER AS bin, COUNT(*) AS n FROM samples x
+                   WHERE x.supplier_id = s.supplier_id AND x.product_id = s.product_id GROUP BY 1) h
+        ON h.bin = b.bin),
+       MAX(s.received_at)
+FROM samples s
+GROUP BY s.supplier_id, s.product_id;
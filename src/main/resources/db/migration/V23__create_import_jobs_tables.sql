@@ -0,0 +1,39 @@
+-- Background CSV imports. The upload is spooled to spool_path and applied in chunk transactions; each chunk
+-- commits its rows, its errors and the checkpoint (rows_done data rows after the header) together, so a job
+-- resumes exactly where it stopped. A RUNNING job whose lease has expired is picked up again; attempt
+-- increases with every claim and guards the checkpoint against a worker that lost its lease.
+CREATE TABLE import_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    tenant_id BIGINT,
+    type VARCHAR(20) NOT NULL,
+    mode VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'QUEUED',
+    file_name VARCHAR(255),
+    spool_path VARCHAR(500) NOT NULL,
+    file_bytes BIGINT NOT NULL,
+    rows_done BIGINT NOT NULL DEFAULT 0,
+    bytes_done BIGINT NOT NULL DEFAULT 0,
+    imported BIGINT NOT NULL DEFAULT 0,
+    failed BIGINT NOT NULL DEFAULT 0,
+    attempt INTEGER NOT NULL DEFAULT 0,
+    lease_until TIMESTAMP,
+    run_started_at TIMESTAMP,
+    run_start_rows BIGINT NOT NULL DEFAULT 0,
+    run_start_bytes BIGINT NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP,
+    CONSTRAINT chk_import_job_type CHECK (type IN ('PRODUCTS', 'STOCK')),
+    CONSTRAINT chk_import_job_mode CHECK (mode IN ('STANDARD', 'BULK')),
+    CONSTRAINT chk_import_job_status CHECK (status IN ('QUEUED', 'RUNNING', 'COMPLETED', 'FAILED'))
+);
+
+CREATE INDEX idx_import_jobs_active ON import_jobs(id) WHERE status IN ('QUEUED', 'RUNNING');
+
+CREATE TABLE import_job_errors (
+    job_id BIGINT NOT NULL REFERENCES import_jobs(id) ON DELETE CASCADE,
+    row_num BIGINT NOT NULL,
+    message TEXT NOT NULL
+);
+
+CREATE INDEX idx_import_job_errors_job ON import_job_errors(job_id, row_num);
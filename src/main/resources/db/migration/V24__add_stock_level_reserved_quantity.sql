@@ -0,0 +1,10 @@
+-- Quantity held by ACTIVE reservations of the stock level, kept next to the on-hand quantity so every
+-- decrement can check on-hand minus reserved under the row lock it already takes
+ALTER TABLE stock_levels ADD COLUMN reserved_quantity INTEGER NOT NULL DEFAULT 0;
+
+UPDATE stock_levels sl SET reserved_quantity = r.quantity
+FROM (SELECT product_id, warehouse_id, SUM(quantity) AS quantity FROM stock_reservations
+      WHERE status = 'ACTIVE' GROUP BY product_id, warehouse_id) r
+WHERE sl.product_id = r.product_id AND sl.warehouse_id = r.warehouse_id;
+
+ALTER TABLE stock_levels ADD CONSTRAINT chk_stock_levels_reserved_quantity CHECK (reserved_quantity >= 0);
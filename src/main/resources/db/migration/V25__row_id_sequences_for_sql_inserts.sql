@@ -0,0 +1,19 @@
+-- AuditLog joins the entities that allocate ids in pooled-lo blocks of 50 (see V15).
+ALTER SEQUENCE audit_logs_id_seq INCREMENT BY 50;
+
+-- Since V15 the column defaults draw from the pooled sequences, so every row inserted by plain SQL, COPY
+-- merges or ON CONFLICT upserts burned a whole block of 50 ids. Those inserts now take their ids from a
+-- separate sequence that steps by 1. It starts at 2^52, far above anything the pooled sequences can reach,
+-- so the two never hand out the same id, and stays below 2^53, the largest integer JSON clients read
+-- exactly. Hibernate keeps using the *_id_seq sequences through @SequenceGenerator.
+CREATE SEQUENCE products_row_id_seq START WITH 4503599627370496 OWNED BY products.id;
+CREATE SEQUENCE stock_levels_row_id_seq START WITH 4503599627370496 OWNED BY stock_levels.id;
+CREATE SEQUENCE stock_movements_row_id_seq START WITH 4503599627370496 OWNED BY stock_movements.id;
+CREATE SEQUENCE purchase_order_items_row_id_seq START WITH 4503599627370496 OWNED BY purchase_order_items.id;
+CREATE SEQUENCE audit_logs_row_id_seq START WITH 4503599627370496 OWNED BY audit_logs.id;
+
+ALTER TABLE products ALTER COLUMN id SET DEFAULT nextval('products_row_id_seq');
+ALTER TABLE stock_levels ALTER COLUMN id SET DEFAULT nextval('stock_levels_row_id_seq');
+ALTER TABLE stock_movements ALTER COLUMN id SET DEFAULT nextval('stock_movements_row_id_seq');
+ALTER TABLE purchase_order_items ALTER COLUMN id SET DEFAULT nextval('purchase_order_items_row_id_seq');
+ALTER TABLE audit_logs ALTER COLUMN id SET DEFAULT nextval('audit_logs_row_id_seq');
@@ -0,0 +1,31 @@
+-- Creating a monthly partition fails while the default partition holds rows in its range. The partition is
+-- now built as a plain table, the rows of that month are moved into it out of the default partition, and
+-- only then is it attached. The default partition stays locked against inserts until the attach, so no row
+-- of the month can land there in between.
+CREATE OR REPLACE FUNCTION ensure_stock_movement_partition(p_month DATE) RETURNS TEXT AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := 'stock_movements_y' || to_char(v_start, 'YYYY') || 'm' || to_char(v_start, 'MM');
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN v_name;
+    END IF;
+
+    LOCK TABLE stock_movements_default IN EXCLUSIVE MODE;
+    IF NOT EXISTS (SELECT 1 FROM stock_movements_default WHERE created_at >= v_start AND created_at < v_end) THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF stock_movements FOR VALUES FROM (%L) TO (%L)',
+                       v_name, v_start, v_end);
+        RETURN v_name;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE stock_movements INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', v_name);
+    EXECUTE format('WITH moved AS (DELETE FROM stock_movements_default '
+                   'WHERE created_at >= %L AND created_at < %L RETURNING *) '
+                   'INSERT INTO %I SELECT * FROM moved', v_start, v_end, v_name);
+    EXECUTE format('ALTER TABLE stock_movements ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, v_start, v_end);
+    RAISE NOTICE 'Moved stock movements of % out of the default partition into %', v_start, v_name;
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
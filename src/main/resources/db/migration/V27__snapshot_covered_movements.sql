@@ -0,0 +1,13 @@
+-- A snapshot's total includes every movement committed before it was taken, but a movement's created_at is
+-- taken before its transaction commits. Replays therefore start covered_since (a margin before taken_at)
+-- and skip the movements listed in covered_movement_ids, read in the same statement as the total.
+-- Snapshots taken before this migration keep NULL and replay from taken_at.
+ALTER TABLE stock_snapshots ADD COLUMN covered_since TIMESTAMP;
+ALTER TABLE stock_snapshots ADD COLUMN covered_movement_ids BIGINT[];
+
+-- Outbox rows take their id from the movement row sequence and keep it when they are moved, so an id a
+-- snapshot saw in the outbox still identifies the movement afterwards. Rows waiting in the outbox are
+-- renumbered so their ids cannot clash with existing movements.
+ALTER TABLE stock_movement_outbox ALTER COLUMN id SET DEFAULT nextval('stock_movements_row_id_seq');
+UPDATE stock_movement_outbox SET id = nextval('stock_movements_row_id_seq');
+DROP SEQUENCE stock_movement_outbox_id_seq;
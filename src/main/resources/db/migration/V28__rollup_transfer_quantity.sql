@@ -0,0 +1,18 @@
+-- Part of each rollup quantity that comes from transfer legs (reference TRF-..., or TRANSFER-... before
+-- document numbers). Demand statistics and forecasts subtract it, since a transfer moves stock between
+-- warehouses without any demand.
+ALTER TABLE movement_daily_rollup ADD COLUMN transfer_quantity BIGINT NOT NULL DEFAULT 0;
+
+UPDATE movement_daily_rollup r SET transfer_quantity = t.quantity
+FROM (SELECT created_at::DATE AS day, product_id, warehouse_id, type, SUM(quantity) AS quantity FROM (
+          SELECT created_at, product_id, warehouse_id, type, quantity, reference FROM stock_movements
+          UNION ALL
+          SELECT created_at, product_id, warehouse_id, type, quantity, reference FROM stock_movement_outbox
+      ) m
+      WHERE reference LIKE 'TRF-%' OR reference LIKE 'TRANSFER-%'
+      GROUP BY created_at::DATE, product_id, warehouse_id, type) t
+WHERE r.day = t.day AND r.product_id = t.product_id AND r.warehouse_id = t.warehouse_id AND r.type = t.type;
+
+-- Statistics folded so far counted transfers as demand; the fold job starts over from the backfill window
+DELETE FROM demand_stats;
+UPDATE demand_stats_state SET folded_through = NULL;
@@ -0,0 +1,6 @@
+-- The upload is spooled to the local disk of the instance that accepted it, so only that instance can run
+-- the job. Jobs queued before this column existed keep NULL and stay claimable by any instance.
+ALTER TABLE import_jobs ADD COLUMN spool_node VARCHAR(255);
+
+DROP INDEX idx_import_jobs_active;
+CREATE INDEX idx_import_jobs_active ON import_jobs(spool_node, id) WHERE status IN ('QUEUED', 'RUNNING');